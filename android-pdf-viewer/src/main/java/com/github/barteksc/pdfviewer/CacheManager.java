@@ -16,177 +16,104 @@
 package com.github.barteksc.pdfviewer;
 
 import android.graphics.RectF;
-import androidx.annotation.Nullable;
 
+import com.github.barteksc.pdfviewer.cache.PartCache;
 import com.github.barteksc.pdfviewer.model.PagePart;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.List;
-import java.util.PriorityQueue;
+import com.github.barteksc.pdfviewer.util.Tracing;
 
 import static com.github.barteksc.pdfviewer.util.Constants.Cache.CACHE_SIZE;
 import static com.github.barteksc.pdfviewer.util.Constants.Cache.THUMBNAILS_CACHE_SIZE;
 
-class CacheManager {
-
-    private final PriorityQueue<PagePart> passiveCache;
-
-    private final PriorityQueue<PagePart> activeCache;
-
-    private final List<PagePart> thumbnails;
+class CacheManager extends PartCache<PagePart> {
 
-    private final Object passiveActiveLock = new Object();
+    /** Engine counting memory of cached parts, null if the view renders on its own */
+    private volatile RenderingEngine renderingEngine;
 
-    private final PagePartComparator orderComparator = new PagePartComparator();
+    private final RenderingMetricsRecorder metrics;
 
-    public CacheManager() {
-        activeCache = new PriorityQueue<>(CACHE_SIZE, orderComparator);
-        passiveCache = new PriorityQueue<>(CACHE_SIZE, orderComparator);
-        thumbnails = new ArrayList<>();
+    public CacheManager(RenderingMetricsRecorder metrics) {
+        super(CACHE_SIZE, THUMBNAILS_CACHE_SIZE);
+        this.metrics = metrics;
     }
 
-    public void cachePart(PagePart part) {
-        synchronized (passiveActiveLock) {
-            // If cache too big, remove and recycle
-            makeAFreeSpace();
-
-            // Then add part
-            activeCache.offer(part);
-        }
+    void setRenderingEngine(RenderingEngine renderingEngine) {
+        this.renderingEngine = renderingEngine;
     }
 
-    public void makeANewSet() {
-        synchronized (passiveActiveLock) {
-            passiveCache.addAll(activeCache);
-            activeCache.clear();
-        }
-    }
-
-    private void makeAFreeSpace() {
-        synchronized (passiveActiveLock) {
-            while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
-                    !passiveCache.isEmpty()) {
-                PagePart part = passiveCache.poll();
-                part.getRenderedBitmap().recycle();
-            }
-
-            while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
-                    !activeCache.isEmpty()) {
-                activeCache.poll().getRenderedBitmap().recycle();
-            }
+    @Override
+    public void cachePart(PagePart part) {
+        Tracing.beginSection("CacheManager.cachePart");
+        try {
+            super.cachePart(part);
+        } finally {
+            Tracing.endSection();
         }
     }
 
-    public void cacheThumbnail(PagePart part) {
-        synchronized (thumbnails) {
-            // If cache too big, remove and recycle
-            while (thumbnails.size() >= THUMBNAILS_CACHE_SIZE) {
-                thumbnails.remove(0).getRenderedBitmap().recycle();
-            }
-
-            // Then add thumbnail
-            addWithoutDuplicates(thumbnails, part);
+    @Override
+    public long evict(long bytes, boolean includeActive) {
+        Tracing.beginSection("CacheManager.evict");
+        try {
+            return super.evict(bytes, includeActive);
+        } finally {
+            Tracing.endSection();
         }
-
     }
 
     public boolean upPartIfContained(int page, RectF pageRelativeBounds, int toOrder) {
-        PagePart fakePart = new PagePart(page, null, pageRelativeBounds, false, 0);
-
-        PagePart found;
-        synchronized (passiveActiveLock) {
-            if ((found = find(passiveCache, fakePart)) != null) {
-                passiveCache.remove(found);
-                found.setCacheOrder(toOrder);
-                activeCache.offer(found);
-                return true;
-            }
-
-            return find(activeCache, fakePart) != null;
-        }
+        return upPartIfContained(new PagePart(page, null, pageRelativeBounds, false, 0), toOrder);
     }
 
     /**
      * Return true if already contains the described PagePart
      */
     public boolean containsThumbnail(int page, RectF pageRelativeBounds) {
-        PagePart fakePart = new PagePart(page, null, pageRelativeBounds, true, 0);
-        synchronized (thumbnails) {
-            for (PagePart part : thumbnails) {
-                if (part.equals(fakePart)) {
-                    return true;
-                }
-            }
-            return false;
-        }
+        return containsThumbnail(new PagePart(page, null, pageRelativeBounds, true, 0));
     }
 
-    /**
-     * Add part if it doesn't exist, recycle bitmap otherwise
-     */
-    private void addWithoutDuplicates(Collection<PagePart> collection, PagePart newPart) {
-        for (PagePart part : collection) {
-            if (part.equals(newPart)) {
-                newPart.getRenderedBitmap().recycle();
-                return;
-            }
-        }
-        collection.add(newPart);
+    @Override
+    protected int getCacheOrder(PagePart part) {
+        return part.getCacheOrder();
     }
 
-    @Nullable
-    private static PagePart find(PriorityQueue<PagePart> vector, PagePart fakePart) {
-        for (PagePart part : vector) {
-            if (part.equals(fakePart)) {
-                return part;
-            }
-        }
-        return null;
+    @Override
+    protected void setCacheOrder(PagePart part, int cacheOrder) {
+        part.setCacheOrder(cacheOrder);
     }
 
-    public List<PagePart> getPageParts() {
-        synchronized (passiveActiveLock) {
-            List<PagePart> parts = new ArrayList<>(passiveCache);
-            parts.addAll(activeCache);
-            return parts;
-        }
+    @Override
+    protected int getByteCount(PagePart part) {
+        return part.getRenderedBitmap().getByteCount();
     }
 
-    public List<PagePart> getThumbnails() {
-        synchronized (thumbnails) {
-            return thumbnails;
-        }
+    @Override
+    protected void recycleBitmap(PagePart part) {
+        part.getRenderedBitmap().recycle();
     }
 
-    public void recycle() {
-        synchronized (passiveActiveLock) {
-            for (PagePart part : passiveCache) {
-                part.getRenderedBitmap().recycle();
-            }
-            passiveCache.clear();
-            for (PagePart part : activeCache) {
-                part.getRenderedBitmap().recycle();
-            }
-            activeCache.clear();
-        }
-        synchronized (thumbnails) {
-            for (PagePart part : thumbnails) {
-                part.getRenderedBitmap().recycle();
-            }
-            thumbnails.clear();
+    @Override
+    protected void onPartCached(PagePart part) {
+        RenderingEngine engine = renderingEngine;
+        if (engine != null) {
+            engine.onPartCached(part.getRenderedBitmap().getByteCount());
         }
     }
 
-    class PagePartComparator implements Comparator<PagePart> {
-        @Override
-        public int compare(PagePart part1, PagePart part2) {
-            if (part1.getCacheOrder() == part2.getCacheOrder()) {
-                return 0;
-            }
-            return part1.getCacheOrder() > part2.getCacheOrder() ? 1 : -1;
+    @Override
+    protected void onPartRecycled(int bytes) {
+        RenderingEngine engine = renderingEngine;
+        if (engine != null) {
+            engine.onPartRecycled(bytes);
         }
     }
 
+    @Override
+    protected void onEviction() {
+        metrics.recordEviction();
+    }
+
+    @Override
+    protected void onLookup(boolean hit) {
+        metrics.recordCacheLookup(hit);
+    }
 }
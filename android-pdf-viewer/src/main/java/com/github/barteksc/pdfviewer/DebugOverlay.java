@@ -0,0 +1,190 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.SystemClock;
+
+import com.github.barteksc.pdfviewer.model.PagePart;
+import com.github.barteksc.pdfviewer.util.Constants;
+import com.github.barteksc.pdfviewer.util.Util;
+import com.shockwave.pdfium.util.SizeF;
+
+import java.util.Locale;
+
+/**
+ * Overlay of {@link PDFView} shown with {@link PDFView#setDebugOverlayEnabled(boolean)}. Parts are filled
+ * by their age and outlined by their resolution compared to the current zoom, parts waiting in the
+ * rendering queue are outlined with a dashed line. A HUD shows the rendering queue, the cache and FPS.
+ */
+class DebugOverlay {
+
+    /** Parts younger than this are filled green, in milliseconds */
+    private static final long NEW_PART_AGE = 1000;
+
+    /** Parts older than this are filled grey, younger ones yellow, in milliseconds */
+    private static final long OLD_PART_AGE = 10000;
+
+    /** Parts scaled by more than this ratio are outlined as blurry or oversampled */
+    private static final float SCALE_TOLERANCE = 0.1f;
+
+    private static final int FILL_ALPHA = 48;
+
+    private static final int FPS_SAMPLES = 120;
+
+    private final PDFView pdfView;
+
+    private final Paint fillPaint = new Paint();
+
+    private final Paint strokePaint = new Paint();
+
+    private final Paint queuedPaint = new Paint();
+
+    private final Paint hudPaint = new Paint();
+
+    private final Paint hudBackgroundPaint = new Paint();
+
+    private final RectF rect = new RectF();
+
+    /** Times of the latest draws, ring buffer */
+    private final long[] drawTimes = new long[FPS_SAMPLES];
+
+    private int nextDrawTime = 0;
+
+    DebugOverlay(PDFView pdfView) {
+        this.pdfView = pdfView;
+        fillPaint.setStyle(Paint.Style.FILL);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(2);
+        queuedPaint.setStyle(Paint.Style.STROKE);
+        queuedPaint.setStrokeWidth(2);
+        queuedPaint.setColor(Color.rgb(255, 140, 0));
+        queuedPaint.setPathEffect(new DashPathEffect(new float[]{12, 8}, 0));
+        hudPaint.setColor(Color.WHITE);
+        hudPaint.setAntiAlias(true);
+        hudPaint.setTextSize(Util.getDP(pdfView.getContext(), 12));
+        hudBackgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+    }
+
+    /**
+     * Draw the state of a part, canvas is translated to its page
+     *
+     * @param dstRect bounds of the part on the page
+     */
+    void drawPart(Canvas canvas, PagePart part, RectF dstRect) {
+        long age = SystemClock.uptimeMillis() - part.getCreationTime();
+        int fillColor;
+        if (age < NEW_PART_AGE) {
+            fillColor = Color.GREEN;
+        } else if (age < OLD_PART_AGE) {
+            fillColor = Color.YELLOW;
+        } else {
+            fillColor = Color.GRAY;
+        }
+        fillPaint.setColor(fillColor);
+        fillPaint.setAlpha(FILL_ALPHA);
+        canvas.drawRect(dstRect, fillPaint);
+
+        // Part rendered for a lower zoom is blurry, for a higher zoom it wastes memory
+        Bitmap bitmap = part.getRenderedBitmap();
+        float scale = dstRect.width() / bitmap.getWidth();
+        int strokeColor;
+        if (part.isThumbnail()) {
+            strokeColor = Color.MAGENTA;
+        } else if (scale > 1 + SCALE_TOLERANCE) {
+            strokeColor = Color.RED;
+        } else if (scale < 1 - SCALE_TOLERANCE) {
+            strokeColor = Color.BLUE;
+        } else {
+            strokeColor = Color.DKGRAY;
+        }
+        strokePaint.setColor(strokeColor);
+        canvas.drawRect(dstRect, strokePaint);
+    }
+
+    /** Outline parts waiting for rendering, canvas is translated to the current offset */
+    void drawQueuedTasks(Canvas canvas, RenderingHandler renderingHandler, PdfFile pdfFile) {
+        float zoom = pdfView.getZoom();
+        for (RenderingHandler.RenderingTask task : renderingHandler.getQueuedTasks()) {
+            SizeF size = pdfFile.getPageSize(task.page);
+            float left = pdfView.toCurrentScale(task.bounds.left * size.getWidth());
+            float top = pdfView.toCurrentScale(task.bounds.top * size.getHeight());
+            if (pdfView.isSwipeVertical()) {
+                left += pdfView.toCurrentScale(pdfFile.getMaxPageWidth() - size.getWidth()) / 2;
+                top += pdfFile.getPageOffset(task.page, zoom);
+            } else {
+                left += pdfFile.getPageOffset(task.page, zoom);
+                top += pdfView.toCurrentScale(pdfFile.getMaxPageHeight() - size.getHeight()) / 2;
+            }
+            rect.set(left, top, left + pdfView.toCurrentScale(task.bounds.width() * size.getWidth()),
+                    top + pdfView.toCurrentScale(task.bounds.height() * size.getHeight()));
+            canvas.drawRect(rect, queuedPaint);
+        }
+    }
+
+    /** Draw the HUD in the top left corner, canvas is not translated */
+    void drawHud(Canvas canvas, RenderingHandler renderingHandler, PdfFile pdfFile) {
+        long now = SystemClock.uptimeMillis();
+        drawTimes[nextDrawTime] = now;
+        nextDrawTime = (nextDrawTime + 1) % FPS_SAMPLES;
+        int fps = 0;
+        for (long drawTime : drawTimes) {
+            if (drawTime != 0 && now - drawTime < 1000) {
+                fps++;
+            }
+        }
+
+        CacheManager cacheManager = pdfView.cacheManager;
+        RenderingMetricsRecorder metrics = pdfView.metricsRecorder;
+        long hits = metrics.getCacheHits();
+        long lookups = hits + metrics.getCacheMisses();
+        int cachedParts = cacheManager.getPageParts().size();
+
+        String[] lines = {
+                String.format(Locale.US, "queue: %d", renderingHandler.getPendingTaskCount()),
+                String.format(Locale.US, "cache: %d/%d parts, %.1f MB", cachedParts, Constants.Cache.CACHE_SIZE,
+                        cacheManager.getCachedBytes() / (1024f * 1024f)),
+                String.format(Locale.US, "hit rate: %.0f%%", lookups == 0 ? 0 : 100f * hits / lookups),
+                String.format(Locale.US, "open pages: %d/%d", pdfFile.getOpenedPagesCount(), pdfFile.getPagesCount()),
+                String.format(Locale.US, "part size: %.0f, zoom: %.2f", Constants.PART_SIZE, pdfView.getZoom()),
+                String.format(Locale.US, "fps: %d", fps)
+        };
+        RenderingEngine engine = pdfView.getRenderingEngine();
+        if (engine != null) {
+            String[] withEngine = new String[lines.length + 1];
+            System.arraycopy(lines, 0, withEngine, 0, lines.length);
+            withEngine[lines.length] = String.format(Locale.US, "engine: %.1f/%.1f MB",
+                    engine.getUsedMemory() / (1024f * 1024f), engine.getMemoryBudget() / (1024f * 1024f));
+            lines = withEngine;
+        }
+
+        float lineHeight = hudPaint.getTextSize() * 1.25f;
+        float padding = hudPaint.getTextSize() / 2;
+        float width = 0;
+        for (String line : lines) {
+            width = Math.max(width, hudPaint.measureText(line));
+        }
+        canvas.drawRect(0, 0, width + 2 * padding, lines.length * lineHeight + 2 * padding, hudBackgroundPaint);
+        for (int i = 0; i < lines.length; i++) {
+            canvas.drawText(lines[i], padding, padding + (i + 1) * lineHeight - lineHeight / 4, hudPaint);
+        }
+    }
+}
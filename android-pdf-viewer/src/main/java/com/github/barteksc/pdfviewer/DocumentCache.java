@@ -0,0 +1,220 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import com.github.barteksc.pdfviewer.model.PagePart;
+import com.github.barteksc.pdfviewer.source.DocumentSource;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * App wide cache of opened documents which are not displayed by any {@link PDFView}. A view using the cache
+ * puts its document here on recycle, instead of closing it, and takes it back when the same source is loaded
+ * with the same page layout, so the document is not opened and measured again. Sources are equal if they
+ * describe the same document, see equals() of {@link com.github.barteksc.pdfviewer.source.FileSource}.
+ * Content of a URI can change without any trace in the URI, so a {@link com.github.barteksc.pdfviewer.source.UriSource}
+ * is only equal to itself.
+ * <p>
+ * Least recently used documents are closed when there are more than {@link #setMaxSize(int)} of them,
+ * all of them are closed when the system is running low on memory.
+ */
+public class DocumentCache implements ComponentCallbacks2 {
+
+    private static final int DEFAULT_MAX_SIZE = 4;
+
+    private static DocumentCache instance;
+
+    /** Idle documents in access order, least recently used first */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(DEFAULT_MAX_SIZE, 0.75f, true);
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private boolean keepThumbnails = true;
+
+    private DocumentCache() {
+    }
+
+    public static synchronized DocumentCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new DocumentCache();
+            context.getApplicationContext().registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    /** Maximum number of idle documents kept open (default 4) */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /** True if rendered thumbnails are kept with the document, so pages are not blank after returning to it */
+    public synchronized void setKeepThumbnails(boolean keepThumbnails) {
+        this.keepThumbnails = keepThumbnails;
+        if (!keepThumbnails) {
+            for (Entry entry : entries.values()) {
+                entry.recycleThumbnails();
+            }
+        }
+    }
+
+    synchronized boolean isKeepThumbnails() {
+        return keepThumbnails;
+    }
+
+    /** Close all idle documents */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /** @return the document removed from the cache or null if it's not cached */
+    synchronized Entry take(Key key) {
+        return entries.remove(key);
+    }
+
+    synchronized void put(Key key, PdfFile pdfFile, List<PagePart> thumbnails) {
+        Entry previous = entries.put(key, new Entry(pdfFile, thumbnails));
+        if (previous != null) {
+            previous.dispose();
+        }
+        trimToSize(maxSize);
+    }
+
+    private void trimToSize(int size) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > size && iterator.hasNext()) {
+            iterator.next().getValue().dispose();
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            // Documents are likely to be needed again when the user returns
+            for (Entry entry : entries.values()) {
+                entry.recycleThumbnails();
+            }
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(0);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    static class Entry {
+
+        final PdfFile pdfFile;
+
+        List<PagePart> thumbnails;
+
+        Entry(PdfFile pdfFile, List<PagePart> thumbnails) {
+            this.pdfFile = pdfFile;
+            this.thumbnails = thumbnails;
+        }
+
+        void recycleThumbnails() {
+            if (thumbnails == null) {
+                return;
+            }
+            for (PagePart part : thumbnails) {
+                part.getRenderedBitmap().recycle();
+            }
+            thumbnails = null;
+        }
+
+        void dispose() {
+            recycleThumbnails();
+            pdfFile.dispose();
+        }
+    }
+
+    /** Source and everything which affects the layout of the document */
+    static class Key {
+
+        private final DocumentSource source;
+
+        private final String password;
+
+        private final int[] userPages;
+
+        private final FitPolicy pageFitPolicy;
+
+        private final boolean swipeVertical;
+
+        private final int spacing;
+
+        private final boolean autoSpacing;
+
+        private final boolean fitEachPage;
+
+        Key(DocumentSource source, String password, int[] userPages, FitPolicy pageFitPolicy, boolean swipeVertical,
+            int spacing, boolean autoSpacing, boolean fitEachPage) {
+            this.source = source;
+            this.password = password;
+            this.userPages = userPages;
+            this.pageFitPolicy = pageFitPolicy;
+            this.swipeVertical = swipeVertical;
+            this.spacing = spacing;
+            this.autoSpacing = autoSpacing;
+            this.fitEachPage = fitEachPage;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return swipeVertical == key.swipeVertical && spacing == key.spacing && autoSpacing == key.autoSpacing
+                    && fitEachPage == key.fitEachPage && pageFitPolicy == key.pageFitPolicy
+                    && source.equals(key.source) && Arrays.equals(userPages, key.userPages)
+                    && (password == null ? key.password == null : password.equals(key.password));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = source.hashCode();
+            result = 31 * result + (password != null ? password.hashCode() : 0);
+            result = 31 * result + Arrays.hashCode(userPages);
+            result = 31 * result + pageFitPolicy.hashCode();
+            result = 31 * result + (swipeVertical ? 1 : 0);
+            result = 31 * result + spacing;
+            result = 31 * result + (autoSpacing ? 1 : 0);
+            result = 31 * result + (fitEachPage ? 1 : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.github.barteksc.pdfviewer.listener.OnLoadProgressListener.Stage;
+import com.github.barteksc.pdfviewer.source.DocumentSource;
+import com.github.barteksc.pdfviewer.util.Constants;
+import com.github.barteksc.pdfviewer.util.Tracing;
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+import com.shockwave.pdfium.util.Size;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens a document in stages: source → pdfium document → page metrics. With a fast start only
+ * the first page and its neighbours are measured before the document is shown, remaining pages
+ * are measured afterwards and their sizes are streamed to the {@link PDFView} in chunks. Cancellation is checked
+ * between stages and after every measured page, a document opened by a cancelled task is closed
+ * right away. Results and progress are delivered on the UI thread, the first render stage
+ * is reported by {@link PDFView}. All tasks share one executor sized by
+ * {@link Constants.Loading#THREAD_POOL_SIZE}.
+ */
+class DocumentOpenTask implements Runnable, PdfFile.PageMeasureListener {
+
+    private static final String TAG = DocumentOpenTask.class.getSimpleName();
+
+    /** Number of pages measured before their sizes are applied to the layout */
+    private static final int MEASURE_CHUNK_SIZE = 100;
+
+    private static ExecutorService executor;
+
+    private static final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean cancelled = false;
+
+    private final WeakReference<PDFView> pdfViewReference;
+
+    private final PdfiumCore pdfiumCore;
+    private final String password;
+    private final DocumentSource docSource;
+    private final int[] userPages;
+    /** Page to measure first, negative to measure all pages before the document is shown */
+    private final int fastStartPage;
+    private Future<?> future;
+
+    /** Last reported percent of measured pages, to not flood the UI thread with progress */
+    private int reportedPercent = -1;
+
+    /** Pages measured before the current call to {@link PdfFile#measurePageSizes}, and all pages to measure */
+    private int measuredPagesOffset = 0;
+    private int measuredPagesTotal = 0;
+
+    DocumentOpenTask(DocumentSource docSource, String password, int[] userPages, int fastStartPage, PDFView pdfView,
+                     PdfiumCore pdfiumCore) {
+        this.docSource = docSource;
+        this.userPages = userPages;
+        this.fastStartPage = fastStartPage;
+        this.pdfViewReference = new WeakReference<>(pdfView);
+        this.password = password;
+        this.pdfiumCore = pdfiumCore;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final int size = Math.max(1, Constants.Loading.THREAD_POOL_SIZE);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "PDF opener #" + count.incrementAndGet());
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    void execute() {
+        future = getExecutor().submit(this);
+    }
+
+    /** Abandon the task, queued task is removed, running task stops at the next stage */
+    void cancel() {
+        cancelled = true;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void run() {
+        Tracing.beginSection("DocumentOpenTask.run");
+        try {
+            open();
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void open() {
+        PdfDocument pdfDocument = null;
+        try {
+            PDFView pdfView = pdfViewReference.get();
+            if (pdfView == null) {
+                throw new NullPointerException("pdfView == null");
+            }
+            checkCancelled();
+            postProgress(Stage.DOCUMENT, 0, 1);
+            pdfDocument = docSource.createDocument(pdfView.getContext(), pdfiumCore, password);
+            checkCancelled();
+            postProgress(Stage.DOCUMENT, 1, 1);
+
+            PdfFile pdfFile = new PdfFile(pdfiumCore, pdfDocument, pdfView.getPageFitPolicy(), getViewSize(pdfView),
+                    userPages, pdfView.isSwipeVertical(), pdfView.getSpacingPx(), pdfView.isAutoSpacingEnabled(),
+                    pdfView.isFitEachPage(), fastStartPage, this);
+            pdfView = null;
+            checkCancelled();
+            // Read before the document is handed over, measured pages are changed on the UI thread
+            int firstMeasuredPage = pdfFile.getFirstMeasuredPage();
+            int lastMeasuredPage = pdfFile.getLastMeasuredPage();
+            postComplete(pdfFile);
+            // From now on the document is owned by the view and disposed in PDFView#recycle()
+            pdfDocument = null;
+
+            if (!pdfFile.isLayoutComplete()) {
+                measureRemainingPages(pdfFile, firstMeasuredPage, lastMeasuredPage);
+            }
+        } catch (CancellationException e) {
+            closeDocument(pdfDocument);
+        } catch (Throwable t) {
+            if (pdfDocument == null) {
+                // Document was shown already, pages which were not measured keep estimated sizes
+                Log.e(TAG, "Cannot measure pages", t);
+                return;
+            }
+            closeDocument(pdfDocument);
+            postError(t);
+        }
+    }
+
+    /**
+     * Measure pages after the measured ones first, they are the likely scroll direction,
+     * then the pages before them
+     */
+    private void measureRemainingPages(PdfFile pdfFile, int firstMeasuredPage, int lastMeasuredPage) {
+        int pagesCount = pdfFile.getPagesCount();
+        measuredPagesOffset = 0;
+        measuredPagesTotal = pagesCount - (lastMeasuredPage - firstMeasuredPage + 1);
+        reportedPercent = -1;
+
+        for (int from = lastMeasuredPage + 1; from < pagesCount; from += MEASURE_CHUNK_SIZE) {
+            int count = Math.min(MEASURE_CHUNK_SIZE, pagesCount - from);
+            postPageSizes(pdfFile, from, pdfFile.measurePageSizes(from, count, this));
+            measuredPagesOffset += count;
+        }
+        for (int to = firstMeasuredPage; to > 0; to -= MEASURE_CHUNK_SIZE) {
+            int from = Math.max(0, to - MEASURE_CHUNK_SIZE);
+            postPageSizes(pdfFile, from, pdfFile.measurePageSizes(from, to - from, this));
+            measuredPagesOffset += to - from;
+        }
+    }
+
+    @Override
+    public boolean onPageMeasured(int measured, int total) {
+        if (measuredPagesTotal > 0) {
+            measured += measuredPagesOffset;
+            total = measuredPagesTotal;
+        }
+        int percent = measured * 100 / total;
+        if (percent != reportedPercent) {
+            reportedPercent = percent;
+            postProgress(Stage.PAGE_METRICS, measured, total);
+        }
+        return !cancelled;
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    private void closeDocument(PdfDocument pdfDocument) {
+        if (pdfDocument != null) {
+            pdfiumCore.closeDocument(pdfDocument);
+        }
+    }
+
+    private Size getViewSize(PDFView pdfView) {
+        return new Size(pdfView.getWidth(), pdfView.getHeight());
+    }
+
+    private void postProgress(final Stage stage, final int progress, final int total) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                PDFView pdfView = pdfViewReference.get();
+                if (pdfView != null && !cancelled) {
+                    pdfView.callbacks.callOnLoadProgress(stage, progress, total);
+                }
+            }
+        });
+    }
+
+    private void postComplete(final PdfFile pdfFile) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                PDFView pdfView = pdfViewReference.get();
+                if (pdfView == null || cancelled) {
+                    pdfFile.dispose();
+                    return;
+                }
+                pdfView.loadComplete(pdfFile);
+            }
+        });
+    }
+
+    private void postPageSizes(final PdfFile pdfFile, final int fromPage, final List<Size> sizes) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                PDFView pdfView = pdfViewReference.get();
+                if (pdfView != null && !cancelled) {
+                    pdfView.onPageSizesMeasured(pdfFile, fromPage, sizes);
+                }
+            }
+        });
+    }
+
+    private void postError(final Throwable t) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                PDFView pdfView = pdfViewReference.get();
+                if (pdfView != null && !cancelled) {
+                    pdfView.loadError(t);
+                }
+            }
+        });
+    }
+}
@@ -28,10 +28,8 @@ import com.github.barteksc.pdfviewer.sign.FunctionBall;
 import com.github.barteksc.pdfviewer.sign.SignArea;
 import com.github.barteksc.pdfviewer.sign.WatermarkArea;
 import com.github.barteksc.pdfviewer.util.SnapEdge;
-import com.shockwave.pdfium.PdfDocument;
 import com.shockwave.pdfium.util.SizeF;
 import java.util.HashMap;
-import java.util.Iterator;
 
 import static com.github.barteksc.pdfviewer.sign.SignArea.SIGN_AREA_WIDTH_HEIGHT_RATIO;
 import static com.github.barteksc.pdfviewer.util.Constants.Pinch.MAXIMUM_ZOOM;
@@ -108,12 +106,18 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
             pageY = (int) pdfFile.getSecondaryPageOffset(page, pdfView.getZoom());
             pageX = (int) pdfFile.getPageOffset(page, pdfView.getZoom());
         }
-        for (PdfDocument.Link link : pdfFile.getPageLinks(page)) {
-            RectF mapped = pdfFile.mapRectToDevice(page, pageX, pageY, (int) pageSize.getWidth(),
-                    (int) pageSize.getHeight(), link.getBounds());
-            mapped.sort();
-            if (mapped.contains(mappedX, mappedY)) {
-                pdfView.callbacks.callLinkHandler(new LinkTapEvent(x, y, mappedX, mappedY, mapped, link));
+        // links are stored relatively to page size, so finding the tapped one needs no call to pdfium
+        float pageWidth = (int) pageSize.getWidth();
+        float pageHeight = (int) pageSize.getHeight();
+        float relativeX = (mappedX - pageX) / pageWidth;
+        float relativeY = (mappedY - pageY) / pageHeight;
+        for (PdfFile.PageLink pageLink : pdfFile.getRelativePageLinks(page)) {
+            RectF bounds = pageLink.getRelativeBounds();
+            if (bounds.contains(relativeX, relativeY)) {
+                RectF mapped = new RectF(pageX + bounds.left * pageWidth, pageY + bounds.top * pageHeight,
+                        pageX + bounds.right * pageWidth, pageY + bounds.bottom * pageHeight);
+                pdfView.callbacks.callLinkHandler(new LinkTapEvent(x, y, mappedX, mappedY, mapped,
+                        pageLink.getLink()));
                 return true;
             }
         }
@@ -172,6 +176,7 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
     @Override
     public boolean onDown(MotionEvent e) {
         animationManager.stopFling();
+        pdfView.requestRenderingPriority();
         if(!chkTouchInSignArea(e) && !chkTouchInWatermarkArea(e)) {
             cleanAreaInFocus();
         }
@@ -341,6 +346,7 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
         if (!enabled) {
             return false;
         }
+        long touchStart = System.nanoTime();
 
         boolean retVal = scaleGestureDetector.onTouchEvent(event);
         retVal = gestureDetector.onTouchEvent(event) || retVal;
@@ -357,6 +363,8 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
                 onScrollEnd(event);
             }
         }
+        pdfView.frameMetricsRecorder.touches.record(touchStart, System.nanoTime() - touchStart,
+                pdfView.getZoom(), pdfView.getCurrentPage());
         return retVal;
     }
 
@@ -495,6 +503,7 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
                 float ratio = (float) (newDiagonal / areaDiagonal);
 
                 pdfView.setWatermarkRatio(ratio);
+                // 縮放中的浮水印是即時繪出的，不需要重新錄製圖層
                 pdfView.invalidate();
             }
         }
@@ -530,27 +539,17 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
         return false;
     }
     private boolean isTouchInAllOtherSignArea(MotionEvent event) {
-        Iterator<String> mapIterator = mMapSignAreas.keySet().iterator();
-        while (mapIterator.hasNext()) {
-            String key = mapIterator.next();
-
-            SignArea area = mMapSignAreas.get(key);
-
-            if(area == null) { continue; }
-            if(area.getTag().equals(key)) {
-                int[] pagesOffset = pdfView.getPreviousPagesOffset();
-
-                float xOffset = pdfView.getCurrentXOffset();
-                float yOffset = pdfView.getCurrentYOffset();
-                float eventXOffset = event.getX() - xOffset;
-                float eventYOffset = event.getY() - yOffset;
+        float xOffset = pdfView.getCurrentXOffset();
+        float yOffset = pdfView.getCurrentYOffset();
+        float eventXOffset = event.getX() - xOffset;
+        float eventYOffset = event.getY() - yOffset;
 
-                if (isInAnSignArea(area, pagesOffset, eventXOffset, eventYOffset)) {
-                    mIsTouchInSignArea = true;
-                    mTagCurrentTouchArea = key;
-                    return true;
-                }
-            }
+        // 透過每頁的格子索引找出簽名框，不需要逐一檢查所有簽名框
+        SignArea area = pdfView.findSignAreaAt(eventXOffset, eventYOffset);
+        if(area != null) {
+            mIsTouchInSignArea = true;
+            mTagCurrentTouchArea = area.getTag();
+            return true;
         }
 
         return false;
@@ -628,7 +627,7 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
             }
 
             area.setLeft(newLeft).setTop(newTop).setRight(newRight).setBottom(newBottom);
-            pdfView.invalidate();
+            pdfView.invalidateFocusedSignArea();
         }
     }
     private void addSignArea() {
@@ -644,13 +643,12 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
             int bottom = area.getBottom() + 50;
             currentPageSignAreas.put(tag, new SignArea(tag, "yaerse@yahoo.com.tw",
                     left, top, right, bottom));
-            pdfView.invalidate();
+            pdfView.invalidateOverlays();
             mIsTouchInSignAreaAddBall = false;
         }
     }
     private void deleteSignArea() {
-        pdfView.getMapSignAreas().remove(mTagCurrentTouchArea);
-        pdfView.invalidate();
+        pdfView.removeSignArea(mTagCurrentTouchArea);
         mIsTouchInSignAreaDelBall = false;
         mIsTouchInSignArea = false;
     }
@@ -684,7 +682,7 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
                      setTop(area.getTop()).
                      setRight(area.getLeft() + newWidth).
                      setBottom(area.getTop() + newHeight);
-                pdfView.invalidate();
+                pdfView.invalidateFocusedSignArea();
             }
         }
     }
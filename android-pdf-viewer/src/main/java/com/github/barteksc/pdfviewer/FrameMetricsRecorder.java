@@ -0,0 +1,235 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+import com.github.barteksc.pdfviewer.model.FrameMetrics;
+
+/**
+ * Records the latest draws, touch events and page loads of a {@link PDFView} into ring buffers
+ * allocated up front, so recording doesn't allocate. While the view keeps drawing, a
+ * {@link Choreographer} callback compares timestamps of consecutive frames to count frames which
+ * took longer than the frame budget. The callback stops when a frame passes without a draw,
+ * so an idle view costs nothing. Frames are not observed below API 16.
+ */
+class FrameMetricsRecorder {
+
+    /** Number of the latest samples kept of each kind */
+    private static final int CAPACITY = 240;
+
+    /** A frame is over budget if it took longer than this many frame budgets */
+    private static final float OVER_BUDGET_RATIO = 1.5f;
+
+    final SampleRing draws = new SampleRing(CAPACITY, true);
+
+    final SampleRing touches = new SampleRing(CAPACITY, false);
+
+    final SampleRing pageLoads = new SampleRing(CAPACITY, false);
+
+    final SampleRing planning = new SampleRing(CAPACITY, false);
+
+    private final long frameBudget;
+
+    /** Created only on API 16+, Choreographer classes don't exist on older versions */
+    private final FrameObserver frameObserver;
+
+    private boolean frameCallbackPosted = false;
+
+    private boolean drawnSinceLastFrame = false;
+
+    /** Time of the previous observed frame, 0 if frames are not observed */
+    private long lastFrameTime = 0;
+
+    private long frames = 0;
+
+    private long framesOverBudget = 0;
+
+    private long droppedFrames = 0;
+
+    FrameMetricsRecorder(Context context) {
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        float refreshRate = windowManager != null ? windowManager.getDefaultDisplay().getRefreshRate() : 0;
+        frameBudget = (long) (1000000000 / (refreshRate >= 1 ? refreshRate : 60));
+        frameObserver = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? new FrameObserver(this) : null;
+    }
+
+    /** Called on the UI thread after the view was drawn */
+    void onDrawn(long startTime, float zoom, int page, int partsDrawn, int partsCulled) {
+        draws.record(startTime, System.nanoTime() - startTime, zoom, page, partsDrawn, partsCulled);
+        drawnSinceLastFrame = true;
+        if (!frameCallbackPosted && frameObserver != null) {
+            frameCallbackPosted = true;
+            frameObserver.post();
+        }
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        if (lastFrameTime != 0) {
+            long interval = frameTimeNanos - lastFrameTime;
+            frames++;
+            if (interval > frameBudget * OVER_BUDGET_RATIO) {
+                framesOverBudget++;
+                droppedFrames += Math.round((double) interval / frameBudget) - 1;
+            }
+        }
+
+        if (drawnSinceLastFrame) {
+            drawnSinceLastFrame = false;
+            lastFrameTime = frameTimeNanos;
+            frameObserver.post();
+        } else {
+            // Idle, the next draw starts a new sequence of frames
+            lastFrameTime = 0;
+            frameCallbackPosted = false;
+        }
+    }
+
+    /** Stop observing frames, called on the UI thread */
+    void stop() {
+        if (frameCallbackPosted) {
+            frameObserver.remove();
+            frameCallbackPosted = false;
+        }
+        lastFrameTime = 0;
+        drawnSinceLastFrame = false;
+    }
+
+    void reset() {
+        draws.clear();
+        touches.clear();
+        pageLoads.clear();
+        planning.clear();
+        frames = 0;
+        framesOverBudget = 0;
+        droppedFrames = 0;
+    }
+
+    FrameMetrics snapshot(PdfFile pdfFile) {
+        return new FrameMetrics((FrameMetrics.DrawSamples) draws.snapshot(), touches.snapshot(),
+                pageLoads.snapshot(), planning.snapshot(), frameBudget, frames, framesOverBudget, droppedFrames,
+                pdfFile != null ? pdfFile.getPagesCount() : 0,
+                pdfFile != null ? pdfFile.getMaxPageWidth() : 0,
+                pdfFile != null ? pdfFile.getMaxPageHeight() : 0);
+    }
+
+    private static class FrameObserver implements Choreographer.FrameCallback {
+
+        private final FrameMetricsRecorder recorder;
+
+        FrameObserver(FrameMetricsRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            recorder.onFrame(frameTimeNanos);
+        }
+    }
+
+    /**
+     * Fixed size buffer keeping the latest samples, older samples are overwritten.
+     * Synchronized because planning samples are recorded on the planning thread.
+     */
+    static class SampleRing {
+
+        private final long[] times;
+
+        private final long[] durations;
+
+        private final float[] zooms;
+
+        private final int[] pages;
+
+        /** Only for draws, null otherwise */
+        private final int[] partsDrawn;
+
+        private final int[] partsCulled;
+
+        /** Index where the next sample is written */
+        private int next = 0;
+
+        private int size = 0;
+
+        SampleRing(int capacity, boolean withParts) {
+            times = new long[capacity];
+            durations = new long[capacity];
+            zooms = new float[capacity];
+            pages = new int[capacity];
+            partsDrawn = withParts ? new int[capacity] : null;
+            partsCulled = withParts ? new int[capacity] : null;
+        }
+
+        void record(long startTime, long duration, float zoom, int page) {
+            record(startTime, duration, zoom, page, 0, 0);
+        }
+
+        synchronized void record(long startTime, long duration, float zoom, int page, int drawn, int culled) {
+            times[next] = startTime;
+            durations[next] = duration;
+            zooms[next] = zoom;
+            pages[next] = page;
+            if (partsDrawn != null) {
+                partsDrawn[next] = drawn;
+                partsCulled[next] = culled;
+            }
+            next = (next + 1) % times.length;
+            size = Math.min(size + 1, times.length);
+        }
+
+        synchronized void clear() {
+            next = 0;
+            size = 0;
+        }
+
+        /** Copy samples from the oldest to the newest */
+        synchronized FrameMetrics.Samples snapshot() {
+            long[] times = new long[size];
+            long[] durations = new long[size];
+            float[] zooms = new float[size];
+            int[] pages = new int[size];
+            int[] partsDrawn = this.partsDrawn != null ? new int[size] : null;
+            int[] partsCulled = this.partsCulled != null ? new int[size] : null;
+            int first = (next - size + this.times.length) % this.times.length;
+            for (int i = 0; i < size; i++) {
+                int index = (first + i) % this.times.length;
+                times[i] = this.times[index];
+                durations[i] = this.durations[index];
+                zooms[i] = this.zooms[index];
+                pages[i] = this.pages[index];
+                if (partsDrawn != null) {
+                    partsDrawn[i] = this.partsDrawn[index];
+                    partsCulled[i] = this.partsCulled[index];
+                }
+            }
+            if (partsDrawn != null) {
+                return new FrameMetrics.DrawSamples(times, durations, zooms, pages, partsDrawn, partsCulled);
+            }
+            return new FrameMetrics.Samples(times, durations, zooms, pages);
+        }
+    }
+}
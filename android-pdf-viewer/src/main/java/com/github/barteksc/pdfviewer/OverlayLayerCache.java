@@ -0,0 +1,130 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Build;
+import android.util.SparseArray;
+
+/**
+ * Keeps the overlays which are not in focus (watermark and sign areas) recorded as a {@link Picture}
+ * per page, so that drawing a frame only replays them with a translate instead of issuing
+ * every canvas call again. A layer is recorded again only after {@link #invalidate()} or when
+ * the zoom level or the area in focus differs from the one used during recording.
+ * Only layers of the {@link #MAX_LAYERS} most recently drawn pages are kept.
+ */
+class OverlayLayerCache {
+
+    /** Layers are drawn with a margin, so text below the last sign area of a page is not clipped */
+    private static final int MARGIN = 256;
+
+    /** Current page and the pages around it, which are shown again when swiping back and forth */
+    static final int MAX_LAYERS = 3;
+
+    private final SparseArray<Layer> layers = new SparseArray<>();
+
+    /** Incremented by every {@link #getLayer(int)}, to find the least recently used layer */
+    private long useCounter;
+
+    /**
+     * Pictures can be drawn on a hardware accelerated canvas since {@link Build.VERSION_CODES#M},
+     * on older versions overlays have to be drawn directly.
+     */
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    Layer getLayer(int page) {
+        Layer layer = layers.get(page);
+        if (layer == null) {
+            if (layers.size() >= MAX_LAYERS) {
+                removeLeastRecentlyUsed();
+            }
+            layer = new Layer();
+            layers.put(page, layer);
+        }
+        layer.lastUsed = ++useCounter;
+        return layer;
+    }
+
+    private void removeLeastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < layers.size(); i++) {
+            if (layers.valueAt(i).lastUsed < layers.valueAt(oldest).lastUsed) {
+                oldest = i;
+            }
+        }
+        layers.removeAt(oldest);
+    }
+
+    /** Call when an area was added, moved, resized or deleted */
+    void invalidate() {
+        for (int i = 0; i < layers.size(); i++) {
+            layers.valueAt(i).valid = false;
+        }
+    }
+
+    void recycle() {
+        layers.clear();
+    }
+
+    static class Layer {
+
+        private final Picture picture = new Picture();
+
+        private boolean valid = false;
+
+        private float zoom;
+
+        private String focusTag;
+
+        private boolean watermarkTouched;
+
+        private long lastUsed;
+
+        boolean isValidFor(float zoom, String focusTag, boolean watermarkTouched) {
+            return valid && this.zoom == zoom && this.watermarkTouched == watermarkTouched
+                    && this.focusTag.equals(focusTag);
+        }
+
+        /**
+         * Start recording the layer. Returned canvas is translated so that
+         * the page's top left corner is at (0, 0).
+         */
+        Canvas beginRecording(float zoom, String focusTag, boolean watermarkTouched, float width, float height) {
+            this.zoom = zoom;
+            this.focusTag = focusTag;
+            this.watermarkTouched = watermarkTouched;
+            Canvas canvas = picture.beginRecording((int) Math.ceil(width) + 2 * MARGIN,
+                    (int) Math.ceil(height) + 2 * MARGIN);
+            canvas.translate(MARGIN, MARGIN);
+            return canvas;
+        }
+
+        void endRecording() {
+            picture.endRecording();
+            valid = true;
+        }
+
+        /** Draw the layer with the page's top left corner at (0, 0) of the canvas */
+        void draw(Canvas canvas) {
+            canvas.translate(-MARGIN, -MARGIN);
+            canvas.drawPicture(picture);
+            canvas.translate(MARGIN, MARGIN);
+        }
+    }
+}
@@ -31,11 +31,12 @@ import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.SparseArray;
 import android.widget.RelativeLayout;
 import androidx.core.content.res.ResourcesCompat;
 
@@ -46,27 +47,35 @@ import com.github.barteksc.pdfviewer.listener.Callbacks;
 import com.github.barteksc.pdfviewer.listener.OnDrawListener;
 import com.github.barteksc.pdfviewer.listener.OnErrorListener;
 import com.github.barteksc.pdfviewer.listener.OnLoadCompleteListener;
+import com.github.barteksc.pdfviewer.listener.OnLoadProgressListener;
 import com.github.barteksc.pdfviewer.listener.OnLongPressListener;
 import com.github.barteksc.pdfviewer.listener.OnPageChangeListener;
 import com.github.barteksc.pdfviewer.listener.OnPageErrorListener;
 import com.github.barteksc.pdfviewer.listener.OnPageScrollListener;
 import com.github.barteksc.pdfviewer.listener.OnRenderListener;
 import com.github.barteksc.pdfviewer.listener.OnTapListener;
+import com.github.barteksc.pdfviewer.model.FrameMetrics;
 import com.github.barteksc.pdfviewer.model.PagePart;
+import com.github.barteksc.pdfviewer.model.RenderingMetrics;
 import com.github.barteksc.pdfviewer.scroll.ScrollHandle;
+import com.github.barteksc.pdfviewer.session.SessionRecorder;
 import com.github.barteksc.pdfviewer.sign.FunctionBall;
 import com.github.barteksc.pdfviewer.sign.SignArea;
+import com.github.barteksc.pdfviewer.sign.SignAreaIndex;
 import com.github.barteksc.pdfviewer.sign.WatermarkArea;
 import com.github.barteksc.pdfviewer.source.AssetSource;
 import com.github.barteksc.pdfviewer.source.ByteArraySource;
+import com.github.barteksc.pdfviewer.source.ByteBufferSource;
 import com.github.barteksc.pdfviewer.source.DocumentSource;
 import com.github.barteksc.pdfviewer.source.FileSource;
 import com.github.barteksc.pdfviewer.source.InputStreamSource;
+import com.github.barteksc.pdfviewer.source.RangeRequestSource;
 import com.github.barteksc.pdfviewer.source.UriSource;
 import com.github.barteksc.pdfviewer.util.Constants;
 import com.github.barteksc.pdfviewer.util.FitPolicy;
 import com.github.barteksc.pdfviewer.util.MathUtils;
 import com.github.barteksc.pdfviewer.util.SnapEdge;
+import com.github.barteksc.pdfviewer.util.Tracing;
 import com.github.barteksc.pdfviewer.util.Util;
 import com.shockwave.pdfium.PdfDocument;
 import com.shockwave.pdfium.PdfiumCore;
@@ -74,7 +83,11 @@ import com.shockwave.pdfium.util.Size;
 import com.shockwave.pdfium.util.SizeF;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -125,6 +138,9 @@ public class PDFView extends RelativeLayout {
     /** Rendered parts go to the cache manager */
     CacheManager cacheManager;
 
+    /** Recorded watermark and sign area overlays which are not in focus */
+    private OverlayLayerCache overlayLayerCache;
+
     /** Animation manager manage all offset and zoom animation */
     private AnimationManager animationManager;
 
@@ -159,8 +175,8 @@ public class PDFView extends RelativeLayout {
     /** Current state of the view */
     private State state = State.DEFAULT;
 
-    /** Async task used during the loading phase to decode a PDF document */
-    private DecodingAsyncTask decodingAsyncTask;
+    /** Task used during the loading phase to open a PDF document */
+    private DocumentOpenTask documentOpenTask;
 
     /** The thread {@link #renderingHandler} will run on */
     private HandlerThread renderingHandlerThread;
@@ -169,6 +185,14 @@ public class PDFView extends RelativeLayout {
 
     private PagesLoader pagesLoader;
 
+    /** The thread {@link #planningHandler} will run on */
+    private HandlerThread planningHandlerThread;
+    /** Handler planning parts to render from published viewport snapshots */
+    private PlanningHandler planningHandler;
+
+    /** Coalesces loading pages by offset into a single pass per frame */
+    private PagesLoadScheduler pagesLoadScheduler;
+
     Callbacks callbacks = new Callbacks();
 
     /** Paint object for drawing */
@@ -182,8 +206,40 @@ public class PDFView extends RelativeLayout {
 
     private boolean fitEachPage = false;
 
+    /** Engine shared with other views, null if this view has its own rendering threads */
+    private RenderingEngine renderingEngine;
+
+    /** True if the document should be kept in {@link DocumentCache} after recycle and taken from it on load */
+    private boolean useDocumentCache = false;
+
+    /** Key of the current document in {@link DocumentCache}, null if the cache is not used */
+    private DocumentCache.Key documentCacheKey;
+
+    /** True if the document should be shown after measuring only the default page and its neighbours */
+    private boolean fastStart = false;
+
     private int defaultPage = 0;
 
+    /** Time when loading of the current document started, for the open to first render benchmark */
+    private long loadStartTime = 0;
+
+    /** Time from loading of the current document to its first rendered part, -1 if not rendered yet */
+    private long timeToFirstRender = -1;
+
+    /** Rendering metrics of the current document, reset on load */
+    RenderingMetricsRecorder metricsRecorder;
+
+    /** Latest frames and UI work of the current document, reset on load */
+    FrameMetricsRecorder frameMetricsRecorder;
+
+    /** Recording of viewport changes and page loads, null if not recording */
+    private SessionRecorder sessionRecorder;
+
+    /** Read by the planning thread when queueing parts */
+    private volatile boolean debugOverlayEnabled = false;
+
+    private DebugOverlay debugOverlay;
+
     /** True if should scroll through pages vertically instead of horizontally */
     private boolean swipeVertical = true;
 
@@ -254,15 +310,20 @@ public class PDFView extends RelativeLayout {
         super(context, set);
 
         renderingHandlerThread = new HandlerThread("PDF renderer");
+        planningHandlerThread = new HandlerThread("PDF planner");
 
         if (isInEditMode()) {
             return;
         }
 
-        cacheManager = new CacheManager();
+        metricsRecorder = new RenderingMetricsRecorder();
+        frameMetricsRecorder = new FrameMetricsRecorder(context);
+        cacheManager = new CacheManager(metricsRecorder);
+        overlayLayerCache = new OverlayLayerCache();
         animationManager = new AnimationManager(this);
         dragPinchManager = new DragPinchManager(this, animationManager);
         pagesLoader = new PagesLoader(this);
+        pagesLoadScheduler = new PagesLoadScheduler(this);
 
         paint = new Paint();
         debugPaint = new Paint();
@@ -283,9 +344,31 @@ public class PDFView extends RelativeLayout {
         }
 
         recycled = false;
+        loadStartTime = SystemClock.elapsedRealtime();
+        timeToFirstRender = -1;
+        metricsRecorder.reset();
+        frameMetricsRecorder.reset();
+
+        if (useDocumentCache) {
+            documentCacheKey = new DocumentCache.Key(docSource, password, userPages, pageFitPolicy, swipeVertical,
+                    spacingPx, autoSpacing, fitEachPage);
+            DocumentCache.Entry entry = DocumentCache.getInstance(getContext()).take(documentCacheKey);
+            if (entry != null) {
+                if (entry.thumbnails != null) {
+                    for (PagePart part : entry.thumbnails) {
+                        cacheManager.cacheThumbnail(part);
+                    }
+                }
+                entry.pdfFile.recalculatePageSizes(new Size(getWidth(), getHeight()));
+                loadComplete(entry.pdfFile);
+                return;
+            }
+        }
+
         // Start decoding document
-        decodingAsyncTask = new DecodingAsyncTask(docSource, password, userPages, this, pdfiumCore);
-        decodingAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        documentOpenTask = new DocumentOpenTask(docSource, password, userPages, fastStart ? defaultPage : -1,
+                this, renderingEngine != null ? renderingEngine.getPdfiumCore() : pdfiumCore);
+        documentOpenTask.execute();
     }
 
     /**
@@ -424,18 +507,42 @@ public class PDFView extends RelativeLayout {
 
         animationManager.stopAll();
         dragPinchManager.disable();
+        pagesLoadScheduler.cancel();
+        pagesLoadScheduler.resetCounters();
+        frameMetricsRecorder.stop();
 
         // Stop tasks
         if (renderingHandler != null) {
             renderingHandler.stop();
-            renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
+            renderingHandler.cancelRenderingTasks();
+            renderingHandler.removeMessages(RenderingHandler.MSG_PREPARE_LINKS);
+        }
+        if (planningHandler != null) {
+            planningHandler.stop();
+            planningHandler.removeMessages(PlanningHandler.MSG_PLAN_TASK);
         }
-        if (decodingAsyncTask != null) {
-            decodingAsyncTask.cancel(true);
+        if (documentOpenTask != null) {
+            documentOpenTask.cancel();
+            documentOpenTask = null;
         }
 
+        // Keep the document open for the next load of the same source
+        if (pdfFile != null && documentCacheKey != null && state != State.ERROR && pdfFile.isLayoutComplete()) {
+            pdfFile.setMetricsRecorder(null);
+            DocumentCache documentCache = DocumentCache.getInstance(getContext());
+            documentCache.put(documentCacheKey, pdfFile,
+                    documentCache.isKeepThumbnails() ? cacheManager.takeThumbnails() : null);
+            pdfFile = null;
+        }
+        documentCacheKey = null;
+
         // Clear caches
         cacheManager.recycle();
+        overlayLayerCache.recycle();
+        mPageSignAreaIndexes.clear();
+        if (renderingEngine != null && renderingHandler != null) {
+            renderingEngine.unregister(renderingHandler);
+        }
 
         if (scrollHandle != null && isScrollHandleInit) {
             scrollHandle.destroyLayout();
@@ -447,6 +554,7 @@ public class PDFView extends RelativeLayout {
         }
 
         renderingHandler = null;
+        planningHandler = null;
         scrollHandle = null;
         isScrollHandleInit = false;
         currentXOffset = currentYOffset = 0;
@@ -481,6 +589,14 @@ public class PDFView extends RelativeLayout {
             }
             renderingHandlerThread = null;
         }
+        if (planningHandlerThread != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                planningHandlerThread.quitSafely();
+            } else {
+                planningHandlerThread.quit();
+            }
+            planningHandlerThread = null;
+        }
         super.onDetachedFromWindow();
     }
 
@@ -511,6 +627,8 @@ public class PDFView extends RelativeLayout {
 
         animationManager.stopAll();
         pdfFile.recalculatePageSizes(new Size(w, h));
+        overlayLayerCache.invalidate();
+        recordSessionLayout(false);
 
         if (swipeVertical) {
             currentXOffset = -relativeCenterPointInStripXOffset * pdfFile.getMaxPageWidth() + w * 0.5f;
@@ -622,41 +740,66 @@ public class PDFView extends RelativeLayout {
             return;
         }
 
-        // Moves the canvas before drawing any element
-        float currentXOffset = this.currentXOffset;
-        float currentYOffset = this.currentYOffset;
-        canvas.translate(currentXOffset, currentYOffset);
-
-        // Draws thumbnails
-        for (PagePart part : cacheManager.getThumbnails()) {
-            drawPart(canvas, part);
+        Tracing.beginSection("PDFView.onDraw");
+        try {
+            long drawStart = System.nanoTime();
+            int partsDrawn = 0;
+            int partsCulled = 0;
+
+            // Moves the canvas before drawing any element
+            float currentXOffset = this.currentXOffset;
+            float currentYOffset = this.currentYOffset;
+            canvas.translate(currentXOffset, currentYOffset);
+
+            // Draws thumbnails
+            for (PagePart part : cacheManager.getThumbnails()) {
+                if (drawPart(canvas, part)) {
+                    partsDrawn++;
+                } else {
+                    partsCulled++;
+                }
+            }
 
-        }
+            // Draws parts
+            for (PagePart part : cacheManager.getPageParts()) {
+                if (drawPart(canvas, part)) {
+                    partsDrawn++;
+                } else {
+                    partsCulled++;
+                }
+                if (callbacks.getOnDrawAll() != null
+                        && !onDrawPagesNums.contains(part.getPage())) {
+                    onDrawPagesNums.add(part.getPage());
+                }
+            }
 
-        // Draws parts
-        for (PagePart part : cacheManager.getPageParts()) {
-            drawPart(canvas, part);
-            if (callbacks.getOnDrawAll() != null
-                    && !onDrawPagesNums.contains(part.getPage())) {
-                onDrawPagesNums.add(part.getPage());
+            for (Integer page : onDrawPagesNums) {
+                drawWithListener(canvas, page, callbacks.getOnDrawAll());
             }
-        }
+            onDrawPagesNums.clear();
 
-        for (Integer page : onDrawPagesNums) {
-            drawWithListener(canvas, page, callbacks.getOnDrawAll());
-        }
-        onDrawPagesNums.clear();
+            drawWithListener(canvas, currentPage, callbacks.getOnDraw());
 
-        drawWithListener(canvas, currentPage, callbacks.getOnDraw());
+            //20201201: JLin Added
+            drawOverlays(canvas);
+            drawInFocusArea(canvas);
+            //
 
-        //20201201: JLin Added
-        drawWatermark(canvas);
-        drawAllOtherSignAreas(canvas);
-        drawInFocusArea(canvas);
-        //
+            if (debugOverlayEnabled && renderingHandler != null) {
+                debugOverlay.drawQueuedTasks(canvas, renderingHandler, pdfFile);
+            }
+
+            // Restores the canvas position
+            canvas.translate(-currentXOffset, -currentYOffset);
+
+            if (debugOverlayEnabled && renderingHandler != null) {
+                debugOverlay.drawHud(canvas, renderingHandler, pdfFile);
+            }
 
-        // Restores the canvas position
-        canvas.translate(-currentXOffset, -currentYOffset);
+            frameMetricsRecorder.onDrawn(drawStart, zoom, currentPage, partsDrawn, partsCulled);
+        } finally {
+            Tracing.endSection();
+        }
     }
 
     private void drawWithListener(Canvas canvas, int page, OnDrawListener listener) {
@@ -682,14 +825,18 @@ public class PDFView extends RelativeLayout {
         }
     }
 
-    /** Draw a given PagePart on the canvas */
-    private void drawPart(Canvas canvas, PagePart part) {
+    /**
+     * Draw a given PagePart on the canvas
+     *
+     * @return false if the part was not drawn because it is recycled or off screen
+     */
+    private boolean drawPart(Canvas canvas, PagePart part) {
         // Can seem strange, but avoid lot of calls
         RectF pageRelativeBounds = part.getPageRelativeBounds();
         Bitmap renderedBitmap = part.getRenderedBitmap();
 
         if (renderedBitmap.isRecycled()) {
-            return;
+            return false;
         }
 
         // Move to the target page
@@ -729,36 +876,39 @@ public class PDFView extends RelativeLayout {
         if (translationX + dstRect.left >= getWidth() || translationX + dstRect.right <= 0 ||
                 translationY + dstRect.top >= getHeight() || translationY + dstRect.bottom <= 0) {
             canvas.translate(-localTranslationX, -localTranslationY);
-            return;
+            return false;
         }
 
         canvas.drawBitmap(renderedBitmap, srcRect, dstRect, paint);
 
-        if (Constants.DEBUG_MODE) {
+        if (debugOverlayEnabled) {
+            debugOverlay.drawPart(canvas, part, dstRect);
+        } else if (Constants.DEBUG_MODE) {
             debugPaint.setColor(part.getPage() % 2 == 0 ? Color.RED : Color.BLUE);
             canvas.drawRect(dstRect, debugPaint);
         }
 
         // Restore the canvas position
         canvas.translate(-localTranslationX, -localTranslationY);
-
+        return true;
     }
 
     /**
      * Load all the parts around the center of the screen,
      * taking into account X and Y offsets, zoom level, and
-     * the current page displayed
+     * the current page displayed. Parts are planned on the planner thread
+     * from a snapshot of the current viewport.
      */
     public void loadPages() {
-        if (pdfFile == null || renderingHandler == null) {
+        if (pdfFile == null || renderingHandler == null || planningHandler == null) {
             return;
         }
 
-        // Cancel all current tasks
-        renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
-        cacheManager.makeANewSet();
-
-        pagesLoader.loadPages();
+        planningHandler.publish(new ViewportSnapshot(pdfFile, renderingHandler, currentXOffset, currentYOffset,
+                zoom, getWidth(), getHeight(), swipeVertical, bestQuality, annotationRendering));
+        if (sessionRecorder != null) {
+            sessionRecorder.recordLoadPages(currentXOffset, currentYOffset, zoom);
+        }
         redraw();
     }
 
@@ -767,12 +917,26 @@ public class PDFView extends RelativeLayout {
         state = State.LOADED;
 
         this.pdfFile = pdfFile;
+        pdfFile.setMetricsRecorder(metricsRecorder);
+        recordSessionLayout(true);
+
+        if (renderingEngine != null) {
+            renderingHandler = new RenderingHandler(renderingEngine.getRenderingLooper(), this, renderingEngine);
+            renderingEngine.register(renderingHandler, cacheManager);
+            planningHandler = new PlanningHandler(renderingEngine.getPlanningLooper(), this, pagesLoader);
+        } else {
+            if (!renderingHandlerThread.isAlive()) {
+                renderingHandlerThread.start();
+            }
+            renderingHandler = new RenderingHandler(renderingHandlerThread.getLooper(), this);
 
-        if (!renderingHandlerThread.isAlive()) {
-            renderingHandlerThread.start();
+            if (!planningHandlerThread.isAlive()) {
+                planningHandlerThread.start();
+            }
+            planningHandler = new PlanningHandler(planningHandlerThread.getLooper(), this, pagesLoader);
         }
-        renderingHandler = new RenderingHandler(renderingHandlerThread.getLooper(), this);
         renderingHandler.start();
+        planningHandler.start();
 
         if (scrollHandle != null) {
             scrollHandle.setupLayout(this);
@@ -782,6 +946,7 @@ public class PDFView extends RelativeLayout {
         dragPinchManager.enable();
 
         callbacks.callOnLoadComplete(pdfFile.getPagesCount());
+        callbacks.callOnLoadProgress(OnLoadProgressListener.Stage.FIRST_RENDER, 0, 1);
 
         jumpTo(defaultPage, false);
     }
@@ -813,6 +978,12 @@ public class PDFView extends RelativeLayout {
         // when it is first rendered part
         if (state == State.LOADED) {
             state = State.SHOWN;
+            timeToFirstRender = SystemClock.elapsedRealtime() - loadStartTime;
+            if (Constants.DEBUG_MODE) {
+                Log.d(TAG, "Open to first render: " + timeToFirstRender + " ms, pages: " + pdfFile.getPagesCount()
+                        + ", layout complete: " + pdfFile.isLayoutComplete());
+            }
+            callbacks.callOnLoadProgress(OnLoadProgressListener.Stage.FIRST_RENDER, 1, 1);
             callbacks.callOnRender(pdfFile.getPagesCount());
         }
 
@@ -820,10 +991,109 @@ public class PDFView extends RelativeLayout {
             cacheManager.cacheThumbnail(part);
         } else {
             cacheManager.cachePart(part);
+            if (renderingEngine != null) {
+                renderingEngine.trimMemory();
+            }
         }
         redraw();
     }
 
+    /**
+     * Called when sizes of pages which were estimated during a fast start are measured.
+     * The layout is recalculated and the current page is kept at the same place on the screen.
+     */
+    void onPageSizesMeasured(PdfFile pdfFile, int fromPage, List<Size> sizes) {
+        if (pdfFile != this.pdfFile) {
+            return;
+        }
+
+        float primaryOffset = swipeVertical ? currentYOffset : currentXOffset;
+        float oldPageOffset = pdfFile.getPageOffset(currentPage, zoom);
+        float oldPageLength = pdfFile.getPageLength(currentPage, zoom);
+        float positionInPage = oldPageLength > 0 ? (-primaryOffset - oldPageOffset) / oldPageLength : 0;
+
+        pdfFile.applyPageSizes(fromPage, sizes, new Size(getWidth(), getHeight()));
+        overlayLayerCache.invalidate();
+        if (sessionRecorder != null) {
+            // Only the measured range, the rest of the layout didn't change
+            sessionRecorder.recordPageSizes(fromPage, sizes.size(), pdfFile.getOriginalPageSizes());
+        }
+
+        float newOffset = -(pdfFile.getPageOffset(currentPage, zoom)
+                + positionInPage * pdfFile.getPageLength(currentPage, zoom));
+        if (swipeVertical) {
+            moveTo(currentXOffset, newOffset);
+        } else {
+            moveTo(newOffset, currentYOffset);
+        }
+        loadPageByOffset();
+    }
+
+    /**
+     * @return time in milliseconds from loading of the document to its first rendered part,
+     * -1 if the document was not rendered yet
+     */
+    public long getTimeToFirstRender() {
+        return timeToFirstRender;
+    }
+
+    /**
+     * @return snapshot of rendering metrics of the current document, they are kept after
+     * {@link #recycle()} until the next document is loaded
+     */
+    public RenderingMetrics getRenderingMetrics() {
+        return metricsRecorder.snapshot(timeToFirstRender);
+    }
+
+    /**
+     * @return snapshot of the latest frames, touch events and page loads of the current document,
+     * they are kept after {@link #recycle()} until the next document is loaded
+     */
+    public FrameMetrics getFrameMetrics() {
+        return frameMetricsRecorder.snapshot(pdfFile);
+    }
+
+    /**
+     * Start recording offsets, zoom changes and page loads, with layouts of loaded documents,
+     * for offline replay. A running recording is discarded. The recording is kept in memory
+     * until {@link #stopSessionRecording(OutputStream)} is called, it continues across documents.
+     */
+    public void startSessionRecording() {
+        sessionRecorder = new SessionRecorder(Constants.PART_SIZE, Constants.THUMBNAIL_RATIO,
+                pagesLoader.getPreloadOffset(), Constants.Cache.CACHE_SIZE, Constants.Cache.THUMBNAILS_CACHE_SIZE);
+        recordSessionLayout(true);
+    }
+
+    /**
+     * Stop recording and write the recording, it can be read with
+     * {@link com.github.barteksc.pdfviewer.session.RecordedSession#read(InputStream)}
+     *
+     * @throws IllegalStateException if the recording was not started
+     */
+    public void stopSessionRecording(OutputStream outputStream) throws IOException {
+        if (sessionRecorder == null) {
+            throw new IllegalStateException("Session recording was not started");
+        }
+        SessionRecorder recorder = sessionRecorder;
+        sessionRecorder = null;
+        recorder.writeTo(outputStream);
+    }
+
+    public boolean isSessionRecording() {
+        return sessionRecorder != null;
+    }
+
+    /** @param documentLoaded true if the document was just loaded, false if it was laid out again */
+    private void recordSessionLayout(boolean documentLoaded) {
+        if (sessionRecorder == null || pdfFile == null) {
+            return;
+        }
+        sessionRecorder.recordLayout(documentLoaded, pageFitPolicy, fitEachPage, swipeVertical, spacingPx,
+                autoSpacing, getWidth(), getHeight(), pdfFile.getOriginalPageSizes());
+        sessionRecorder.recordZoom(zoom);
+        sessionRecorder.recordMove(currentXOffset, currentYOffset);
+    }
+
     public void moveTo(float offsetX, float offsetY) {
         moveTo(offsetX, offsetY, true);
     }
@@ -905,6 +1175,9 @@ public class PDFView extends RelativeLayout {
 
         currentXOffset = offsetX;
         currentYOffset = offsetY;
+        if (sessionRecorder != null) {
+            sessionRecorder.recordMove(offsetX, offsetY);
+        }
         float positionOffset = getPositionOffset();
 
         if (moveHandle && scrollHandle != null && !documentFitsView()) {
@@ -916,10 +1189,19 @@ public class PDFView extends RelativeLayout {
         redraw();
     }
 
+    /**
+     * Request loading pages for the current offset. Requests are coalesced,
+     * so pages are planned at most once per frame.
+     */
     void loadPageByOffset() {
-        if (0 == pdfFile.getPagesCount()) {
+        pagesLoadScheduler.schedule();
+    }
+
+    void performLoadPageByOffset() {
+        if (pdfFile == null || 0 == pdfFile.getPagesCount()) {
             return;
         }
+        long loadStart = System.nanoTime();
 
         float offset, screenCenter;
         if (swipeVertical) {
@@ -937,6 +1219,7 @@ public class PDFView extends RelativeLayout {
         } else {
             loadPages();
         }
+        frameMetricsRecorder.pageLoads.record(loadStart, System.nanoTime() - loadStart, zoom, currentPage);
     }
 
     /**
@@ -1043,6 +1326,9 @@ public class PDFView extends RelativeLayout {
      */
     public void zoomTo(float zoom) {
         this.zoom = zoom;
+        if (sessionRecorder != null) {
+            sessionRecorder.recordZoom(zoom);
+        }
     }
 
     /**
@@ -1104,6 +1390,19 @@ public class PDFView extends RelativeLayout {
         return currentPage;
     }
 
+    /** Number of times loading pages by offset was requested since the document was loaded */
+    public long getPageLoadRequestCount() {
+        return pagesLoadScheduler.getRequestedCount();
+    }
+
+    /**
+     * Number of times pages were actually loaded by offset since the document was loaded,
+     * requests made during the same frame are coalesced into one pass
+     */
+    public long getPageLoadPassCount() {
+        return pagesLoadScheduler.getExecutedCount();
+    }
+
     public float getCurrentXOffset() {
         return currentXOffset;
     }
@@ -1266,6 +1565,58 @@ public class PDFView extends RelativeLayout {
         return fitEachPage;
     }
 
+    private void setRenderingEngine(RenderingEngine renderingEngine) {
+        this.renderingEngine = renderingEngine;
+    }
+
+    /** @return engine shared with other views, null if this view has its own rendering threads */
+    public RenderingEngine getRenderingEngine() {
+        return renderingEngine;
+    }
+
+    /**
+     * Show the state of parts, the rendering queue and the cache over the document, for tuning
+     * {@link Constants#PART_SIZE} and cache sizes. Parts waiting for rendering are outlined only
+     * if they were queued while the overlay was enabled.
+     */
+    public void setDebugOverlayEnabled(boolean enabled) {
+        if (enabled && debugOverlay == null) {
+            debugOverlay = new DebugOverlay(this);
+        }
+        debugOverlayEnabled = enabled;
+        redraw();
+    }
+
+    public boolean isDebugOverlayEnabled() {
+        return debugOverlayEnabled;
+    }
+
+    /**
+     * Render this view before other views sharing the same {@link RenderingEngine},
+     * called automatically when the view is touched
+     */
+    public void requestRenderingPriority() {
+        if (renderingEngine != null && renderingHandler != null) {
+            renderingEngine.setPriority(renderingHandler);
+        }
+    }
+
+    private void setUseDocumentCache(boolean useDocumentCache) {
+        this.useDocumentCache = useDocumentCache;
+    }
+
+    public boolean isUseDocumentCache() {
+        return useDocumentCache;
+    }
+
+    private void setFastStart(boolean fastStart) {
+        this.fastStart = fastStart;
+    }
+
+    public boolean isFastStart() {
+        return fastStart;
+    }
+
     public boolean isPageSnap() {
         return pageSnap;
     }
@@ -1317,6 +1668,11 @@ public class PDFView extends RelativeLayout {
         return new Configurator(new UriSource(uri));
     }
 
+    /** Use buffer as the pdf source, content of a direct buffer is passed to native code without copying it to Java heap */
+    public Configurator fromByteBuffer(ByteBuffer buffer) {
+        return new Configurator(new ByteBufferSource(buffer));
+    }
+
     /** Use bytearray as the pdf source, documents is not saved */
     public Configurator fromBytes(byte[] bytes) {
         return new Configurator(new ByteArraySource(bytes));
@@ -1327,6 +1683,22 @@ public class PDFView extends RelativeLayout {
         return new Configurator(new InputStreamSource(stream));
     }
 
+    /**
+     * Use stream as the pdf source. If spoolToFile is true, stream is written to a temp file
+     * instead of a bytearray, so memory usage does not grow with the document size
+     */
+    public Configurator fromStream(InputStream stream, boolean spoolToFile) {
+        return new Configurator(new InputStreamSource(stream, spoolToFile));
+    }
+
+    /**
+     * Use remote file as the pdf source, it is downloaded with HTTP range requests
+     * and cached in chunks, see {@link RangeRequestSource}
+     */
+    public Configurator fromUrl(URL url) {
+        return new Configurator(new RangeRequestSource(url));
+    }
+
     /** Use custom source as pdf source */
     public Configurator fromSource(DocumentSource docSource) {
         return new Configurator(docSource);
@@ -1350,6 +1722,8 @@ public class PDFView extends RelativeLayout {
 
         private OnLoadCompleteListener onLoadCompleteListener;
 
+        private OnLoadProgressListener onLoadProgressListener;
+
         private OnErrorListener onErrorListener;
 
         private OnPageChangeListener onPageChangeListener;
@@ -1386,6 +1760,12 @@ public class PDFView extends RelativeLayout {
 
         private boolean fitEachPage = false;
 
+        private boolean fastStart = false;
+
+        private boolean useDocumentCache = false;
+
+        private RenderingEngine renderingEngine = null;
+
         private boolean pageFling = false;
 
         private boolean pageSnap = false;
@@ -1431,6 +1811,11 @@ public class PDFView extends RelativeLayout {
             return this;
         }
 
+        public Configurator onLoadProgress(OnLoadProgressListener onLoadProgressListener) {
+            this.onLoadProgressListener = onLoadProgressListener;
+            return this;
+        }
+
         public Configurator onPageScroll(OnPageScrollListener onPageScrollListener) {
             this.onPageScrollListener = onPageScrollListener;
             return this;
@@ -1516,6 +1901,30 @@ public class PDFView extends RelativeLayout {
             return this;
         }
 
+        /**
+         * Show the document after measuring only the default page and its neighbours,
+         * sizes of other pages are estimated until they are measured in the background
+         */
+        public Configurator fastStart(boolean fastStart) {
+            this.fastStart = fastStart;
+            return this;
+        }
+
+        /** Share rendering threads, pdfium and memory for rendered parts with other views using the same engine */
+        public Configurator renderingEngine(RenderingEngine renderingEngine) {
+            this.renderingEngine = renderingEngine;
+            return this;
+        }
+
+        /**
+         * Keep the document open in {@link DocumentCache} after the view is recycled,
+         * so loading the same source again does not open and measure it again
+         */
+        public Configurator useDocumentCache(boolean useDocumentCache) {
+            this.useDocumentCache = useDocumentCache;
+            return this;
+        }
+
         public Configurator pageSnap(boolean pageSnap) {
             this.pageSnap = pageSnap;
             return this;
@@ -1543,6 +1952,7 @@ public class PDFView extends RelativeLayout {
             }
             PDFView.this.recycle();
             PDFView.this.callbacks.setOnLoadComplete(onLoadCompleteListener);
+            PDFView.this.callbacks.setOnLoadProgress(onLoadProgressListener);
             PDFView.this.callbacks.setOnError(onErrorListener);
             PDFView.this.callbacks.setOnDraw(onDrawListener);
             PDFView.this.callbacks.setOnDrawAll(onDrawAllListener);
@@ -1565,6 +1975,9 @@ public class PDFView extends RelativeLayout {
             PDFView.this.setAutoSpacing(autoSpacing);
             PDFView.this.setPageFitPolicy(pageFitPolicy);
             PDFView.this.setFitEachPage(fitEachPage);
+            PDFView.this.setFastStart(fastStart);
+            PDFView.this.setUseDocumentCache(useDocumentCache);
+            PDFView.this.setRenderingEngine(renderingEngine);
             PDFView.this.setPageSnap(pageSnap);
             PDFView.this.setPageFling(pageFling);
 
@@ -1578,20 +1991,23 @@ public class PDFView extends RelativeLayout {
 
     //20201201: JLin Added
     private WatermarkArea mWatermarkArea = null;
+    // 浮水印圖片只解碼一次，錄製好的圖層會參考到這張圖片
+    private Bitmap mWatermarkBitmap = null;
     private float mWatermarkRatio = 1;
     private HashMap<Integer, HashMap<String, SignArea>> mMapPageSignAreas = new HashMap<>();
+    // 每頁簽名框的格子索引，用來加速觸碰判斷
+    private SparseArray<SignAreaIndex> mPageSignAreaIndexes = new SparseArray<>();
 
     // 共用的函式
-    // 計算目前頁面之前所有頁面的寬度或高度
+    // 計算目前頁面之前所有頁面的寬度或高度，使用 PdfFile 預先累加好的長度
     public int[] getPreviousPagesOffset() {
         int[] offset = {0, 0};      // offset[0] -> offsetX / offset[1] -> offsetY
-        for(int i = 0; i < currentPage; i++) {
-            SizeF size = getPageSize(currentPage);
-            if(swipeVertical) {
-                offset[1] += size.getHeight() * zoom;
-            } else {
-                offset[0] += size.getWidth() * zoom;
-            }
+        if(pdfFile == null) { return offset; }
+        int length = (int) pdfFile.getPreviousPagesLength(currentPage, zoom);
+        if(swipeVertical) {
+            offset[1] = length;
+        } else {
+            offset[0] = length;
         }
         return offset;
     }
@@ -1608,6 +2024,57 @@ public class PDFView extends RelativeLayout {
         return offset;
     }
 
+    // 在外部新增、移動、縮放或刪除簽名框/浮水印後呼叫，讓錄製好的圖層重新錄製
+    public void invalidateOverlays() {
+        overlayLayerCache.invalidate();
+        for(int i = 0; i < mPageSignAreaIndexes.size(); i++) {
+            mPageSignAreaIndexes.valueAt(i).invalidate();
+        }
+        invalidate();
+    }
+
+    // 取得焦點的簽名框移動或縮放後呼叫。焦點區域是即時繪出的，不在錄製好的圖層中，
+    // 只需要重建目前頁面的索引；焦點改變時 focusTag 不同，圖層會自動重新錄製
+    void invalidateFocusedSignArea() {
+        SignAreaIndex index = mPageSignAreaIndexes.get(currentPage);
+        if(index != null) {
+            index.invalidate();
+        }
+        invalidate();
+    }
+
+    // 繪出沒有取得焦點的浮水印與簽名框，錄製成每頁一個圖層後只需要平移重播
+    private void drawOverlays(Canvas canvas) {
+        String focusTag = dragPinchManager.getCurrentTouchAreaTag();
+        boolean watermarkTouched = dragPinchManager.isTouchInWatermark();
+        if (!OverlayLayerCache.isSupported() || !canvas.isHardwareAccelerated()
+                || dragPinchManager.isTouchInWatermarkZoomBall()) {
+            drawWatermark(canvas);
+            drawAllOtherSignAreas(canvas);
+            return;
+        }
+
+        int[] pagesOffset = getPreviousPagesOffset();
+        float[] spaceOffset = getEachPageSpaceOffset();
+        float layerX = pagesOffset[0] + spaceOffset[0];
+        float layerY = pagesOffset[1] + spaceOffset[1];
+
+        OverlayLayerCache.Layer layer = overlayLayerCache.getLayer(currentPage);
+        if (!layer.isValidFor(zoom, focusTag, watermarkTouched)) {
+            SizeF pageSize = getPageSize(currentPage);
+            Canvas recordingCanvas = layer.beginRecording(zoom, focusTag, watermarkTouched,
+                    toCurrentScale(pageSize.getWidth()), toCurrentScale(pageSize.getHeight()));
+            recordingCanvas.translate(-layerX, -layerY);
+            drawWatermark(recordingCanvas);
+            drawAllOtherSignAreas(recordingCanvas);
+            layer.endRecording();
+        }
+
+        canvas.translate(layerX, layerY);
+        layer.draw(canvas);
+        canvas.translate(-layerX, -layerY);
+    }
+
     // 繪出取得焦點的區域
     private void drawInFocusArea(Canvas canvas) {
         String key = dragPinchManager.getCurrentTouchAreaTag();
@@ -1649,12 +2116,17 @@ public class PDFView extends RelativeLayout {
     //////
 
     // 浮水印
-    public void setWatermarkArea(WatermarkArea area) { mWatermarkArea = area; }
+    public void setWatermarkArea(WatermarkArea area) {
+        mWatermarkArea = area;
+        recycleWatermarkBitmap();
+        overlayLayerCache.invalidate();
+    }
     public WatermarkArea getWatermarkArea() { return mWatermarkArea; }
     public void showWatermark(int watermarkRes) {
         String tag = String.valueOf(System.currentTimeMillis());
         mWatermarkArea = new WatermarkArea(tag, watermarkRes);
-        invalidate();
+        recycleWatermarkBitmap();
+        invalidateOverlays();
     }
     public void setWatermarkRatio(float ratio) { this.mWatermarkRatio = ratio; }
     private void drawWatermark(Canvas canvas) {
@@ -1669,7 +2141,7 @@ public class PDFView extends RelativeLayout {
         int[] pagesOffset = getPreviousPagesOffset();
         float[] spaceOffset = getEachPageSpaceOffset();
         SizeF pageSize = getPageSize(getCurrentPage());
-        Bitmap bitmap = BitmapFactory.decodeResource(getResources(), mWatermarkArea.getWatermarkRes());
+        Bitmap bitmap = getWatermarkBitmap();
 
         int srcLeft = 0;
         int srcTop = 0;
@@ -1699,7 +2171,18 @@ public class PDFView extends RelativeLayout {
             watermarkPaint = mWatermarkArea.getWatermarkPaint(255);
         }
         canvas.drawBitmap(bitmap, mWatermarkSrcRect, watermarkDestRect, watermarkPaint);
-        bitmap.recycle();
+    }
+    private Bitmap getWatermarkBitmap() {
+        if(mWatermarkBitmap == null) {
+            mWatermarkBitmap = BitmapFactory.decodeResource(getResources(), mWatermarkArea.getWatermarkRes());
+        }
+        return mWatermarkBitmap;
+    }
+    private void recycleWatermarkBitmap() {
+        if(mWatermarkBitmap != null) {
+            mWatermarkBitmap.recycle();
+            mWatermarkBitmap = null;
+        }
     }
     private void drawWatermarkOutline(Canvas canvas) {
         if(mWatermarkArea == null) { return; }
@@ -1727,6 +2210,8 @@ public class PDFView extends RelativeLayout {
     /////
 
     // 簽名框
+    // 回傳的 Map 只用來讀取，直接修改後錄製好的圖層與觸碰索引不會更新，
+    // 請改用 addAnSignArea/removeSignArea/clearSignAreas，或修改後呼叫 invalidateOverlays()
     public HashMap<String, SignArea> getMapSignAreas() {
         return mMapPageSignAreas.get(currentPage);
     }
@@ -1736,6 +2221,19 @@ public class PDFView extends RelativeLayout {
     public HashMap<String, SignArea> getCurrentPageMapSignAreas() {
         return mMapPageSignAreas.get(currentPage);
     }
+    // 找出目前頁面中包含此點的簽名框，x, y 為整份文件的座標
+    public SignArea findSignAreaAt(float x, float y) {
+        HashMap<String, SignArea> mapSignAreas = mMapPageSignAreas.get(currentPage);
+        if(mapSignAreas == null || mapSignAreas.size() == 0) { return null; }
+
+        SignAreaIndex index = mPageSignAreaIndexes.get(currentPage);
+        if(index == null) {
+            index = new SignAreaIndex();
+            mPageSignAreaIndexes.put(currentPage, index);
+        }
+        int[] pagesOffset = getPreviousPagesOffset();
+        return index.findAreaAt(mapSignAreas, (x - pagesOffset[0]) / zoom, (y - pagesOffset[1]) / zoom);
+    }
     public void addAnSignArea(String tag, String email, int left, int top, int right, int bottom) {
         HashMap<String, SignArea> mapSignAreas = mMapPageSignAreas.get(currentPage);
         if(mapSignAreas == null) {
@@ -1743,7 +2241,7 @@ public class PDFView extends RelativeLayout {
             mMapPageSignAreas.put(currentPage, mapSignAreas);
         }
         mapSignAreas.put(tag, new SignArea(tag, email, left, top, right, bottom));
-        invalidate();
+        invalidateOverlays();
 
         // 因為這些程式碼執行的時間很短，所以timestamp可能會一樣
         // 所以需要等待一些時間，讓timestamp都不一致
@@ -1760,7 +2258,7 @@ public class PDFView extends RelativeLayout {
             mMapPageSignAreas.put(pageNum, mapSignAreas);
         }
         mapSignAreas.put(tag, new SignArea(tag, email, left, top, right, bottom));
-        invalidate();
+        invalidateOverlays();
 
         // 因為這些程式碼執行的時間很短，所以timestamp可能會一樣
         // 所以需要等待一些時間，讓timestamp都不一致
@@ -1770,6 +2268,18 @@ public class PDFView extends RelativeLayout {
             e.printStackTrace();
         }
     }
+    // 刪除目前頁面中的簽名框
+    public void removeSignArea(String tag) {
+        HashMap<String, SignArea> mapSignAreas = mMapPageSignAreas.get(currentPage);
+        if(mapSignAreas != null && mapSignAreas.remove(tag) != null) {
+            invalidateOverlays();
+        }
+    }
+    // 刪除所有頁面的簽名框
+    public void clearSignAreas() {
+        mMapPageSignAreas.clear();
+        invalidateOverlays();
+    }
     private void drawAllOtherSignAreas(Canvas canvas) {
         HashMap<String, SignArea> mapSignAreas = mMapPageSignAreas.get(currentPage);
         if(mapSignAreas != null && mapSignAreas.size() != 0) {
@@ -0,0 +1,730 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import com.github.barteksc.pdfviewer.exception.PageRenderingException;
+import com.github.barteksc.pdfviewer.listener.OnPageErrorListener;
+import com.github.barteksc.pdfviewer.source.ByteArraySource;
+import com.github.barteksc.pdfviewer.source.DocumentSource;
+import com.github.barteksc.pdfviewer.source.FileSource;
+import com.github.barteksc.pdfviewer.source.UriSource;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+import com.github.barteksc.pdfviewer.util.Tracing;
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+import com.shockwave.pdfium.util.Size;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders pages to bitmaps or image files without a {@link PDFView}, for previews, OCR input and other
+ * background jobs. Pages are rendered with the same {@link PdfFile} and {@link PdfiumCore} calls as the viewer,
+ * at their size in points scaled to the given DPI.
+ * <p>
+ * Pages flow through three stages connected by bounded queues: one thread renders pages, since pdfium calls are
+ * serialized by a process wide lock anyway, encoder threads compress bitmaps and one thread writes files.
+ * A full queue blocks the stage before it, so at most {@code queueSize} pages wait between two stages and memory
+ * stays bounded however slow the storage is. When exporting bitmaps, rendered bitmaps are handed to a
+ * {@link BitmapConsumer} on its own thread instead.
+ * <p>
+ * An exporter is used once, {@link #exportFiles(File)} and {@link #exportBitmaps(BitmapConsumer)} block until
+ * all pages are done, and {@link #cancel()} stops the export from any thread.
+ */
+public class PageExporter {
+
+    /** Resolution of page sizes reported by pdfium */
+    private static final int POINTS_PER_INCH = 72;
+
+    private static final int DEFAULT_DPI = 150;
+
+    private static final int DEFAULT_QUALITY = 90;
+
+    private static final int DEFAULT_QUEUE_SIZE = 4;
+
+    /** Marks the end of a queue, each consumer thread of the queue gets one */
+    private static final Item END = new Item(-1, null, null);
+
+    /** Receives rendered pages */
+    public interface BitmapConsumer {
+
+        /**
+         * Called on the consumer thread in the order of the exported pages. The bitmap is owned by the consumer,
+         * which has to recycle it. Rendering waits while the consumer is behind by {@code queueSize} pages.
+         *
+         * @param page index of the page in the document
+         */
+        void onPageExported(int page, Bitmap bitmap) throws IOException;
+    }
+
+    private final Context context;
+    private final DocumentSource documentSource;
+    private final String password;
+    private final int[] pages;
+    private final int dpi;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    private final boolean bestQuality;
+    private final boolean annotationRendering;
+    private final int encoderThreads;
+    private final int queueSize;
+    private final String fileNamePattern;
+    private final OnPageErrorListener onPageErrorListener;
+
+    private volatile boolean cancelled = false;
+
+    private boolean started = false;
+
+    /** Stage threads of the running export, interrupted on cancel */
+    private List<Thread> threads = new ArrayList<>();
+
+    /** Error which stopped the export, page errors don't stop it */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final AtomicInteger exportedPages = new AtomicInteger();
+    private final AtomicInteger failedPages = new AtomicInteger();
+    private final AtomicLong encodedBytes = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    /** Time the render stage waited for a free place in the queue */
+    private final AtomicLong backpressureNanos = new AtomicLong();
+
+    private PageExporter(Builder builder) {
+        this.context = builder.context;
+        this.documentSource = builder.documentSource;
+        this.password = builder.password;
+        this.pages = builder.pages;
+        this.dpi = builder.dpi;
+        this.format = builder.format;
+        this.quality = builder.quality;
+        this.bestQuality = builder.bestQuality;
+        this.annotationRendering = builder.annotationRendering;
+        this.encoderThreads = builder.encoderThreads;
+        this.queueSize = builder.queueSize;
+        this.fileNamePattern = builder.fileNamePattern;
+        this.onPageErrorListener = builder.onPageErrorListener;
+    }
+
+    /** Use a file as the pdf source */
+    public static Builder fromFile(Context context, File file) {
+        return new Builder(context, new FileSource(file));
+    }
+
+    /** Use URI as the pdf source, for use with content providers */
+    public static Builder fromUri(Context context, Uri uri) {
+        return new Builder(context, new UriSource(uri));
+    }
+
+    /** Use bytearray as the pdf source, documents is not saved */
+    public static Builder fromBytes(Context context, byte[] bytes) {
+        return new Builder(context, new ByteArraySource(bytes));
+    }
+
+    /** Use custom source as pdf source */
+    public static Builder fromSource(Context context, DocumentSource docSource) {
+        return new Builder(context, docSource);
+    }
+
+    /**
+     * Render pages and write them to the directory, named by the file name pattern.
+     * Files are written under a temporary name first, so an interrupted export leaves no partial images.
+     *
+     * @throws IOException if the document can't be opened or a file can't be written
+     */
+    public Report exportFiles(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        return export(directory, null);
+    }
+
+    /**
+     * Render pages to bitmaps, without encoding them
+     *
+     * @throws IOException if the document can't be opened or the consumer failed
+     */
+    public Report exportBitmaps(BitmapConsumer consumer) throws IOException {
+        return export(null, consumer);
+    }
+
+    /** Stop the export, pages in progress are finished and dropped. Can be called from any thread */
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private Report export(final File directory, final BitmapConsumer consumer) throws IOException {
+        synchronized (this) {
+            if (started) {
+                throw new IllegalStateException("PageExporter can be used only once");
+            }
+            started = true;
+        }
+        long start = System.nanoTime();
+
+        PdfiumCore pdfiumCore = new PdfiumCore(context);
+        PdfDocument pdfDocument = documentSource.createDocument(context, pdfiumCore, password);
+        final PdfFile pdfFile;
+        final int[] exportedPageIndexes;
+        try {
+            // Layout isn't used, fast start measures only the first exported page and its neighbours
+            int firstPage = pages != null && pages.length > 0 ? pages[0] : 0;
+            pdfFile = new PdfFile(pdfiumCore, pdfDocument, FitPolicy.WIDTH, new Size(1, 1), null,
+                    true, 0, false, false, Math.max(0, firstPage), null);
+            exportedPageIndexes = pages != null ? pages : allPages(pdfFile.getPagesCount());
+            for (int page : exportedPageIndexes) {
+                if (page < 0 || page >= pdfFile.getPagesCount()) {
+                    throw new IllegalArgumentException("Page " + page + " is out of range, document has "
+                            + pdfFile.getPagesCount() + " pages");
+                }
+            }
+        } catch (RuntimeException e) {
+            pdfiumCore.closeDocument(pdfDocument);
+            throw e;
+        }
+
+        final BlockingQueue<Item> renderedQueue = new ArrayBlockingQueue<>(queueSize);
+        final BlockingQueue<Item> encodedQueue = new ArrayBlockingQueue<>(queueSize);
+        final int renderedConsumers = consumer != null ? 1 : encoderThreads;
+        List<Thread> stageThreads = new ArrayList<>();
+
+        stageThreads.add(new StageThread("PDF export renderer") {
+            @Override
+            void runStage() throws Exception {
+                try {
+                    render(pdfFile, exportedPageIndexes, renderedQueue);
+                } finally {
+                    // Cancelled stages are interrupted instead, waiting for a stopped consumer would block
+                    if (!cancelled) {
+                        for (int i = 0; i < renderedConsumers; i++) {
+                            renderedQueue.put(END);
+                        }
+                    }
+                }
+            }
+        });
+        if (consumer != null) {
+            stageThreads.add(new StageThread("PDF export consumer") {
+                @Override
+                void runStage() throws Exception {
+                    deliver(renderedQueue, consumer);
+                }
+            });
+        } else {
+            final AtomicInteger runningEncoders = new AtomicInteger(encoderThreads);
+            for (int i = 0; i < encoderThreads; i++) {
+                stageThreads.add(new StageThread("PDF export encoder #" + (i + 1)) {
+                    @Override
+                    void runStage() throws Exception {
+                        try {
+                            encode(renderedQueue, encodedQueue);
+                        } finally {
+                            if (runningEncoders.decrementAndGet() == 0 && !cancelled) {
+                                encodedQueue.put(END);
+                            }
+                        }
+                    }
+                });
+            }
+            stageThreads.add(new StageThread("PDF export writer") {
+                @Override
+                void runStage() throws Exception {
+                    write(encodedQueue, directory);
+                }
+            });
+        }
+
+        try {
+            synchronized (this) {
+                threads = stageThreads;
+                for (Thread thread : stageThreads) {
+                    thread.start();
+                    if (cancelled) {
+                        thread.interrupt();
+                    }
+                }
+            }
+            joinAll(stageThreads);
+        } finally {
+            recycleAll(renderedQueue);
+            recycleAll(encodedQueue);
+            pdfFile.dispose();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new IOException(t);
+        }
+
+        return new Report(exportedPageIndexes.length, exportedPages.get(), failedPages.get(), cancelled,
+                System.nanoTime() - start, encodedBytes.get(), renderNanos.get(), encodeNanos.get(),
+                writeNanos.get(), backpressureNanos.get());
+    }
+
+    private void render(PdfFile pdfFile, int[] pageIndexes, BlockingQueue<Item> renderedQueue)
+            throws InterruptedException {
+        Bitmap.Config config = bestQuality ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+        for (int page : pageIndexes) {
+            if (cancelled) {
+                return;
+            }
+            Bitmap bitmap;
+            long renderStart = System.nanoTime();
+            Tracing.beginSection("PageExporter.render");
+            try {
+                pdfFile.openPage(page);
+                if (pdfFile.pageHasError(page)) {
+                    throw new PageRenderingException(page, new IllegalStateException("Page cannot be opened"));
+                }
+                Size size = pdfFile.getPageSizePoints(page);
+                int width = Math.round(size.getWidth() * (float) dpi / POINTS_PER_INCH);
+                int height = Math.round(size.getHeight() * (float) dpi / POINTS_PER_INCH);
+                bitmap = Bitmap.createBitmap(width, height, config);
+                pdfFile.renderPageBitmap(bitmap, page, new Rect(0, 0, width, height), annotationRendering);
+            } catch (PageRenderingException e) {
+                pageFailed(page, e.getCause());
+                continue;
+            } catch (IllegalArgumentException e) {
+                // Empty page or a bitmap too large
+                pageFailed(page, e);
+                continue;
+            } finally {
+                Tracing.endSection();
+                renderNanos.addAndGet(System.nanoTime() - renderStart);
+            }
+
+            long putStart = System.nanoTime();
+            try {
+                renderedQueue.put(new Item(page, bitmap, null));
+            } catch (InterruptedException e) {
+                bitmap.recycle();
+                throw e;
+            }
+            backpressureNanos.addAndGet(System.nanoTime() - putStart);
+        }
+    }
+
+    private void encode(BlockingQueue<Item> renderedQueue, BlockingQueue<Item> encodedQueue)
+            throws InterruptedException {
+        Item item;
+        while ((item = renderedQueue.take()) != END) {
+            if (cancelled) {
+                item.bitmap.recycle();
+                continue;
+            }
+            long encodeStart = System.nanoTime();
+            Tracing.beginSection("PageExporter.encode");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            boolean encoded;
+            try {
+                encoded = item.bitmap.compress(format, quality, out);
+            } finally {
+                item.bitmap.recycle();
+                Tracing.endSection();
+                encodeNanos.addAndGet(System.nanoTime() - encodeStart);
+            }
+            if (!encoded) {
+                pageFailed(item.page, new IOException("Cannot encode page " + item.page + " as " + format));
+                continue;
+            }
+            encodedQueue.put(new Item(item.page, null, out.toByteArray()));
+        }
+    }
+
+    private void write(BlockingQueue<Item> encodedQueue, File directory) throws InterruptedException, IOException {
+        Item item;
+        while ((item = encodedQueue.take()) != END) {
+            if (cancelled) {
+                continue;
+            }
+            long writeStart = System.nanoTime();
+            Tracing.beginSection("PageExporter.write");
+            try {
+                File file = new File(directory, getFileName(item.page));
+                File tmpFile = new File(directory, file.getName() + ".tmp");
+                boolean written = false;
+                try {
+                    FileOutputStream out = new FileOutputStream(tmpFile);
+                    try {
+                        out.write(item.data);
+                    } finally {
+                        out.close();
+                    }
+                    if (!tmpFile.renameTo(file)) {
+                        throw new IOException("Cannot rename " + tmpFile + " to " + file);
+                    }
+                    written = true;
+                } finally {
+                    if (!written) {
+                        tmpFile.delete();
+                    }
+                }
+            } finally {
+                Tracing.endSection();
+                writeNanos.addAndGet(System.nanoTime() - writeStart);
+            }
+            encodedBytes.addAndGet(item.data.length);
+            exportedPages.incrementAndGet();
+        }
+    }
+
+    private void deliver(BlockingQueue<Item> renderedQueue, BitmapConsumer consumer)
+            throws InterruptedException, IOException {
+        Item item;
+        while ((item = renderedQueue.take()) != END) {
+            if (cancelled) {
+                item.bitmap.recycle();
+                continue;
+            }
+            long writeStart = System.nanoTime();
+            try {
+                consumer.onPageExported(item.page, item.bitmap);
+            } finally {
+                writeNanos.addAndGet(System.nanoTime() - writeStart);
+            }
+            exportedPages.incrementAndGet();
+        }
+    }
+
+    private String getFileName(int page) {
+        String extension;
+        switch (format) {
+            case JPEG:
+                extension = ".jpg";
+                break;
+            case WEBP:
+                extension = ".webp";
+                break;
+            default:
+                extension = ".png";
+        }
+        return String.format(Locale.US, fileNamePattern, page) + extension;
+    }
+
+    private void pageFailed(int page, Throwable t) {
+        failedPages.incrementAndGet();
+        if (onPageErrorListener != null) {
+            onPageErrorListener.onPageError(page, t);
+        }
+    }
+
+    /** Stop all stages after an error, the first error is thrown by the export */
+    private void fail(Throwable t) {
+        if (failure.compareAndSet(null, t)) {
+            cancel();
+        }
+    }
+
+    /** Wait for the stage threads, interrupting the waiting thread cancels the export */
+    private void joinAll(List<Thread> stageThreads) {
+        boolean interrupted = false;
+        for (Thread thread : stageThreads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    cancel();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void recycleAll(BlockingQueue<Item> queue) {
+        Item item;
+        while ((item = queue.poll()) != null) {
+            if (item.bitmap != null) {
+                item.bitmap.recycle();
+            }
+        }
+    }
+
+    private static int[] allPages(int pagesCount) {
+        int[] pages = new int[pagesCount];
+        for (int i = 0; i < pagesCount; i++) {
+            pages[i] = i;
+        }
+        return pages;
+    }
+
+    /** Page passed between stages, with a bitmap after rendering and encoded bytes after encoding */
+    private static class Item {
+
+        final int page;
+
+        final Bitmap bitmap;
+
+        final byte[] data;
+
+        Item(int page, Bitmap bitmap, byte[] data) {
+            this.page = page;
+            this.bitmap = bitmap;
+            this.data = data;
+        }
+    }
+
+    private abstract class StageThread extends Thread {
+
+        StageThread(String name) {
+            super(name);
+        }
+
+        abstract void runStage() throws Exception;
+
+        @Override
+        public void run() {
+            try {
+                runStage();
+            } catch (InterruptedException e) {
+                // Cancelled
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private final Context context;
+        private final DocumentSource documentSource;
+        private String password = null;
+        private int[] pages = null;
+        private int dpi = DEFAULT_DPI;
+        private Bitmap.CompressFormat format = Bitmap.CompressFormat.PNG;
+        private int quality = DEFAULT_QUALITY;
+        private boolean bestQuality = true;
+        private boolean annotationRendering = false;
+        private int encoderThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        private int queueSize = DEFAULT_QUEUE_SIZE;
+        private String fileNamePattern = "page-%d";
+        private OnPageErrorListener onPageErrorListener;
+
+        private Builder(Context context, DocumentSource documentSource) {
+            this.context = context;
+            this.documentSource = documentSource;
+        }
+
+        public Builder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        /** Indexes of the pages to export in this order, all pages by default */
+        public Builder pages(int... pages) {
+            this.pages = pages;
+            return this;
+        }
+
+        /** Export pages from first to last, both inclusive */
+        public Builder pageRange(int first, int last) {
+            if (last < first) {
+                throw new IllegalArgumentException("last < first");
+            }
+            int[] range = new int[last - first + 1];
+            for (int i = 0; i < range.length; i++) {
+                range[i] = first + i;
+            }
+            return pages(range);
+        }
+
+        /** Resolution of the images (default 150), a page of 8.5 inches is 1275 pixels wide at 150 DPI */
+        public Builder dpi(int dpi) {
+            if (dpi <= 0) {
+                throw new IllegalArgumentException("dpi <= 0");
+            }
+            this.dpi = dpi;
+            return this;
+        }
+
+        /** Format of exported files (default PNG) and quality of JPEG and WebP between 0 and 100 (default 90) */
+        public Builder format(Bitmap.CompressFormat format, int quality) {
+            this.format = format;
+            this.quality = quality;
+            return this;
+        }
+
+        /** Render to ARGB_8888 bitmaps if true (default), to RGB_565 with half the memory otherwise */
+        public Builder useBestQuality(boolean bestQuality) {
+            this.bestQuality = bestQuality;
+            return this;
+        }
+
+        public Builder enableAnnotationRendering(boolean annotationRendering) {
+            this.annotationRendering = annotationRendering;
+            return this;
+        }
+
+        /** Number of threads encoding files (default number of processors - 1), not used for bitmaps */
+        public Builder encoderThreads(int encoderThreads) {
+            if (encoderThreads <= 0) {
+                throw new IllegalArgumentException("encoderThreads <= 0");
+            }
+            this.encoderThreads = encoderThreads;
+            return this;
+        }
+
+        /** Maximum number of pages waiting between two stages (default 4) */
+        public Builder queueSize(int queueSize) {
+            if (queueSize <= 0) {
+                throw new IllegalArgumentException("queueSize <= 0");
+            }
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /** Name of exported files without extension, formatted with the page index (default "page-%d") */
+        public Builder fileNamePattern(String fileNamePattern) {
+            this.fileNamePattern = fileNamePattern;
+            return this;
+        }
+
+        /** Called on the rendering or encoding thread for each page which can't be exported */
+        public Builder onPageError(OnPageErrorListener onPageErrorListener) {
+            this.onPageErrorListener = onPageErrorListener;
+            return this;
+        }
+
+        public PageExporter build() {
+            return new PageExporter(this);
+        }
+    }
+
+    /** Outcome and throughput of an export */
+    public static class Report {
+
+        private final int requestedPages;
+        private final int exportedPages;
+        private final int failedPages;
+        private final boolean cancelled;
+        private final long elapsedNanos;
+        private final long encodedBytes;
+        private final long renderNanos;
+        private final long encodeNanos;
+        private final long writeNanos;
+        private final long backpressureNanos;
+
+        Report(int requestedPages, int exportedPages, int failedPages, boolean cancelled, long elapsedNanos,
+               long encodedBytes, long renderNanos, long encodeNanos, long writeNanos, long backpressureNanos) {
+            this.requestedPages = requestedPages;
+            this.exportedPages = exportedPages;
+            this.failedPages = failedPages;
+            this.cancelled = cancelled;
+            this.elapsedNanos = elapsedNanos;
+            this.encodedBytes = encodedBytes;
+            this.renderNanos = renderNanos;
+            this.encodeNanos = encodeNanos;
+            this.writeNanos = writeNanos;
+            this.backpressureNanos = backpressureNanos;
+        }
+
+        public int getRequestedPages() {
+            return requestedPages;
+        }
+
+        public int getExportedPages() {
+            return exportedPages;
+        }
+
+        /** Pages which couldn't be rendered or encoded, see {@link Builder#onPageError} */
+        public int getFailedPages() {
+            return failedPages;
+        }
+
+        /** True if the export was cancelled before all pages were exported */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Time from opening the document to the last written page */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** Size of written files, 0 for bitmaps */
+        public long getEncodedBytes() {
+            return encodedBytes;
+        }
+
+        /** Time spent rendering, the only stage which can't run in parallel */
+        public long getRenderNanos() {
+            return renderNanos;
+        }
+
+        /** Time spent encoding, summed over encoder threads */
+        public long getEncodeNanos() {
+            return encodeNanos;
+        }
+
+        /** Time spent writing files or in the bitmap consumer */
+        public long getWriteNanos() {
+            return writeNanos;
+        }
+
+        /** Time rendering waited for later stages, high if encoding or writing is the bottleneck */
+        public long getBackpressureNanos() {
+            return backpressureNanos;
+        }
+
+        public float getPagesPerSecond() {
+            if (elapsedNanos <= 0) {
+                return 0;
+            }
+            return exportedPages * 1e9f / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d/%d pages exported, %d failed%s in %d ms (%.1f pages/s), %d KB; "
+                            + "render %d ms, encode %d ms, write %d ms, backpressure %d ms",
+                    exportedPages, requestedPages, failedPages, cancelled ? ", cancelled" : "",
+                    elapsedNanos / 1000000, getPagesPerSecond(), encodedBytes / 1024, renderNanos / 1000000,
+                    encodeNanos / 1000000, writeNanos / 1000000, backpressureNanos / 1000000);
+        }
+    }
+}
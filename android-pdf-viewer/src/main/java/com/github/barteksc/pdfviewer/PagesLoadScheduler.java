@@ -0,0 +1,115 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Coalesces requests to load pages by the current offset, which come from every touch event
+ * and animation tick, into a single planning pass per frame. On API 16+ the pass runs from
+ * a {@link Choreographer} frame callback, on older versions it is posted to the view.
+ */
+class PagesLoadScheduler implements Runnable {
+
+    private final PDFView pdfView;
+
+    /** Created only on API 16+, Choreographer classes don't exist on older versions */
+    private final FrameCallback frameCallback;
+
+    private boolean scheduled = false;
+
+    /** Number of requested planning passes */
+    private long requestedCount = 0;
+
+    /** Number of planning passes which actually ran */
+    private long executedCount = 0;
+
+    PagesLoadScheduler(PDFView pdfView) {
+        this.pdfView = pdfView;
+        this.frameCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? new FrameCallback(this) : null;
+    }
+
+    void schedule() {
+        requestedCount++;
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        if (frameCallback != null) {
+            frameCallback.post();
+        } else {
+            pdfView.post(this);
+        }
+    }
+
+    void cancel() {
+        if (!scheduled) {
+            return;
+        }
+        scheduled = false;
+        if (frameCallback != null) {
+            frameCallback.remove();
+        } else {
+            pdfView.removeCallbacks(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!scheduled) {
+            return;
+        }
+        scheduled = false;
+        executedCount++;
+        pdfView.performLoadPageByOffset();
+    }
+
+    long getRequestedCount() {
+        return requestedCount;
+    }
+
+    long getExecutedCount() {
+        return executedCount;
+    }
+
+    void resetCounters() {
+        requestedCount = 0;
+        executedCount = 0;
+    }
+
+    private static class FrameCallback implements Choreographer.FrameCallback {
+
+        private final Runnable pass;
+
+        FrameCallback(Runnable pass) {
+            this.pass = pass;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            pass.run();
+        }
+    }
+}
@@ -18,22 +18,31 @@ package com.github.barteksc.pdfviewer;
 import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.util.SparseArray;
 import android.util.SparseBooleanArray;
 
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
 import com.github.barteksc.pdfviewer.util.FitPolicy;
-import com.github.barteksc.pdfviewer.util.PageSizeCalculator;
+import com.github.barteksc.pdfviewer.layout.PageLayout;
+import com.github.barteksc.pdfviewer.layout.PageSizes;
+import com.github.barteksc.pdfviewer.util.Tracing;
 import com.shockwave.pdfium.PdfDocument;
 import com.shockwave.pdfium.PdfiumCore;
 import com.shockwave.pdfium.util.Size;
 import com.shockwave.pdfium.util.SizeF;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 class PdfFile {
 
     private static final Object lock = new Object();
+    /** Size of the area links are mapped to, before their bounds are stored relatively to page size */
+    private static final int LINK_MAPPING_SIZE = 10000;
+    /** Number of pages before and after the first page which are measured during a fast start */
+    private static final int FAST_START_PAGES_AROUND = 2;
     private PdfDocument pdfDocument;
     private PdfiumCore pdfiumCore;
     private int pagesCount = 0;
@@ -43,69 +52,183 @@ class PdfFile {
     private List<SizeF> pageSizes = new ArrayList<>();
     /** Opened pages with indicator whether opening was successful */
     private SparseBooleanArray openedPages = new SparseBooleanArray();
-    /** Page with maximum width */
-    private Size originalMaxWidthPageSize = new Size(0, 0);
-    /** Page with maximum height */
-    private Size originalMaxHeightPageSize = new Size(0, 0);
+    /** Number of pages opened by pdfium, readable without the lock */
+    private volatile int openedPagesCount = 0;
+    /**
+     * Sizes of measured document pages, so a document page which is shown multiple times
+     * (see {@link #originalUserPages}) is measured only once. Used only by the measuring thread
+     */
+    private SparseArray<Size> measuredDocPageSizes = new SparseArray<>();
+    /** Links of opened pages, with bounds relative to page size */
+    private SparseArray<List<PageLink>> pageLinks = new SparseArray<>();
     /** Scaled page with maximum height */
     private SizeF maxHeightPageSize = new SizeF(0, 0);
     /** Scaled page with maximum width */
     private SizeF maxWidthPageSize = new SizeF(0, 0);
     /** True if scrolling is vertical, else it's horizontal */
     private boolean isVertical;
-    /** Fixed spacing between pages in pixels */
-    private int spacingPx;
-    /** Calculate spacing automatically so each page fits on it's own in the center of the view */
-    private boolean autoSpacing;
-    /** Calculated offsets for pages */
-    private List<Float> pageOffsets = new ArrayList<>();
-    /** Calculated auto spacing for pages */
-    private List<Float> pageSpacing = new ArrayList<>();
-    /** Calculated document length (width or height, depending on swipe mode) */
-    private float documentLength = 0;
-    private final FitPolicy pageFitPolicy;
-    /**
-     * True if every page should fit separately according to the FitPolicy,
-     * else the largest page fits and other pages scale relatively
-     */
-    private final boolean fitEachPage;
+    /** Page sizes, offsets and document length, calculated from the original page sizes */
+    private final PageLayout layout;
+    /** Original page sizes as seen by the layout */
+    private final PageSizes originalPageSizesView = new PageSizes() {
+        @Override
+        public int getPageCount() {
+            return originalPageSizes.size();
+        }
+
+        @Override
+        public int getPageWidth(int pageIndex) {
+            return originalPageSizes.get(pageIndex).getWidth();
+        }
+
+        @Override
+        public int getPageHeight(int pageIndex) {
+            return originalPageSizes.get(pageIndex).getHeight();
+        }
+    };
     /**
      * The pages the user want to display in order
      * (ex: 0, 2, 2, 8, 8, 1, 1, 1)
      */
     private int[] originalUserPages;
+    /** First and last page measured during setup, other pages have estimated sizes until measured */
+    private int firstMeasuredPage;
+    private int lastMeasuredPage;
+    /** Metrics of the view showing the document, null if not shown */
+    private volatile RenderingMetricsRecorder metricsRecorder;
+
+    /**
+     * @param fastStartPage   if not negative, only this page and its neighbours are measured during setup,
+     *                        sizes of other pages are estimated and have to be measured with {@link #measurePageSizes}
+     * @param measureListener notified after each page is measured, can abort the setup, may be null
+     * @throws CancellationException if setup was aborted by the listener
+     */
+    PdfFile(PdfiumCore pdfiumCore, PdfDocument pdfDocument, FitPolicy pageFitPolicy, Size viewSize, int[] originalUserPages,
+            boolean isVertical, int spacing, boolean autoSpacing, boolean fitEachPage, int fastStartPage,
+            PageMeasureListener measureListener) {
+        this(pdfiumCore, pdfDocument, pageFitPolicy, viewSize, originalUserPages, isVertical, spacing, autoSpacing,
+                fitEachPage, fastStartPage, FAST_START_PAGES_AROUND, measureListener);
+    }
 
+    /**
+     * @param fastStartPagesAround number of pages before and after the fast start page which are measured too,
+     *                             0 to measure only the fast start page
+     */
     PdfFile(PdfiumCore pdfiumCore, PdfDocument pdfDocument, FitPolicy pageFitPolicy, Size viewSize, int[] originalUserPages,
-            boolean isVertical, int spacing, boolean autoSpacing, boolean fitEachPage) {
+            boolean isVertical, int spacing, boolean autoSpacing, boolean fitEachPage, int fastStartPage,
+            int fastStartPagesAround, PageMeasureListener measureListener) {
         this.pdfiumCore = pdfiumCore;
         this.pdfDocument = pdfDocument;
-        this.pageFitPolicy = pageFitPolicy;
         this.originalUserPages = originalUserPages;
         this.isVertical = isVertical;
-        this.spacingPx = spacing;
-        this.autoSpacing = autoSpacing;
-        this.fitEachPage = fitEachPage;
-        setup(viewSize);
+        this.layout = new PageLayout(pageFitPolicy, fitEachPage, isVertical, spacing, autoSpacing);
+        Tracing.beginSection("PdfFile.setup");
+        try {
+            setup(viewSize, fastStartPage, fastStartPagesAround, measureListener);
+        } finally {
+            Tracing.endSection();
+        }
     }
 
-    private void setup(Size viewSize) {
+    private void setup(Size viewSize, int fastStartPage, int fastStartPagesAround, PageMeasureListener measureListener) {
         if (originalUserPages != null) {
             pagesCount = originalUserPages.length;
         } else {
             pagesCount = pdfiumCore.getPageCount(pdfDocument);
         }
 
-        for (int i = 0; i < pagesCount; i++) {
-            Size pageSize = pdfiumCore.getPageSize(pdfDocument, documentPage(i));
-            if (pageSize.getWidth() > originalMaxWidthPageSize.getWidth()) {
-                originalMaxWidthPageSize = pageSize;
+        if (fastStartPage < 0 || pagesCount == 0) {
+            firstMeasuredPage = 0;
+            lastMeasuredPage = pagesCount - 1;
+        } else {
+            int page = Math.min(fastStartPage, pagesCount - 1);
+            firstMeasuredPage = Math.max(0, page - fastStartPagesAround);
+            lastMeasuredPage = Math.min(pagesCount - 1, page + fastStartPagesAround);
+        }
+
+        int measuredCount = lastMeasuredPage - firstMeasuredPage + 1;
+        for (int i = firstMeasuredPage; i <= lastMeasuredPage; i++) {
+            originalPageSizes.add(measurePageSize(i));
+            if (measureListener != null && !measureListener.onPageMeasured(i - firstMeasuredPage + 1, measuredCount)) {
+                throw new CancellationException("Measuring pages was cancelled");
+            }
+        }
+
+        // Until measured, pages are assumed to have the size of the first measured page
+        if (measuredCount > 0 && measuredCount < pagesCount) {
+            Size estimatedSize = originalPageSizes.get(0);
+            originalPageSizes.addAll(0, Collections.nCopies(firstMeasuredPage, estimatedSize));
+            originalPageSizes.addAll(Collections.nCopies(pagesCount - lastMeasuredPage - 1, estimatedSize));
+        }
+
+        recalculatePageSizes(viewSize);
+    }
+
+    /** @return true if sizes of all pages were measured, false if some of them are still estimated */
+    public boolean isLayoutComplete() {
+        return firstMeasuredPage == 0 && lastMeasuredPage == pagesCount - 1;
+    }
+
+    int getFirstMeasuredPage() {
+        return firstMeasuredPage;
+    }
+
+    int getLastMeasuredPage() {
+        return lastMeasuredPage;
+    }
+
+    /**
+     * Measure sizes of pages, can be called from a background thread. Layout is not changed,
+     * pass the result to {@link #applyPageSizes} on the UI thread
+     *
+     * @param fromPage first page to measure
+     * @param count    number of pages to measure
+     * @throws CancellationException if the document was disposed or measuring was aborted by the listener
+     */
+    List<Size> measurePageSizes(int fromPage, int count, PageMeasureListener measureListener) {
+        List<Size> sizes = new ArrayList<>(count);
+        for (int i = fromPage; i < fromPage + count; i++) {
+            synchronized (lock) {
+                if (pdfDocument == null) {
+                    throw new CancellationException("Document was disposed");
+                }
+                sizes.add(measurePageSize(i));
             }
-            if (pageSize.getHeight() > originalMaxHeightPageSize.getHeight()) {
-                originalMaxHeightPageSize = pageSize;
+            if (measureListener != null && !measureListener.onPageMeasured(i - fromPage + 1, count)) {
+                throw new CancellationException("Measuring pages was cancelled");
             }
-            originalPageSizes.add(pageSize);
         }
+        return sizes;
+    }
+
+    /**
+     * pdfium calls are serialized by PdfiumCore with a process wide lock and pdfium itself is not
+     * thread safe, so pages are measured one by one, skipping document pages measured before
+     */
+    private Size measurePageSize(int pageIndex) {
+        int docPage = documentPage(pageIndex);
+        Size size = measuredDocPageSizes.get(docPage);
+        if (size == null) {
+            size = pdfiumCore.getPageSize(pdfDocument, docPage);
+            measuredDocPageSizes.put(docPage, size);
+        }
+        return size;
+    }
 
+    /**
+     * Replace estimated sizes with measured ones and recalculate the layout.
+     * Measured pages have to be adjacent to the pages measured before.
+     *
+     * @param fromPage first measured page
+     * @param sizes    sizes returned by {@link #measurePageSizes}
+     * @param viewSize current size of the view
+     */
+    synchronized void applyPageSizes(int fromPage, List<Size> sizes, Size viewSize) {
+        for (int i = 0; i < sizes.size(); i++) {
+            originalPageSizes.set(fromPage + i, sizes.get(i));
+        }
+        firstMeasuredPage = Math.min(firstMeasuredPage, fromPage);
+        lastMeasuredPage = Math.max(lastMeasuredPage, fromPage + sizes.size() - 1);
         recalculatePageSizes(viewSize);
     }
 
@@ -114,21 +237,25 @@ class PdfFile {
      *
      * @param viewSize new size of changed view
      */
-    public void recalculatePageSizes(Size viewSize) {
-        pageSizes.clear();
-        PageSizeCalculator calculator = new PageSizeCalculator(pageFitPolicy, originalMaxWidthPageSize,
-                originalMaxHeightPageSize, viewSize, fitEachPage);
-        maxWidthPageSize = calculator.getOptimalMaxWidthPageSize();
-        maxHeightPageSize = calculator.getOptimalMaxHeightPageSize();
+    public synchronized void recalculatePageSizes(Size viewSize) {
+        layout.calculate(originalPageSizesView, viewSize.getWidth(), viewSize.getHeight());
+        maxWidthPageSize = new SizeF(layout.getMaxWidthPageWidth(), layout.getMaxWidthPageHeight());
+        maxHeightPageSize = new SizeF(layout.getMaxHeightPageWidth(), layout.getMaxHeightPageHeight());
 
-        for (Size size : originalPageSizes) {
-            pageSizes.add(calculator.calculate(size));
-        }
-        if (autoSpacing) {
-            prepareAutoSpacing(viewSize);
+        pageSizes.clear();
+        for (int i = 0; i < layout.getPagesCount(); i++) {
+            pageSizes.add(new SizeF(layout.getPageWidth(i), layout.getPageHeight(i)));
         }
-        prepareDocLen();
-        preparePagesOffset();
+    }
+
+    /** Original page sizes, estimated ones for pages which were not measured yet */
+    PageSizes getOriginalPageSizes() {
+        return originalPageSizesView;
+    }
+
+    /** Layout of the pages, read it only while holding the lock of this file */
+    PageLayout getLayout() {
+        return layout;
     }
 
     public int getPagesCount() {
@@ -165,57 +292,8 @@ class PdfFile {
         return getMaxPageSize().getHeight();
     }
 
-    private void prepareAutoSpacing(Size viewSize) {
-        pageSpacing.clear();
-        for (int i = 0; i < getPagesCount(); i++) {
-            SizeF pageSize = pageSizes.get(i);
-            float spacing = Math.max(0, isVertical ? viewSize.getHeight() - pageSize.getHeight() :
-                    viewSize.getWidth() - pageSize.getWidth());
-            if (i < getPagesCount() - 1) {
-                spacing += spacingPx;
-            }
-            pageSpacing.add(spacing);
-        }
-    }
-
-    private void prepareDocLen() {
-        float length = 0;
-        for (int i = 0; i < getPagesCount(); i++) {
-            SizeF pageSize = pageSizes.get(i);
-            length += isVertical ? pageSize.getHeight() : pageSize.getWidth();
-            if (autoSpacing) {
-                length += pageSpacing.get(i);
-            } else if (i < getPagesCount() - 1) {
-                length += spacingPx;
-            }
-        }
-        documentLength = length;
-    }
-
-    private void preparePagesOffset() {
-        pageOffsets.clear();
-        float offset = 0;
-        for (int i = 0; i < getPagesCount(); i++) {
-            SizeF pageSize = pageSizes.get(i);
-            float size = isVertical ? pageSize.getHeight() : pageSize.getWidth();
-            if (autoSpacing) {
-                offset += pageSpacing.get(i) / 2f;
-                if (i == 0) {
-                    offset -= spacingPx / 2f;
-                } else if (i == getPagesCount() - 1) {
-                    offset += spacingPx / 2f;
-                }
-                pageOffsets.add(offset);
-                offset += size + pageSpacing.get(i) / 2f;
-            } else {
-                pageOffsets.add(offset);
-                offset += size + spacingPx;
-            }
-        }
-    }
-
     public float getDocLen(float zoom) {
-        return documentLength * zoom;
+        return layout.getDocLen(zoom);
     }
 
     /**
@@ -227,8 +305,7 @@ class PdfFile {
     }
 
     public float getPageSpacing(int pageIndex, float zoom) {
-        float spacing = autoSpacing ? pageSpacing.get(pageIndex) : spacingPx;
-        return spacing * zoom;
+        return layout.getPageSpacing(pageIndex, zoom);
     }
 
     /** Get primary page offset, that is Y for vertical scroll and X for horizontal scroll */
@@ -237,7 +314,19 @@ class PdfFile {
         if (docPage < 0) {
             return 0;
         }
-        return pageOffsets.get(pageIndex) * zoom;
+        return layout.getPageOffset(pageIndex, zoom);
+    }
+
+    /**
+     * Get summed length of all pages before the given one, that is heights for vertical scroll
+     * and widths for horizontal scroll. Spacing between pages is not included.
+     */
+    public float getPreviousPagesLength(int pageIndex, float zoom) {
+        int docPage = documentPage(pageIndex);
+        if (docPage < 0) {
+            return 0;
+        }
+        return layout.getPreviousPagesLength(pageIndex, zoom);
     }
 
     /** Get secondary page offset, that is X for vertical scroll and Y for horizontal scroll */
@@ -253,15 +342,11 @@ class PdfFile {
     }
 
     public int getPageAtOffset(float offset, float zoom) {
-        int currentPage = 0;
-        for (int i = 0; i < getPagesCount(); i++) {
-            float off = pageOffsets.get(i) * zoom - getPageSpacing(i, zoom) / 2f;
-            if (off >= offset) {
-                break;
-            }
-            currentPage++;
-        }
-        return --currentPage >= 0 ? currentPage : 0;
+        return layout.getPageAtOffset(offset, zoom);
+    }
+
+    void setMetricsRecorder(RenderingMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
     }
 
     public boolean openPage(int pageIndex) throws PageRenderingException {
@@ -272,19 +357,44 @@ class PdfFile {
 
         synchronized (lock) {
             if (openedPages.indexOfKey(docPage) < 0) {
+                Tracing.beginSection("PdfFile.openPage");
                 try {
+                    long openStart = System.nanoTime();
                     pdfiumCore.openPage(pdfDocument, docPage);
+                    RenderingMetricsRecorder metrics = metricsRecorder;
+                    if (metrics != null) {
+                        metrics.pageOpenTime.record(System.nanoTime() - openStart);
+                    }
                     openedPages.put(docPage, true);
+                    openedPagesCount++;
                     return true;
                 } catch (Exception e) {
                     openedPages.put(docPage, false);
                     throw new PageRenderingException(pageIndex, e);
+                } finally {
+                    Tracing.endSection();
                 }
             }
             return false;
         }
     }
 
+    /** Size of an opened page in points, 1/72 inch, independent of the screen density */
+    Size getPageSizePoints(int pageIndex) {
+        int docPage = documentPage(pageIndex);
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                throw new CancellationException("Document was disposed");
+            }
+            return new Size(pdfiumCore.getPageWidthPoint(pdfDocument, docPage),
+                    pdfiumCore.getPageHeightPoint(pdfDocument, docPage));
+        }
+    }
+
+    public int getOpenedPagesCount() {
+        return openedPagesCount;
+    }
+
     public boolean pageHasError(int pageIndex) {
         int docPage = documentPage(pageIndex);
         return !openedPages.get(docPage, false);
@@ -292,8 +402,13 @@ class PdfFile {
 
     public void renderPageBitmap(Bitmap bitmap, int pageIndex, Rect bounds, boolean annotationRendering) {
         int docPage = documentPage(pageIndex);
-        pdfiumCore.renderPageBitmap(pdfDocument, bitmap, docPage,
-                bounds.left, bounds.top, bounds.width(), bounds.height(), annotationRendering);
+        Tracing.beginSection("PdfFile.renderPageBitmap");
+        try {
+            pdfiumCore.renderPageBitmap(pdfDocument, bitmap, docPage,
+                    bounds.left, bounds.top, bounds.width(), bounds.height(), annotationRendering);
+        } finally {
+            Tracing.endSection();
+        }
     }
 
     public PdfDocument.Meta getMetaData() {
@@ -321,12 +436,64 @@ class PdfFile {
         return pdfiumCore.mapRectToDevice(pdfDocument, docPage, startX, startY, sizeX, sizeY, 0, rect);
     }
 
+    /**
+     * Read links of an opened page and map their bounds relatively to page size,
+     * so looking them up later does not need any call to pdfium
+     */
+    public void preparePageLinks(int pageIndex) {
+        getRelativePageLinks(pageIndex);
+    }
+
+    /**
+     * Get links of the page with bounds relative to page size (from 0 to 1).
+     * Links are read from pdfium only once, after the page was opened.
+     *
+     * @return links of the page, empty if page is not opened yet
+     */
+    public List<PageLink> getRelativePageLinks(int pageIndex) {
+        int docPage = documentPage(pageIndex);
+        if (docPage < 0) {
+            return Collections.emptyList();
+        }
+
+        synchronized (lock) {
+            List<PageLink> links = pageLinks.get(docPage);
+            if (links == null) {
+                if (pdfDocument == null || !openedPages.get(docPage, false)) {
+                    return Collections.emptyList();
+                }
+                links = mapPageLinks(docPage);
+                pageLinks.put(docPage, links);
+            }
+            return links;
+        }
+    }
+
+    private List<PageLink> mapPageLinks(int docPage) {
+        List<PdfDocument.Link> links = pdfiumCore.getPageLinks(pdfDocument, docPage);
+        List<PageLink> mappedLinks = new ArrayList<>(links.size());
+        for (PdfDocument.Link link : links) {
+            RectF bounds = pdfiumCore.mapRectToDevice(pdfDocument, docPage, 0, 0,
+                    LINK_MAPPING_SIZE, LINK_MAPPING_SIZE, 0, link.getBounds());
+            bounds.sort();
+            bounds.set(bounds.left / LINK_MAPPING_SIZE, bounds.top / LINK_MAPPING_SIZE,
+                    bounds.right / LINK_MAPPING_SIZE, bounds.bottom / LINK_MAPPING_SIZE);
+            mappedLinks.add(new PageLink(link, bounds));
+        }
+        return mappedLinks;
+    }
+
     public void dispose() {
-        if (pdfiumCore != null && pdfDocument != null) {
-            pdfiumCore.closeDocument(pdfDocument);
+        synchronized (lock) {
+            if (pdfiumCore != null && pdfDocument != null) {
+                pdfiumCore.closeDocument(pdfDocument);
+            }
+            pageLinks.clear();
+            measuredDocPageSizes.clear();
+            pdfDocument = null;
+            openedPagesCount = 0;
         }
 
-        pdfDocument = null;
         originalUserPages = null;
     }
 
@@ -370,4 +537,35 @@ class PdfFile {
 
         return documentPage;
     }
+
+    /** Progress of {@link #measurePageSizes} */
+    interface PageMeasureListener {
+        /**
+         * Called on the measuring thread after each page size is read
+         *
+         * @return false to abort measuring
+         */
+        boolean onPageMeasured(int measured, int total);
+    }
+
+    /** Link of a page with its bounds relative to page size */
+    static class PageLink {
+
+        private final PdfDocument.Link link;
+
+        private final RectF relativeBounds;
+
+        PageLink(PdfDocument.Link link, RectF relativeBounds) {
+            this.link = link;
+            this.relativeBounds = relativeBounds;
+        }
+
+        PdfDocument.Link getLink() {
+            return link;
+        }
+
+        RectF getRelativeBounds() {
+            return relativeBounds;
+        }
+    }
 }
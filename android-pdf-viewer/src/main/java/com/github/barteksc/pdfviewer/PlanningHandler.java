@@ -0,0 +1,79 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+/**
+ * A {@link Handler} that plans parts to render on a background thread. The UI thread only
+ * publishes {@link ViewportSnapshot}s, older snapshots which were not planned yet are dropped.
+ * Planned parts are queued to the {@link RenderingHandler} of the snapshot.
+ */
+class PlanningHandler extends Handler {
+    /**
+     * {@link Message#what} kind of message this handler processes.
+     */
+    static final int MSG_PLAN_TASK = 1;
+
+    private final PDFView pdfView;
+
+    private final PagesLoader pagesLoader;
+
+    private volatile boolean running = false;
+
+    PlanningHandler(Looper looper, PDFView pdfView, PagesLoader pagesLoader) {
+        super(looper);
+        this.pdfView = pdfView;
+        this.pagesLoader = pagesLoader;
+    }
+
+    void publish(ViewportSnapshot viewport) {
+        removeMessages(MSG_PLAN_TASK);
+        sendMessage(obtainMessage(MSG_PLAN_TASK, viewport));
+    }
+
+    @Override
+    public void handleMessage(Message message) {
+        ViewportSnapshot viewport = (ViewportSnapshot) message.obj;
+        if (!running) {
+            return;
+        }
+
+        // Page sizes may be recalculated on the UI thread, see PdfFile#recalculatePageSizes
+        synchronized (viewport.pdfFile) {
+            // Remove all current tasks, those which aren't planned again are cancelled
+            viewport.renderingHandler.beginPlan();
+            pdfView.cacheManager.makeANewSet();
+
+            long planStart = System.nanoTime();
+            pagesLoader.loadPages(viewport);
+            viewport.renderingHandler.endPlan();
+            pdfView.frameMetricsRecorder.planning.record(planStart, System.nanoTime() - planStart,
+                    viewport.zoom, pdfView.getCurrentPage());
+        }
+        pdfView.postInvalidate();
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    void start() {
+        running = true;
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import com.shockwave.pdfium.PdfiumCore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.barteksc.pdfviewer.util.Constants.Cache.CACHE_SIZE;
+import static com.github.barteksc.pdfviewer.util.Constants.PART_SIZE;
+
+/**
+ * Rendering resources shared by multiple {@link PDFView}s, set with {@code Configurator.renderingEngine()}.
+ * Views using the same engine share one rendering and one planning thread and one {@link PdfiumCore}.
+ * pdfium calls are serialized by a process wide lock, so more rendering threads would not render faster.
+ * <p>
+ * Rendering tasks are taken from the views in turns, the view which has the rendering priority
+ * ({@link PDFView#requestRenderingPriority()}, e.g. after it was touched) gets {@link #PRIORITY_SHARE}
+ * tasks for every task of the other views. Memory of rendered parts of all views is limited
+ * by a common budget, parts of the other views are recycled first when it is exceeded. Visible parts
+ * are never recycled to meet the budget, a view showing blank tiles would not notice it has to render them again.
+ * <p>
+ * Call {@link #release()} when no view uses the engine anymore.
+ */
+public class RenderingEngine {
+
+    /** Number of tasks of the view with priority rendered before a task of another view */
+    private static final int PRIORITY_SHARE = 3;
+
+    /** Memory of parts which two views could cache with the default cache size */
+    private static final long DEFAULT_MEMORY_BUDGET = 2L * CACHE_SIZE * (long) (PART_SIZE * PART_SIZE) * 4;
+
+    private final HandlerThread renderingThread;
+
+    private final HandlerThread planningThread;
+
+    private final Handler scheduler;
+
+    private final PdfiumCore pdfiumCore;
+
+    private final long memoryBudget;
+
+    /** Bytes of bitmaps of cached parts of all views */
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    private final List<Client> clients = new ArrayList<>();
+
+    private Client priorityClient;
+
+    private int priorityStreak = 0;
+
+    /** Index of the client which gets the next task of the views without priority */
+    private int nextClient = 0;
+
+    private boolean scheduled = false;
+
+    private final Runnable renderNextTask = new Runnable() {
+        @Override
+        public void run() {
+            RenderingHandler.RenderingTask task = pollTask();
+            if (task == null) {
+                return;
+            }
+            task.run();
+            // Post again instead of looping, so other messages of the thread are not blocked
+            scheduler.post(this);
+        }
+    };
+
+    public RenderingEngine(Context context) {
+        this(context, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /** @param memoryBudget bytes of rendered parts which all views can keep together */
+    public RenderingEngine(Context context, long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        pdfiumCore = new PdfiumCore(context.getApplicationContext());
+        renderingThread = new HandlerThread("PDF renderer");
+        renderingThread.start();
+        planningThread = new HandlerThread("PDF planner");
+        planningThread.start();
+        scheduler = new Handler(renderingThread.getLooper());
+    }
+
+    PdfiumCore getPdfiumCore() {
+        return pdfiumCore;
+    }
+
+    Looper getRenderingLooper() {
+        return renderingThread.getLooper();
+    }
+
+    Looper getPlanningLooper() {
+        return planningThread.getLooper();
+    }
+
+    synchronized void register(RenderingHandler handler, CacheManager cacheManager) {
+        clients.add(new Client(handler, cacheManager));
+        cacheManager.setRenderingEngine(this);
+    }
+
+    synchronized void unregister(RenderingHandler handler) {
+        Client client = findClient(handler);
+        if (client == null) {
+            return;
+        }
+        clients.remove(client);
+        client.cacheManager.setRenderingEngine(null);
+        if (priorityClient == client) {
+            priorityClient = null;
+        }
+    }
+
+    synchronized void setPriority(RenderingHandler handler) {
+        Client client = findClient(handler);
+        if (client != priorityClient) {
+            priorityClient = client;
+            priorityStreak = 0;
+        }
+    }
+
+    synchronized void submit(RenderingHandler.RenderingTask task, RenderingHandler handler) {
+        Client client = findClient(handler);
+        if (client == null) {
+            return;
+        }
+        client.tasks.add(task);
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.post(renderNextTask);
+        }
+    }
+
+    synchronized void cancel(RenderingHandler handler) {
+        Client client = findClient(handler);
+        if (client != null) {
+            client.tasks.clear();
+        }
+    }
+
+    private synchronized RenderingHandler.RenderingTask pollTask() {
+        if (priorityClient != null && !priorityClient.tasks.isEmpty()) {
+            if (priorityStreak < PRIORITY_SHARE || !hasTasksOfOtherClients()) {
+                priorityStreak++;
+                return priorityClient.tasks.poll();
+            }
+        }
+        priorityStreak = 0;
+        for (int i = 0; i < clients.size(); i++) {
+            int index = (nextClient + i) % clients.size();
+            Client client = clients.get(index);
+            if (client != priorityClient && !client.tasks.isEmpty()) {
+                nextClient = index + 1;
+                return client.tasks.poll();
+            }
+        }
+        if (priorityClient != null && !priorityClient.tasks.isEmpty()) {
+            return priorityClient.tasks.poll();
+        }
+        scheduled = false;
+        return null;
+    }
+
+    private boolean hasTasksOfOtherClients() {
+        for (Client client : clients) {
+            if (client != priorityClient && !client.tasks.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Client findClient(RenderingHandler handler) {
+        for (Client client : clients) {
+            if (client.handler == handler) {
+                return client;
+            }
+        }
+        return null;
+    }
+
+    void onPartCached(int bytes) {
+        usedMemory.addAndGet(bytes);
+    }
+
+    void onPartRecycled(int bytes) {
+        usedMemory.addAndGet(-bytes);
+    }
+
+    public long getUsedMemory() {
+        return usedMemory.get();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Recycle parts which are not visible until the budget is met, of the views without priority first.
+     * The budget is soft for visible parts, they stay until their views plan new ones.
+     */
+    synchronized void trimMemory() {
+        long excess = usedMemory.get() - memoryBudget;
+        if (excess <= 0) {
+            return;
+        }
+        for (int pass = 0; pass < 2 && excess > 0; pass++) {
+            for (Client client : clients) {
+                boolean priority = client == priorityClient;
+                if (excess <= 0 || priority != (pass == 1)) {
+                    continue;
+                }
+                excess -= client.cacheManager.evict(excess, false);
+            }
+        }
+    }
+
+    /** Quit threads of the engine, it can't be used afterwards */
+    public void release() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            renderingThread.quitSafely();
+            planningThread.quitSafely();
+        } else {
+            renderingThread.quit();
+            planningThread.quit();
+        }
+    }
+
+    private static class Client {
+
+        final RenderingHandler handler;
+
+        final CacheManager cacheManager;
+
+        final ArrayDeque<RenderingHandler.RenderingTask> tasks = new ArrayDeque<>();
+
+        Client(RenderingHandler handler, CacheManager cacheManager) {
+            this.handler = handler;
+            this.cacheManager = cacheManager;
+        }
+    }
+}
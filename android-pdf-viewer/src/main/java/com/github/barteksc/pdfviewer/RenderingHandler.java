@@ -27,6 +27,14 @@ import android.util.Log;
 
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
 import com.github.barteksc.pdfviewer.model.PagePart;
+import com.github.barteksc.pdfviewer.util.Tracing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link Handler} that will process incoming {@link RenderingTask} messages
@@ -39,56 +47,250 @@ class RenderingHandler extends Handler {
      */
     static final int MSG_RENDER_TASK = 1;
 
+    /**
+     * {@link Message#what} kind of message used to read links of a freshly opened page,
+     * after rendering tasks which are already queued.
+     */
+    static final int MSG_PREPARE_LINKS = 2;
+
     private static final String TAG = RenderingHandler.class.getName();
 
+    /** Name of async trace sections tracking parts from being queued to being displayed */
+    private static final String PART_TRACE_SECTION = "PDF part";
+
+    /** Cookies of async trace sections, unique across all views */
+    private static final AtomicInteger nextTraceCookie = new AtomicInteger();
+
     private PDFView pdfView;
 
+    /** Engine scheduling tasks of this handler, null if the view renders on its own */
+    private RenderingEngine renderingEngine;
+
     private RectF renderBounds = new RectF();
     private Rect roundedRenderBounds = new Rect();
     private Matrix renderMatrix = new Matrix();
     private boolean running = false;
 
+    /** Number of queued tasks which were not rendered yet */
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+
+    /** Tasks queued by the last plan, only used on the planning thread */
+    private final List<RenderingTask> plannedTasks = new ArrayList<>();
+
+    /** Keys of tasks queued by the running plan, only used on the planning thread */
+    private long[] plannedKeys = new long[64];
+
+    private int plannedKeyCount;
+
+    /**
+     * Keys of tasks of the previous plan removed from the queue before they were rendered, only used on
+     * the planning thread. Those which the running plan doesn't queue again are counted as cancelled.
+     */
+    private long[] replannedKeys = new long[64];
+
+    private int replannedKeyCount;
+
+    /**
+     * Queued tasks while tracing or the debug overlay is enabled, their async trace sections
+     * are ended if the tasks are cancelled
+     */
+    private final Set<RenderingTask> queuedTasks = new HashSet<>();
+
     RenderingHandler(Looper looper, PDFView pdfView) {
+        this(looper, pdfView, null);
+    }
+
+    /** @param renderingEngine engine scheduling tasks, looper has to be its rendering looper */
+    RenderingHandler(Looper looper, PDFView pdfView, RenderingEngine renderingEngine) {
         super(looper);
         this.pdfView = pdfView;
+        this.renderingEngine = renderingEngine;
     }
 
+    /** Queue a task of the running plan, called on the planning thread */
     void addRenderingTask(int page, float width, float height, RectF bounds, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering) {
         RenderingTask task = new RenderingTask(width, height, bounds, page, thumbnail, cacheOrder, bestQuality, annotationRendering);
+        pendingTasks.incrementAndGet();
+        plannedTasks.add(task);
+        if (plannedKeyCount == plannedKeys.length) {
+            plannedKeys = Arrays.copyOf(plannedKeys, plannedKeyCount * 2);
+        }
+        plannedKeys[plannedKeyCount++] = task.key;
+        boolean tracing = Tracing.isEnabled();
+        if (tracing || pdfView.isDebugOverlayEnabled()) {
+            if (tracing) {
+                task.traceCookie = nextTraceCookie.incrementAndGet();
+                Tracing.beginAsyncSection(PART_TRACE_SECTION, task.traceCookie);
+            }
+            task.tracked = true;
+            synchronized (queuedTasks) {
+                queuedTasks.add(task);
+            }
+        }
+        if (renderingEngine != null) {
+            renderingEngine.submit(task, this);
+            return;
+        }
         Message msg = obtainMessage(MSG_RENDER_TASK, task);
         sendMessage(msg);
     }
 
+    /** Remove all tasks which were not rendered yet and count them as cancelled */
+    void cancelRenderingTasks() {
+        pdfView.metricsRecorder.recordCancelledTasks(pendingTasks.get());
+        removeQueuedTasks();
+    }
+
+    /**
+     * Remove all tasks which were not rendered yet before planning new ones on the planning thread,
+     * only the tasks which aren't queued again until {@link #endPlan()} are counted as cancelled
+     */
+    void beginPlan() {
+        removeQueuedTasks();
+        replannedKeyCount = 0;
+        for (int i = 0; i < plannedTasks.size(); i++) {
+            RenderingTask task = plannedTasks.get(i);
+            if (!task.started) {
+                if (replannedKeyCount == replannedKeys.length) {
+                    replannedKeys = Arrays.copyOf(replannedKeys, replannedKeyCount * 2);
+                }
+                replannedKeys[replannedKeyCount++] = task.key;
+            }
+        }
+        plannedTasks.clear();
+        plannedKeyCount = 0;
+    }
+
+    /** Count the tasks removed by {@link #beginPlan()} and not queued again as cancelled */
+    void endPlan() {
+        Arrays.sort(replannedKeys, 0, replannedKeyCount);
+        Arrays.sort(plannedKeys, 0, plannedKeyCount);
+        int cancelled = 0;
+        int planned = 0;
+        for (int i = 0; i < replannedKeyCount; i++) {
+            long key = replannedKeys[i];
+            while (planned < plannedKeyCount && plannedKeys[planned] < key) {
+                planned++;
+            }
+            if (planned == plannedKeyCount || plannedKeys[planned] != key) {
+                cancelled++;
+            }
+        }
+        replannedKeyCount = 0;
+        pdfView.metricsRecorder.recordCancelledTasks(cancelled);
+    }
+
+    private void removeQueuedTasks() {
+        removeMessages(MSG_RENDER_TASK);
+        if (renderingEngine != null) {
+            renderingEngine.cancel(this);
+        }
+        pendingTasks.set(0);
+        synchronized (queuedTasks) {
+            for (RenderingTask task : queuedTasks) {
+                endPartTraceSection(task.traceCookie);
+            }
+            queuedTasks.clear();
+        }
+    }
+
+    int getPendingTaskCount() {
+        return pendingTasks.get();
+    }
+
+    /** @return tasks waiting for rendering, only tracked while tracing or the debug overlay is enabled */
+    List<RenderingTask> getQueuedTasks() {
+        synchronized (queuedTasks) {
+            return new ArrayList<>(queuedTasks);
+        }
+    }
+
     @Override
     public void handleMessage(Message message) {
-        RenderingTask task = (RenderingTask) message.obj;
+        if (message.what == MSG_PREPARE_LINKS) {
+            PdfFile pdfFile = pdfView.pdfFile;
+            if (running && pdfFile != null) {
+                pdfFile.preparePageLinks(message.arg1);
+            }
+            return;
+        }
+
+        render((RenderingTask) message.obj);
+    }
+
+    private void render(RenderingTask task) {
+        int pending;
+        do {
+            pending = pendingTasks.get();
+        } while (pending > 0 && !pendingTasks.compareAndSet(pending, pending - 1));
+        // Taken from the queue before a new plan removed it, so it isn't cancelled
+        task.started = true;
+        pdfView.metricsRecorder.queueWait.record(System.nanoTime() - task.queuedTime);
+        if (task.tracked) {
+            synchronized (queuedTasks) {
+                // Section was ended already if the task was cancelled while being taken from the queue
+                if (!queuedTasks.remove(task)) {
+                    task.traceCookie = 0;
+                }
+            }
+        }
+
+        Tracing.beginSection("RenderingHandler.render");
         try {
             final PagePart part = proceed(task);
+            if (part != null && running) {
+                final int traceCookie = task.traceCookie;
+                pdfView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        pdfView.onBitmapRendered(part);
+                        endPartTraceSection(traceCookie);
+                    }
+                });
+                return;
+            }
             if (part != null) {
-                if (running) {
-                    pdfView.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            pdfView.onBitmapRendered(part);
-                        }
-                    });
-                } else {
-                    part.getRenderedBitmap().recycle();
-                }
+                part.getRenderedBitmap().recycle();
             }
+            endPartTraceSection(task.traceCookie);
         } catch (final PageRenderingException ex) {
+            endPartTraceSection(task.traceCookie);
             pdfView.post(new Runnable() {
                 @Override
                 public void run() {
                     pdfView.onPageError(ex);
                 }
             });
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * Key of a part: page, thumbnail flag and a hash of its rounded size and bounds. Keys of different
+     * parts of a page collide very rarely, which only makes a cancelled task uncounted.
+     */
+    private static long partKey(int page, boolean thumbnail, float width, float height, RectF bounds) {
+        long hash = Math.round(width);
+        hash = hash * 31 + Math.round(height);
+        hash = hash * 31 + Math.round(bounds.left * 4096);
+        hash = hash * 31 + Math.round(bounds.top * 4096);
+        hash = hash * 31 + Math.round(bounds.right * 4096);
+        hash = hash * 31 + Math.round(bounds.bottom * 4096);
+        return ((long) page << 40) | (thumbnail ? 1L << 39 : 0) | (hash & ((1L << 39) - 1));
+    }
+
+    private static void endPartTraceSection(int traceCookie) {
+        if (traceCookie != 0) {
+            Tracing.endAsyncSection(PART_TRACE_SECTION, traceCookie);
         }
     }
 
     private PagePart proceed(RenderingTask renderingTask) throws PageRenderingException {
         PdfFile pdfFile = pdfView.pdfFile;
-        pdfFile.openPage(renderingTask.page);
+        if (pdfFile.openPage(renderingTask.page)) {
+            sendMessage(obtainMessage(MSG_PREPARE_LINKS, renderingTask.page, 0));
+        }
 
         int w = Math.round(renderingTask.width);
         int h = Math.round(renderingTask.height);
@@ -106,7 +308,9 @@ class RenderingHandler extends Handler {
         }
         calculateBounds(w, h, renderingTask.bounds);
 
+        long renderStart = System.nanoTime();
         pdfFile.renderPageBitmap(render, renderingTask.page, roundedRenderBounds, renderingTask.annotationRendering);
+        pdfView.metricsRecorder.renderTime.record(System.nanoTime() - renderStart);
 
         return new PagePart(renderingTask.page, render,
                 renderingTask.bounds, renderingTask.thumbnail,
@@ -131,7 +335,7 @@ class RenderingHandler extends Handler {
         running = true;
     }
 
-    private class RenderingTask {
+    class RenderingTask implements Runnable {
 
         float width, height;
 
@@ -147,6 +351,21 @@ class RenderingHandler extends Handler {
 
         boolean annotationRendering;
 
+        /** {@link System#nanoTime()} when the task was queued */
+        final long queuedTime = System.nanoTime();
+
+        /** Cookie of the async trace section of the task, 0 if not traced */
+        int traceCookie;
+
+        /** True if the task is in the queued tasks set */
+        boolean tracked;
+
+        /** Identifies the rendered part, equal for tasks queued again by a new plan */
+        final long key;
+
+        /** Set by the rendering thread when it takes the task */
+        volatile boolean started;
+
         RenderingTask(float width, float height, RectF bounds, int page, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering) {
             this.page = page;
             this.width = width;
@@ -156,6 +375,13 @@ class RenderingHandler extends Handler {
             this.cacheOrder = cacheOrder;
             this.bestQuality = bestQuality;
             this.annotationRendering = annotationRendering;
+            this.key = partKey(page, thumbnail, width, height, bounds);
+        }
+
+        /** Render the task on the current thread, used by {@link RenderingEngine} */
+        @Override
+        public void run() {
+            render(this);
         }
     }
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import com.github.barteksc.pdfviewer.model.RenderingMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects {@link RenderingMetrics} of a {@link PDFView}. Values are recorded from the UI, planning
+ * and rendering threads into atomic counters and fixed histogram buckets, so recording doesn't
+ * allocate or lock and can stay enabled in release builds.
+ */
+class RenderingMetricsRecorder {
+
+    final LatencyHistogram queueWait = new LatencyHistogram();
+
+    final LatencyHistogram renderTime = new LatencyHistogram();
+
+    final LatencyHistogram pageOpenTime = new LatencyHistogram();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong cancelledTasks = new AtomicLong();
+
+    void recordCacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).incrementAndGet();
+    }
+
+    long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    void recordCancelledTasks(int count) {
+        if (count > 0) {
+            cancelledTasks.addAndGet(count);
+        }
+    }
+
+    RenderingMetrics snapshot(long timeToFirstRender) {
+        return new RenderingMetrics(queueWait.snapshot(), renderTime.snapshot(), pageOpenTime.snapshot(),
+                cacheHits.get(), cacheMisses.get(), evictions.get(), cancelledTasks.get(), timeToFirstRender);
+    }
+
+    void reset() {
+        queueWait.reset();
+        renderTime.reset();
+        pageOpenTime.reset();
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        evictions.set(0);
+        cancelledTasks.set(0);
+    }
+
+    /** Durations in power of two millisecond buckets, see {@link RenderingMetrics.Histogram} */
+    static class LatencyHistogram {
+
+        /** Last bucket counts durations of 2048 ms and longer */
+        private static final int BUCKETS = 13;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long millis = nanos / 1000000;
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(millis), BUCKETS - 1);
+            buckets.incrementAndGet(bucket);
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // Retry, max was updated by another thread
+            }
+        }
+
+        RenderingMetrics.Histogram snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new RenderingMetrics.Histogram(counts, totalNanos.get(), maxNanos.get());
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+    }
+}
@@ -0,0 +1,561 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.github.barteksc.pdfviewer.exception.PageRenderingException;
+import com.github.barteksc.pdfviewer.source.DocumentSource;
+import com.github.barteksc.pdfviewer.source.FileSource;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+import com.github.barteksc.pdfviewer.util.Tracing;
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+import com.shockwave.pdfium.util.Size;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thumbnails of document pages for document pickers and similar lists, without loading documents
+ * into a {@link PDFView}. A document is opened with a {@link PdfFile} which measures only the requested page,
+ * the page is rendered on a worker pool and the thumbnail is stored in a {@link ThumbnailStore} file,
+ * keyed by document fingerprint and page, so later requests are served from the file without opening
+ * the document.
+ * <p>
+ * Store lookups run on one thread, which also owns the file, so stored thumbnails don't wait behind rendering.
+ * Workers take the most recently requested thumbnail first, as those are the ones visible after scrolling a list.
+ * Requests for a thumbnail which is being rendered wait for it instead of rendering it again.
+ */
+public class ThumbnailService {
+
+    private static final String TAG = ThumbnailService.class.getSimpleName();
+
+    private static final int DEFAULT_THUMBNAIL_SIZE = 240;
+
+    private static final int DEFAULT_THREAD_POOL_SIZE = 2;
+
+    private static final long DEFAULT_MAX_STORE_SIZE = 32 * 1024 * 1024;
+
+    private static final int JPEG_QUALITY = 85;
+
+    /** Bytes read from the start and the end of a file for its fingerprint */
+    private static final int FINGERPRINT_SAMPLE_SIZE = 64 * 1024;
+
+    /** Receives a thumbnail on the UI thread */
+    public interface Callback {
+
+        /** The bitmap is owned by the receiver */
+        void onThumbnail(int page, Bitmap bitmap);
+
+        void onError(int page, Throwable t);
+    }
+
+    private final Context context;
+    private final File storeFile;
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+    private final long maxStoreSize;
+
+    private final PdfiumCore pdfiumCore;
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    private final ExecutorService storeExecutor;
+
+    private final ThreadPoolExecutor renderExecutor;
+
+    /** Used only on the store thread, opened by the first lookup */
+    private ThumbnailStore store;
+
+    /** Requests waiting for a thumbnail being rendered, by key */
+    private final Map<String, List<Request>> rendering = new HashMap<>();
+
+    private final AtomicInteger storeHits = new AtomicInteger();
+
+    private final AtomicInteger renderedThumbnails = new AtomicInteger();
+
+    private volatile boolean closed = false;
+
+    private ThumbnailService(Builder builder) {
+        this.context = builder.context.getApplicationContext();
+        this.storeFile = builder.storeFile;
+        this.thumbnailWidth = builder.thumbnailWidth;
+        this.thumbnailHeight = builder.thumbnailHeight;
+        this.maxStoreSize = builder.maxStoreSize;
+        this.pdfiumCore = new PdfiumCore(context);
+
+        ThreadPoolExecutor storePool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory("PDF thumbnail store"));
+        storePool.allowCoreThreadTimeOut(true);
+        storeExecutor = storePool;
+        renderExecutor = new ThreadPoolExecutor(builder.threadPoolSize, builder.threadPoolSize, 30, TimeUnit.SECONDS,
+                new LifoBlockingDeque(), new BackgroundThreadFactory("PDF thumbnailer"));
+        renderExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Request a thumbnail of a page of a file. The file is identified by its content, so a copied or moved file
+     * is found in the store and a changed file is rendered again
+     */
+    public Request load(File file, int page, Callback callback) {
+        return load(new FileSource(file), file, null, page, callback);
+    }
+
+    /**
+     * Request a thumbnail of a page of a document from any source
+     *
+     * @param fingerprint identifies the content of the document, it has to change when the document changes
+     * @throws IllegalArgumentException if the fingerprint is null
+     */
+    public Request load(DocumentSource source, String fingerprint, int page, Callback callback) {
+        if (fingerprint == null) {
+            throw new IllegalArgumentException("Fingerprint of the document is required");
+        }
+        return load(source, null, fingerprint, page, callback);
+    }
+
+    private Request load(DocumentSource source, File file, String fingerprint, int page, Callback callback) {
+        if (closed) {
+            throw new IllegalStateException("ThumbnailService is closed");
+        }
+        final Request request = new Request(source, file, fingerprint, page, callback);
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                lookUp(request);
+            }
+        });
+        return request;
+    }
+
+    /** Number of thumbnails served from the store */
+    public int getStoreHits() {
+        return storeHits.get();
+    }
+
+    /** Number of thumbnails rendered because they were not stored */
+    public int getRenderedThumbnails() {
+        return renderedThumbnails.get();
+    }
+
+    /** Stop the workers and close the store, waiting requests get no result */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        renderExecutor.shutdownNow();
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (store != null) {
+                    try {
+                        store.close();
+                    } catch (IOException e) {
+                        Log.e(TAG, "Cannot close thumbnail store", e);
+                    }
+                    store = null;
+                }
+            }
+        });
+        storeExecutor.shutdown();
+    }
+
+    /** Runs on the store thread */
+    private void lookUp(final Request request) {
+        if (request.cancelled || closed) {
+            return;
+        }
+        Tracing.beginSection("ThumbnailService.lookUp");
+        try {
+            if (request.fingerprint == null) {
+                try {
+                    request.fingerprint = fingerprint(request.file);
+                } catch (IOException e) {
+                    postError(request, e);
+                    return;
+                }
+            }
+            byte[] bytes = getStore().get(request.fingerprint, request.page);
+            if (bytes != null) {
+                Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+                if (bitmap != null) {
+                    storeHits.incrementAndGet();
+                    postThumbnail(request, bitmap);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Thumbnail is rendered as if it wasn't stored
+            Log.e(TAG, "Cannot read thumbnail store", e);
+        } catch (RuntimeException e) {
+            postError(request, e);
+            return;
+        } finally {
+            Tracing.endSection();
+        }
+
+        final String key = request.getKey();
+        synchronized (rendering) {
+            List<Request> waiting = rendering.get(key);
+            if (waiting != null) {
+                waiting.add(request);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(request);
+            rendering.put(key, waiting);
+        }
+        try {
+            renderExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    render(key, request);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Service was closed
+            takeWaiting(key);
+        }
+    }
+
+    private ThumbnailStore getStore() throws IOException {
+        if (closed) {
+            throw new IOException("ThumbnailService is closed");
+        }
+        if (store == null) {
+            store = ThumbnailStore.open(storeFile, thumbnailWidth, thumbnailHeight, maxStoreSize);
+        }
+        return store;
+    }
+
+    /** Runs on a worker thread */
+    private void render(String key, Request request) {
+        if (allCancelled(key)) {
+            return;
+        }
+        Bitmap bitmap = null;
+        final byte[] encoded;
+        Tracing.beginSection("ThumbnailService.render");
+        try {
+            bitmap = renderPage(request.source, request.page);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+                throw new IOException("Cannot encode thumbnail");
+            }
+            encoded = out.toByteArray();
+            renderedThumbnails.incrementAndGet();
+        } catch (Throwable t) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            for (Request waiting : takeWaiting(key)) {
+                postError(waiting, t);
+            }
+            return;
+        } finally {
+            Tracing.endSection();
+        }
+
+        final String fingerprint = request.fingerprint;
+        final int page = request.page;
+        try {
+            storeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!getStore().put(fingerprint, page, encoded)) {
+                            Log.w(TAG, "Thumbnail of " + encoded.length + " bytes is too big for the store");
+                        }
+                    } catch (IOException e) {
+                        Log.e(TAG, "Cannot write thumbnail store", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Service was closed, the thumbnail is not stored
+        }
+
+        // The rendered bitmap goes to the first request, others get their own copy decoded from the thumbnail
+        boolean renderedBitmapUsed = false;
+        for (Request waiting : takeWaiting(key)) {
+            if (waiting.cancelled) {
+                continue;
+            }
+            if (!renderedBitmapUsed) {
+                renderedBitmapUsed = true;
+                postThumbnail(waiting, bitmap);
+            } else {
+                postThumbnail(waiting, BitmapFactory.decodeByteArray(encoded, 0, encoded.length));
+            }
+        }
+        if (!renderedBitmapUsed) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Open the document measuring only the requested page and render the page to fit the thumbnail size
+     */
+    private Bitmap renderPage(DocumentSource source, int page) throws IOException, PageRenderingException {
+        PdfDocument pdfDocument = source.createDocument(context, pdfiumCore, null);
+        PdfFile pdfFile;
+        try {
+            pdfFile = new PdfFile(pdfiumCore, pdfDocument, FitPolicy.BOTH, new Size(thumbnailWidth, thumbnailHeight),
+                    null, true, 0, false, false, page, 0, null);
+        } catch (RuntimeException e) {
+            pdfiumCore.closeDocument(pdfDocument);
+            throw e;
+        }
+        try {
+            if (page < 0 || page >= pdfFile.getPagesCount()) {
+                throw new IllegalArgumentException("Page " + page + " is out of range, document has "
+                        + pdfFile.getPagesCount() + " pages");
+            }
+            pdfFile.openPage(page);
+            if (pdfFile.pageHasError(page)) {
+                throw new PageRenderingException(page, new IllegalStateException("Page cannot be opened"));
+            }
+            Size size = pdfFile.getPageSizePoints(page);
+            float scale = Math.min((float) thumbnailWidth / size.getWidth(), (float) thumbnailHeight / size.getHeight());
+            int width = Math.max(1, Math.round(size.getWidth() * scale));
+            int height = Math.max(1, Math.round(size.getHeight() * scale));
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            pdfFile.renderPageBitmap(bitmap, page, new Rect(0, 0, width, height), false);
+            return bitmap;
+        } finally {
+            pdfFile.dispose();
+        }
+    }
+
+    private boolean allCancelled(String key) {
+        synchronized (rendering) {
+            List<Request> waiting = rendering.get(key);
+            if (waiting != null) {
+                for (Request request : waiting) {
+                    if (!request.cancelled) {
+                        return false;
+                    }
+                }
+            }
+            rendering.remove(key);
+            return true;
+        }
+    }
+
+    private List<Request> takeWaiting(String key) {
+        synchronized (rendering) {
+            List<Request> waiting = rendering.remove(key);
+            return waiting != null ? waiting : new ArrayList<Request>();
+        }
+    }
+
+    private void postThumbnail(final Request request, final Bitmap bitmap) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (request.cancelled || closed) {
+                    bitmap.recycle();
+                    return;
+                }
+                request.callback.onThumbnail(request.page, bitmap);
+            }
+        });
+    }
+
+    private void postError(final Request request, final Throwable t) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!request.cancelled && !closed) {
+                    request.callback.onError(request.page, t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Fingerprint of a file from its length and the content of its start and end, which hold the header,
+     * the trailer with the document ID and every incremental update. Reading the whole file is not needed.
+     */
+    public static String fingerprint(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            long length = in.length();
+            for (int i = 0; i < 8; i++) {
+                digest.update((byte) (length >>> (8 * i)));
+            }
+            byte[] buffer = new byte[(int) Math.min(FINGERPRINT_SAMPLE_SIZE, length)];
+            in.readFully(buffer);
+            digest.update(buffer);
+            if (length > FINGERPRINT_SAMPLE_SIZE) {
+                buffer = new byte[(int) Math.min(FINGERPRINT_SAMPLE_SIZE, length - FINGERPRINT_SAMPLE_SIZE)];
+                in.seek(length - buffer.length);
+                in.readFully(buffer);
+                digest.update(buffer);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /** Pending thumbnail, which can be cancelled when it's not needed anymore */
+    public static class Request {
+
+        private final DocumentSource source;
+        private final File file;
+        private final int page;
+        private final Callback callback;
+        /** Computed on the store thread for files */
+        private volatile String fingerprint;
+        private volatile boolean cancelled = false;
+
+        private Request(DocumentSource source, File file, String fingerprint, int page, Callback callback) {
+            this.source = source;
+            this.file = file;
+            this.fingerprint = fingerprint;
+            this.page = page;
+            this.callback = callback;
+        }
+
+        /** The callback won't be called, rendering is skipped if no other request waits for the thumbnail */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private String getKey() {
+            return fingerprint + '#' + page;
+        }
+    }
+
+    public static class Builder {
+
+        private final Context context;
+        private final File storeFile;
+        private int thumbnailWidth = DEFAULT_THUMBNAIL_SIZE;
+        private int thumbnailHeight = DEFAULT_THUMBNAIL_SIZE;
+        private int threadPoolSize = DEFAULT_THREAD_POOL_SIZE;
+        private long maxStoreSize = DEFAULT_MAX_STORE_SIZE;
+
+        /** @param storeFile file of stored thumbnails, created if it doesn't exist */
+        public Builder(Context context, File storeFile) {
+            this.context = context;
+            this.storeFile = storeFile;
+        }
+
+        /**
+         * Pages are scaled to fit into this size (default 240 x 240). Thumbnails stored with a different size
+         * are removed when the store is opened
+         */
+        public Builder thumbnailSize(int width, int height) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Thumbnail size has to be positive");
+            }
+            this.thumbnailWidth = width;
+            this.thumbnailHeight = height;
+            return this;
+        }
+
+        /** Number of threads rendering thumbnails (default 2) */
+        public Builder threadPoolSize(int threadPoolSize) {
+            if (threadPoolSize <= 0) {
+                throw new IllegalArgumentException("threadPoolSize <= 0");
+            }
+            this.threadPoolSize = threadPoolSize;
+            return this;
+        }
+
+        /** Size of the store file in bytes (default 32 MB), least recently used thumbnails are removed above it */
+        public Builder maxStoreSize(long maxStoreSize) {
+            this.maxStoreSize = maxStoreSize;
+            return this;
+        }
+
+        public ThumbnailService build() {
+            return new ThumbnailService(this);
+        }
+    }
+
+    /** Takes the most recently added task first */
+    private static class LifoBlockingDeque extends LinkedBlockingDeque<Runnable> {
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            return offerFirst(runnable);
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        BackgroundThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, name + " #" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Encoded thumbnails in one append-only file, keyed by document fingerprint and page. The index is rebuilt
+ * by scanning the records when the file is opened, a record torn by a crash is detected by its checksum and
+ * cut off with everything after it. A newer record of the same key replaces the older one, which stays in the
+ * file as garbage until the file grows over its maximum size and is compacted, keeping the recently used
+ * thumbnails.
+ * <p>
+ * File: magic, version, thumbnail width, thumbnail height, then records of fingerprint length, fingerprint
+ * (UTF-8), page, data length, data and CRC32 of the data.
+ */
+class ThumbnailStore implements Closeable {
+
+    private static final int MAGIC = 0x50544854; // PTHT
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    /** Part of the maximum size kept by compaction, so the file isn't compacted on every write */
+    private static final float COMPACTED_RATIO = 0.75f;
+
+    private final File file;
+
+    private final int thumbnailWidth;
+
+    private final int thumbnailHeight;
+
+    private final long maxSize;
+
+    private RandomAccessFile data;
+
+    /** Records in access order, least recently used first */
+    private final LinkedHashMap<String, Record> index = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ThumbnailStore(File file, int thumbnailWidth, int thumbnailHeight, long maxSize) {
+        this.file = file;
+        this.thumbnailWidth = thumbnailWidth;
+        this.thumbnailHeight = thumbnailHeight;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Open the store, a file with a different thumbnail size or an unknown format is cleared
+     *
+     * @param maxSize size of the file which triggers compaction, in bytes
+     */
+    static ThumbnailStore open(File file, int thumbnailWidth, int thumbnailHeight, long maxSize) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        ThumbnailStore store = new ThumbnailStore(file, thumbnailWidth, thumbnailHeight, maxSize);
+        long validLength = store.readIndex();
+        store.data = new RandomAccessFile(file, "rw");
+        if (validLength < HEADER_SIZE) {
+            store.index.clear();
+            store.data.setLength(0);
+            store.writeHeader(store.data);
+        } else if (validLength < store.data.length()) {
+            store.data.setLength(validLength);
+        }
+        return store;
+    }
+
+    /** @return length of the valid part of the file, 0 if the file is missing or belongs to other settings */
+    private long readIndex() {
+        if (!file.exists()) {
+            return 0;
+        }
+        DataInputStream in = null;
+        long position = 0;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != thumbnailWidth || in.readInt() != thumbnailHeight) {
+                return 0;
+            }
+            position = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[0];
+            while (true) {
+                int fingerprintLength;
+                try {
+                    fingerprintLength = in.readInt();
+                } catch (EOFException e) {
+                    return position;
+                }
+                if (fingerprintLength < 0 || fingerprintLength > 1024) {
+                    return position;
+                }
+                byte[] fingerprint = new byte[fingerprintLength];
+                in.readFully(fingerprint);
+                int page = in.readInt();
+                int length = in.readInt();
+                if (length < 0 || position + length > file.length()) {
+                    return position;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if (in.readInt() != (int) crc.getValue()) {
+                    return position;
+                }
+                String fingerprintString = new String(fingerprint, "UTF-8");
+                index.put(key(fingerprintString, page), new Record(fingerprintString, page,
+                        position + dataOffset(fingerprint), length));
+                position += recordSize(fingerprint, length);
+            }
+        } catch (IOException e) {
+            // Torn record at the end, keep the records before it
+            return position;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeHeader(RandomAccessFile out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(thumbnailWidth);
+        out.writeInt(thumbnailHeight);
+    }
+
+    /** @return encoded thumbnail or null if it isn't stored */
+    synchronized byte[] get(String fingerprint, int page) throws IOException {
+        Record record = index.get(key(fingerprint, page));
+        if (record == null) {
+            return null;
+        }
+        byte[] bytes = new byte[record.length];
+        data.seek(record.position);
+        data.readFully(bytes);
+        return bytes;
+    }
+
+    synchronized boolean contains(String fingerprint, int page) {
+        return index.containsKey(key(fingerprint, page));
+    }
+
+    /**
+     * Store a thumbnail, a thumbnail which would not survive compaction is not stored
+     *
+     * @return false if the thumbnail is too big to be stored
+     */
+    synchronized boolean put(String fingerprint, int page, byte[] bytes) throws IOException {
+        byte[] record = encodeRecord(fingerprint, page, bytes);
+        if (HEADER_SIZE + record.length > maxSize * COMPACTED_RATIO) {
+            return false;
+        }
+        long position = data.length();
+        try {
+            data.seek(position);
+            data.write(record);
+        } catch (IOException e) {
+            // Cut off the torn record, so records appended later are not lost with it on the next open
+            data.setLength(position);
+            throw e;
+        }
+        index.put(key(fingerprint, page), new Record(fingerprint, page,
+                position + dataOffset(fingerprint.getBytes("UTF-8")), bytes.length));
+        if (data.length() > maxSize) {
+            compact();
+        }
+        return true;
+    }
+
+    private static byte[] encodeRecord(String fingerprint, int page, byte[] bytes) throws IOException {
+        byte[] fingerprintBytes = fingerprint.getBytes("UTF-8");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(fingerprintBytes.length + bytes.length + 16);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(fingerprintBytes.length);
+        out.write(fingerprintBytes);
+        out.writeInt(page);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Rewrite the file with the most recently used thumbnails which fit in a part of the maximum size.
+     * The new file is written under a temp name and renamed, so a crash leaves the old file.
+     */
+    private void compact() throws IOException {
+        List<Record> records = new ArrayList<>(index.values());
+        Collections.reverse(records);
+        List<Record> kept = new ArrayList<>();
+        long size = HEADER_SIZE;
+        for (Record record : records) {
+            size += recordSize(record.fingerprint.getBytes("UTF-8"), record.length);
+            if (size > maxSize * COMPACTED_RATIO) {
+                break;
+            }
+            kept.add(record);
+        }
+        // Write least recently used first, to keep the access order after reopening
+        Collections.reverse(kept);
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tempFile, "rw");
+        Map<String, Record> compacted = new LinkedHashMap<>();
+        try {
+            out.setLength(0);
+            writeHeader(out);
+            for (Record record : kept) {
+                byte[] bytes = new byte[record.length];
+                data.seek(record.position);
+                data.readFully(bytes);
+                long position = out.getFilePointer();
+                out.write(encodeRecord(record.fingerprint, record.page, bytes));
+                compacted.put(key(record.fingerprint, record.page), new Record(record.fingerprint, record.page,
+                        position + dataOffset(record.fingerprint.getBytes("UTF-8")), record.length));
+            }
+        } finally {
+            out.close();
+        }
+        data.close();
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            data = new RandomAccessFile(file, "rw");
+            throw new IOException("Cannot write " + file);
+        }
+        data = new RandomAccessFile(file, "rw");
+        index.clear();
+        index.putAll(compacted);
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    synchronized long getFileLength() throws IOException {
+        return data.length();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        data.close();
+    }
+
+    /** Offset of the data from the start of the record: fingerprint length, fingerprint, page and data length */
+    private static int dataOffset(byte[] fingerprint) {
+        return 4 + fingerprint.length + 8;
+    }
+
+    /** Size of the record including the checksum */
+    private static long recordSize(byte[] fingerprint, int length) {
+        return dataOffset(fingerprint) + length + 4;
+    }
+
+    private static String key(String fingerprint, int page) {
+        return fingerprint + '#' + page;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class Record {
+
+        final String fingerprint;
+
+        final int page;
+
+        /** Position of the data in the file */
+        final long position;
+
+        final int length;
+
+        Record(String fingerprint, int page, long position, int length) {
+            this.fingerprint = fingerprint;
+            this.page = page;
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
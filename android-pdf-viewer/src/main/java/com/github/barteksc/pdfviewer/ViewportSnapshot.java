@@ -0,0 +1,58 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+/**
+ * Immutable state of the {@link PDFView} viewport, published from the UI thread
+ * so pages can be planned on a background thread.
+ */
+final class ViewportSnapshot {
+
+    final PdfFile pdfFile;
+
+    final RenderingHandler renderingHandler;
+
+    final float xOffset;
+
+    final float yOffset;
+
+    final float zoom;
+
+    final int width;
+
+    final int height;
+
+    final boolean swipeVertical;
+
+    final boolean bestQuality;
+
+    final boolean annotationRendering;
+
+    ViewportSnapshot(PdfFile pdfFile, RenderingHandler renderingHandler, float xOffset, float yOffset,
+                     float zoom, int width, int height, boolean swipeVertical, boolean bestQuality,
+                     boolean annotationRendering) {
+        this.pdfFile = pdfFile;
+        this.renderingHandler = renderingHandler;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+        this.zoom = zoom;
+        this.width = width;
+        this.height = height;
+        this.swipeVertical = swipeVertical;
+        this.bestQuality = bestQuality;
+        this.annotationRendering = annotationRendering;
+    }
+}
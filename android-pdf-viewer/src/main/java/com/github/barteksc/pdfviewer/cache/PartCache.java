@@ -0,0 +1,299 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Cache of rendered parts and thumbnails. Parts requested by the current {@code loadPages} call are
+ * active, parts of previous calls are passive and get recycled first, lowest cache order first.
+ * It doesn't depend on Android, so it can be benchmarked on a plain JVM with a stub part type.
+ * Parts are identified by {@link Object#equals}, which should compare the page and the bounds.
+ *
+ * @param <P> type of cached parts
+ */
+public abstract class PartCache<P> {
+
+    private final PriorityQueue<P> passiveCache;
+
+    private final PriorityQueue<P> activeCache;
+
+    private final List<P> thumbnails;
+
+    private final Object passiveActiveLock = new Object();
+
+    private final int cacheSize;
+
+    private final int thumbnailsCacheSize;
+
+    /**
+     * @param cacheSize           maximum number of cached parts
+     * @param thumbnailsCacheSize maximum number of cached thumbnails
+     */
+    protected PartCache(int cacheSize, int thumbnailsCacheSize) {
+        this.cacheSize = cacheSize;
+        this.thumbnailsCacheSize = thumbnailsCacheSize;
+        Comparator<P> orderComparator = new PartComparator();
+        activeCache = new PriorityQueue<>(cacheSize, orderComparator);
+        passiveCache = new PriorityQueue<>(cacheSize, orderComparator);
+        thumbnails = new ArrayList<>();
+    }
+
+    protected abstract int getCacheOrder(P part);
+
+    protected abstract void setCacheOrder(P part, int cacheOrder);
+
+    /** @return bytes of the part's bitmap */
+    protected abstract int getByteCount(P part);
+
+    /** Release the part's bitmap */
+    protected abstract void recycleBitmap(P part);
+
+    /** Called after a part was added */
+    protected void onPartCached(P part) {
+    }
+
+    /** Called after bitmap of a part, not a thumbnail, was recycled */
+    protected void onPartRecycled(int bytes) {
+    }
+
+    /** Called when a part or a thumbnail is recycled to make space */
+    protected void onEviction() {
+    }
+
+    /** Called when the cache is asked for a part or a thumbnail */
+    protected void onLookup(boolean hit) {
+    }
+
+    public void cachePart(P part) {
+        synchronized (passiveActiveLock) {
+            // If cache too big, remove and recycle
+            makeAFreeSpace();
+
+            // Then add part
+            activeCache.offer(part);
+        }
+        onPartCached(part);
+    }
+
+    /**
+     * Recycle parts which are not visible, and visible ones if includeActive is true,
+     * until the given amount of memory is released
+     *
+     * @return released bytes
+     */
+    public long evict(long bytes, boolean includeActive) {
+        long released = 0;
+        synchronized (passiveActiveLock) {
+            while (released < bytes && !passiveCache.isEmpty()) {
+                released += recyclePart(passiveCache.poll());
+                onEviction();
+            }
+            while (includeActive && released < bytes && !activeCache.isEmpty()) {
+                released += recyclePart(activeCache.poll());
+                onEviction();
+            }
+        }
+        return released;
+    }
+
+    /** @return bytes of the recycled bitmap */
+    private int recyclePart(P part) {
+        int bytes = getByteCount(part);
+        recycleBitmap(part);
+        onPartRecycled(bytes);
+        return bytes;
+    }
+
+    public void makeANewSet() {
+        synchronized (passiveActiveLock) {
+            passiveCache.addAll(activeCache);
+            activeCache.clear();
+        }
+    }
+
+    private void makeAFreeSpace() {
+        synchronized (passiveActiveLock) {
+            while ((activeCache.size() + passiveCache.size()) >= cacheSize &&
+                    !passiveCache.isEmpty()) {
+                recyclePart(passiveCache.poll());
+                onEviction();
+            }
+
+            while ((activeCache.size() + passiveCache.size()) >= cacheSize &&
+                    !activeCache.isEmpty()) {
+                recyclePart(activeCache.poll());
+                onEviction();
+            }
+        }
+    }
+
+    public void cacheThumbnail(P part) {
+        synchronized (thumbnails) {
+            // If cache too big, remove and recycle
+            while (thumbnails.size() >= thumbnailsCacheSize) {
+                recycleBitmap(thumbnails.remove(0));
+                onEviction();
+            }
+
+            // Then add thumbnail
+            addWithoutDuplicates(thumbnails, part);
+        }
+
+    }
+
+    /**
+     * Move the part equal to the given one to the active parts with a new cache order
+     *
+     * @return true if the part is cached
+     */
+    public boolean upPartIfContained(P fakePart, int toOrder) {
+        P found;
+        synchronized (passiveActiveLock) {
+            if ((found = find(passiveCache, fakePart)) != null) {
+                passiveCache.remove(found);
+                setCacheOrder(found, toOrder);
+                activeCache.offer(found);
+                onLookup(true);
+                return true;
+            }
+
+            boolean contained = find(activeCache, fakePart) != null;
+            onLookup(contained);
+            return contained;
+        }
+    }
+
+    /**
+     * Return true if already contains a thumbnail equal to the given one
+     */
+    public boolean containsThumbnail(P fakePart) {
+        synchronized (thumbnails) {
+            for (P part : thumbnails) {
+                if (part.equals(fakePart)) {
+                    onLookup(true);
+                    return true;
+                }
+            }
+            onLookup(false);
+            return false;
+        }
+    }
+
+    /**
+     * Add part if it doesn't exist, recycle bitmap otherwise
+     */
+    private void addWithoutDuplicates(Collection<P> collection, P newPart) {
+        for (P part : collection) {
+            if (part.equals(newPart)) {
+                recycleBitmap(newPart);
+                return;
+            }
+        }
+        collection.add(newPart);
+    }
+
+    private static <P> P find(PriorityQueue<P> vector, P fakePart) {
+        for (P part : vector) {
+            if (part.equals(fakePart)) {
+                return part;
+            }
+        }
+        return null;
+    }
+
+    public List<P> getPageParts() {
+        synchronized (passiveActiveLock) {
+            List<P> parts = new ArrayList<>(passiveCache);
+            parts.addAll(activeCache);
+            return parts;
+        }
+    }
+
+    /** @return bytes of bitmaps of cached parts and thumbnails */
+    public long getCachedBytes() {
+        long bytes = 0;
+        synchronized (passiveActiveLock) {
+            for (P part : passiveCache) {
+                bytes += getByteCount(part);
+            }
+            for (P part : activeCache) {
+                bytes += getByteCount(part);
+            }
+        }
+        synchronized (thumbnails) {
+            for (P part : thumbnails) {
+                bytes += getByteCount(part);
+            }
+        }
+        return bytes;
+    }
+
+    public List<P> getThumbnails() {
+        synchronized (thumbnails) {
+            return thumbnails;
+        }
+    }
+
+    /**
+     * Remove all thumbnails without recycling them
+     *
+     * @return removed thumbnails
+     */
+    public List<P> takeThumbnails() {
+        synchronized (thumbnails) {
+            List<P> taken = new ArrayList<>(thumbnails);
+            thumbnails.clear();
+            return taken;
+        }
+    }
+
+    public void recycle() {
+        synchronized (passiveActiveLock) {
+            for (P part : passiveCache) {
+                recyclePart(part);
+            }
+            passiveCache.clear();
+            for (P part : activeCache) {
+                recyclePart(part);
+            }
+            activeCache.clear();
+        }
+        synchronized (thumbnails) {
+            for (P part : thumbnails) {
+                recycleBitmap(part);
+            }
+            thumbnails.clear();
+        }
+    }
+
+    private class PartComparator implements Comparator<P> {
+        @Override
+        public int compare(P part1, P part2) {
+            int order1 = getCacheOrder(part1);
+            int order2 = getCacheOrder(part2);
+            if (order1 == order2) {
+                return 0;
+            }
+            return order1 > order2 ? 1 : -1;
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+/**
+ * Positions of pages laid out in a strip, in the coordinates of zoom 1. The primary offset is
+ * Y when swiping vertically and X when swiping horizontally, the secondary offset is the other one.
+ */
+public interface DocumentLayout {
+
+    int getPagesCount();
+
+    float getPageWidth(int pageIndex);
+
+    float getPageHeight(int pageIndex);
+
+    /** Get primary page offset, that is Y for vertical scroll and X for horizontal scroll */
+    float getPageOffset(int pageIndex, float zoom);
+
+    /** Get secondary page offset, that is X for vertical scroll and Y for horizontal scroll */
+    float getSecondaryPageOffset(int pageIndex, float zoom);
+
+    /** @return page at the primary offset, including half of the spacing around it */
+    int getPageAtOffset(float offset, float zoom);
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+/**
+ * Scales pages to the view according to a {@link FitPolicy}. The widest and the highest page
+ * are fitted first, other pages are scaled by the same ratio unless every page fits separately.
+ * Sizes are passed as primitives, so the calculator doesn't allocate.
+ */
+public class PageFitCalculator {
+
+    private final FitPolicy fitPolicy;
+    private final float viewWidth;
+    private final float viewHeight;
+    private final boolean fitEachPage;
+    private float optimalMaxWidthPageWidth;
+    private float optimalMaxWidthPageHeight;
+    private float optimalMaxHeightPageWidth;
+    private float optimalMaxHeightPageHeight;
+    private float widthRatio;
+    private float heightRatio;
+
+    /** Result of the last fit, width and height */
+    private final float[] fitted = new float[2];
+
+    public PageFitCalculator(FitPolicy fitPolicy, float maxWidthPageWidth, float maxWidthPageHeight,
+                             float maxHeightPageWidth, float maxHeightPageHeight,
+                             float viewWidth, float viewHeight, boolean fitEachPage) {
+        this.fitPolicy = fitPolicy;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.fitEachPage = fitEachPage;
+        calculateMaxPages(maxWidthPageWidth, maxWidthPageHeight, maxHeightPageWidth, maxHeightPageHeight);
+    }
+
+    /**
+     * Fit a page, result is stored in out
+     *
+     * @param out array of at least two elements, receives the fitted width and height
+     */
+    public void calculate(float width, float height, float[] out) {
+        if (width <= 0 || height <= 0) {
+            out[0] = 0;
+            out[1] = 0;
+            return;
+        }
+        float maxWidth = fitEachPage ? viewWidth : width * widthRatio;
+        float maxHeight = fitEachPage ? viewHeight : height * heightRatio;
+        switch (fitPolicy) {
+            case HEIGHT:
+                fitHeight(width, height, maxHeight, out);
+                break;
+            case BOTH:
+                fitBoth(width, height, maxWidth, maxHeight, out);
+                break;
+            default:
+                fitWidth(width, height, maxWidth, out);
+                break;
+        }
+    }
+
+    public float getOptimalMaxWidthPageWidth() {
+        return optimalMaxWidthPageWidth;
+    }
+
+    public float getOptimalMaxWidthPageHeight() {
+        return optimalMaxWidthPageHeight;
+    }
+
+    public float getOptimalMaxHeightPageWidth() {
+        return optimalMaxHeightPageWidth;
+    }
+
+    public float getOptimalMaxHeightPageHeight() {
+        return optimalMaxHeightPageHeight;
+    }
+
+    private void calculateMaxPages(float maxWidthPageWidth, float maxWidthPageHeight,
+                                   float maxHeightPageWidth, float maxHeightPageHeight) {
+        switch (fitPolicy) {
+            case HEIGHT:
+                fitHeight(maxHeightPageWidth, maxHeightPageHeight, viewHeight, fitted);
+                setOptimalMaxHeightPage();
+                heightRatio = optimalMaxHeightPageHeight / maxHeightPageHeight;
+                fitHeight(maxWidthPageWidth, maxWidthPageHeight, maxWidthPageHeight * heightRatio, fitted);
+                setOptimalMaxWidthPage();
+                break;
+            case BOTH:
+                fitBoth(maxWidthPageWidth, maxWidthPageHeight, viewWidth, viewHeight, fitted);
+                float localWidthRatio = fitted[0] / maxWidthPageWidth;
+                fitBoth(maxHeightPageWidth, maxHeightPageHeight, maxHeightPageWidth * localWidthRatio,
+                        viewHeight, fitted);
+                setOptimalMaxHeightPage();
+                heightRatio = optimalMaxHeightPageHeight / maxHeightPageHeight;
+                fitBoth(maxWidthPageWidth, maxWidthPageHeight, viewWidth, maxWidthPageHeight * heightRatio, fitted);
+                setOptimalMaxWidthPage();
+                widthRatio = optimalMaxWidthPageWidth / maxWidthPageWidth;
+                break;
+            default:
+                fitWidth(maxWidthPageWidth, maxWidthPageHeight, viewWidth, fitted);
+                setOptimalMaxWidthPage();
+                widthRatio = optimalMaxWidthPageWidth / maxWidthPageWidth;
+                fitWidth(maxHeightPageWidth, maxHeightPageHeight, maxHeightPageWidth * widthRatio, fitted);
+                setOptimalMaxHeightPage();
+                break;
+        }
+    }
+
+    private void setOptimalMaxWidthPage() {
+        optimalMaxWidthPageWidth = fitted[0];
+        optimalMaxWidthPageHeight = fitted[1];
+    }
+
+    private void setOptimalMaxHeightPage() {
+        optimalMaxHeightPageWidth = fitted[0];
+        optimalMaxHeightPageHeight = fitted[1];
+    }
+
+    private static void fitWidth(float w, float h, float maxWidth, float[] out) {
+        float ratio = w / h;
+        out[0] = maxWidth;
+        out[1] = (float) Math.floor(maxWidth / ratio);
+    }
+
+    private static void fitHeight(float w, float h, float maxHeight, float[] out) {
+        float ratio = h / w;
+        out[0] = (float) Math.floor(maxHeight / ratio);
+        out[1] = maxHeight;
+    }
+
+    private static void fitBoth(float w, float h, float maxWidth, float maxHeight, float[] out) {
+        float ratio = w / h;
+        w = maxWidth;
+        h = (float) Math.floor(maxWidth / ratio);
+        if (h > maxHeight) {
+            h = maxHeight;
+            w = (float) Math.floor(maxHeight * ratio);
+        }
+        out[0] = w;
+        out[1] = h;
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+/**
+ * Layout of pages in a strip: fitted page sizes, spacing, offsets and document length.
+ * It doesn't depend on Android, so it can be benchmarked on a plain JVM. Not thread safe,
+ * {@link #calculate} must not run while the layout is read.
+ */
+public class PageLayout implements DocumentLayout {
+
+    private final boolean isVertical;
+    private final int spacingPx;
+    private final boolean autoSpacing;
+    private final FitPolicy pageFitPolicy;
+    /**
+     * True if every page should fit separately according to the FitPolicy,
+     * else the largest page fits and other pages scale relatively
+     */
+    private final boolean fitEachPage;
+
+    private int pagesCount = 0;
+    private float[] pageWidths = new float[0];
+    private float[] pageHeights = new float[0];
+    private float[] pageSpacing = new float[0];
+    private float[] pageOffsets = new float[0];
+    private float[] previousPagesLengths = new float[0];
+    /** Calculated document length (width or height, depending on swipe mode) */
+    private float documentLength = 0;
+    private float maxWidthPageWidth;
+    private float maxWidthPageHeight;
+    private float maxHeightPageWidth;
+    private float maxHeightPageHeight;
+
+    private final float[] fitted = new float[2];
+
+    public PageLayout(FitPolicy pageFitPolicy, boolean fitEachPage, boolean isVertical, int spacingPx,
+                      boolean autoSpacing) {
+        this.pageFitPolicy = pageFitPolicy;
+        this.fitEachPage = fitEachPage;
+        this.isVertical = isVertical;
+        this.spacingPx = spacingPx;
+        this.autoSpacing = autoSpacing;
+    }
+
+    /** Calculate page sizes, offsets and document length for the view size */
+    public void calculate(PageSizes originalSizes, float viewWidth, float viewHeight) {
+        pagesCount = originalSizes.getPageCount();
+        if (pageWidths.length != pagesCount) {
+            pageWidths = new float[pagesCount];
+            pageHeights = new float[pagesCount];
+            pageSpacing = new float[pagesCount];
+            pageOffsets = new float[pagesCount];
+            previousPagesLengths = new float[pagesCount];
+        }
+
+        // The widest and the highest page, the first one if more pages have the same size
+        int originalMaxWidthPageWidth = 0, originalMaxWidthPageHeight = 0;
+        int originalMaxHeightPageWidth = 0, originalMaxHeightPageHeight = 0;
+        for (int i = 0; i < pagesCount; i++) {
+            int width = originalSizes.getPageWidth(i);
+            int height = originalSizes.getPageHeight(i);
+            if (width > originalMaxWidthPageWidth) {
+                originalMaxWidthPageWidth = width;
+                originalMaxWidthPageHeight = height;
+            }
+            if (height > originalMaxHeightPageHeight) {
+                originalMaxHeightPageWidth = width;
+                originalMaxHeightPageHeight = height;
+            }
+        }
+
+        PageFitCalculator calculator = new PageFitCalculator(pageFitPolicy,
+                originalMaxWidthPageWidth, originalMaxWidthPageHeight,
+                originalMaxHeightPageWidth, originalMaxHeightPageHeight, viewWidth, viewHeight, fitEachPage);
+        maxWidthPageWidth = calculator.getOptimalMaxWidthPageWidth();
+        maxWidthPageHeight = calculator.getOptimalMaxWidthPageHeight();
+        maxHeightPageWidth = calculator.getOptimalMaxHeightPageWidth();
+        maxHeightPageHeight = calculator.getOptimalMaxHeightPageHeight();
+
+        for (int i = 0; i < pagesCount; i++) {
+            calculator.calculate(originalSizes.getPageWidth(i), originalSizes.getPageHeight(i), fitted);
+            pageWidths[i] = fitted[0];
+            pageHeights[i] = fitted[1];
+        }
+        if (autoSpacing) {
+            prepareAutoSpacing(viewWidth, viewHeight);
+        }
+        prepareDocLen();
+        preparePagesOffset();
+    }
+
+    private void prepareAutoSpacing(float viewWidth, float viewHeight) {
+        for (int i = 0; i < pagesCount; i++) {
+            float spacing = Math.max(0, isVertical ? viewHeight - pageHeights[i] : viewWidth - pageWidths[i]);
+            if (i < pagesCount - 1) {
+                spacing += spacingPx;
+            }
+            pageSpacing[i] = spacing;
+        }
+    }
+
+    private void prepareDocLen() {
+        float length = 0;
+        for (int i = 0; i < pagesCount; i++) {
+            length += isVertical ? pageHeights[i] : pageWidths[i];
+            if (autoSpacing) {
+                length += pageSpacing[i];
+            } else if (i < pagesCount - 1) {
+                length += spacingPx;
+            }
+        }
+        documentLength = length;
+    }
+
+    private void preparePagesOffset() {
+        float offset = 0;
+        float previousLength = 0;
+        for (int i = 0; i < pagesCount; i++) {
+            float size = isVertical ? pageHeights[i] : pageWidths[i];
+            previousPagesLengths[i] = previousLength;
+            previousLength += size;
+            if (autoSpacing) {
+                offset += pageSpacing[i] / 2f;
+                if (i == 0) {
+                    offset -= spacingPx / 2f;
+                } else if (i == pagesCount - 1) {
+                    offset += spacingPx / 2f;
+                }
+                pageOffsets[i] = offset;
+                offset += size + pageSpacing[i] / 2f;
+            } else {
+                pageOffsets[i] = offset;
+                offset += size + spacingPx;
+            }
+        }
+    }
+
+    @Override
+    public int getPagesCount() {
+        return pagesCount;
+    }
+
+    @Override
+    public float getPageWidth(int pageIndex) {
+        return pageWidths[pageIndex];
+    }
+
+    @Override
+    public float getPageHeight(int pageIndex) {
+        return pageHeights[pageIndex];
+    }
+
+    /** Width of the fitted widest page */
+    public float getMaxWidthPageWidth() {
+        return maxWidthPageWidth;
+    }
+
+    public float getMaxWidthPageHeight() {
+        return maxWidthPageHeight;
+    }
+
+    public float getMaxHeightPageWidth() {
+        return maxHeightPageWidth;
+    }
+
+    /** Height of the fitted highest page */
+    public float getMaxHeightPageHeight() {
+        return maxHeightPageHeight;
+    }
+
+    /** Width of the page with biggest dimension, the widest page in vertical mode and the highest in horizontal */
+    public float getMaxPageWidth() {
+        return isVertical ? maxWidthPageWidth : maxHeightPageWidth;
+    }
+
+    /** Height of the page with biggest dimension, the widest page in vertical mode and the highest in horizontal */
+    public float getMaxPageHeight() {
+        return isVertical ? maxWidthPageHeight : maxHeightPageHeight;
+    }
+
+    public float getDocLen(float zoom) {
+        return documentLength * zoom;
+    }
+
+    /**
+     * Get the page's height if swiping vertical, or width if swiping horizontal.
+     */
+    public float getPageLength(int pageIndex, float zoom) {
+        return (isVertical ? pageHeights[pageIndex] : pageWidths[pageIndex]) * zoom;
+    }
+
+    public float getPageSpacing(int pageIndex, float zoom) {
+        float spacing = autoSpacing ? pageSpacing[pageIndex] : spacingPx;
+        return spacing * zoom;
+    }
+
+    @Override
+    public float getPageOffset(int pageIndex, float zoom) {
+        return pageOffsets[pageIndex] * zoom;
+    }
+
+    /**
+     * Get summed length of all pages before the given one, that is heights for vertical scroll
+     * and widths for horizontal scroll. Spacing between pages is not included.
+     */
+    public float getPreviousPagesLength(int pageIndex, float zoom) {
+        return previousPagesLengths[pageIndex] * zoom;
+    }
+
+    @Override
+    public float getSecondaryPageOffset(int pageIndex, float zoom) {
+        if (isVertical) {
+            return zoom * (getMaxPageWidth() - pageWidths[pageIndex]) / 2; //x
+        } else {
+            return zoom * (getMaxPageHeight() - pageHeights[pageIndex]) / 2; //y
+        }
+    }
+
+    @Override
+    public int getPageAtOffset(float offset, float zoom) {
+        int currentPage = 0;
+        for (int i = 0; i < pagesCount; i++) {
+            float off = pageOffsets[i] * zoom - getPageSpacing(i, zoom) / 2f;
+            if (off >= offset) {
+                break;
+            }
+            currentPage++;
+        }
+        return --currentPage >= 0 ? currentPage : 0;
+    }
+}
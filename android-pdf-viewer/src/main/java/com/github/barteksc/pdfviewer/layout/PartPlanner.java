@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+import com.github.barteksc.pdfviewer.util.MathUtils;
+
+import java.util.List;
+
+/**
+ * Plans thumbnails and parts covering the view and the preloaded area around it, in the order
+ * they should be rendered. Parts get increasing cache orders starting from 1.
+ */
+public class PartPlanner {
+
+    /** Receives planned thumbnails and parts */
+    public interface Callback {
+
+        /** Thumbnail of a page which is at least partly in the planned area */
+        void onThumbnail(int page);
+
+        /**
+         * Part of a page, bounds are relative to the page size
+         *
+         * @param renderWidth  width of the part's bitmap
+         * @param renderHeight height of the part's bitmap
+         */
+        void onPart(int page, float left, float top, float right, float bottom,
+                    float renderWidth, float renderHeight, int cacheOrder);
+    }
+
+    private final DocumentLayout layout;
+
+    private final RenderRangeCalculator renderRangeCalculator;
+
+    private final float partSize;
+
+    private int cacheOrder;
+    private float pageRelativePartWidth;
+    private float pageRelativePartHeight;
+    private float partRenderWidth;
+    private float partRenderHeight;
+
+    public PartPlanner(DocumentLayout layout, boolean swipeVertical, float zoom, float partSize) {
+        this.layout = layout;
+        this.partSize = partSize;
+        renderRangeCalculator = new RenderRangeCalculator(layout, swipeVertical, zoom, partSize);
+    }
+
+    /**
+     * @param xOffset       X offset of the view, as in {@code PDFView}
+     * @param yOffset       Y offset of the view, as in {@code PDFView}
+     * @param preloadOffset size of the area around the view which is planned too, in pixels
+     * @param maxParts      maximum number of planned parts
+     */
+    public void plan(float xOffset, float yOffset, float viewWidth, float viewHeight, float preloadOffset,
+                     int maxParts, Callback callback) {
+        cacheOrder = 1;
+        xOffset = -MathUtils.max(xOffset, 0);
+        yOffset = -MathUtils.max(yOffset, 0);
+
+        float firstXOffset = -xOffset + preloadOffset;
+        float lastXOffset = -xOffset - viewWidth - preloadOffset;
+        float firstYOffset = -yOffset + preloadOffset;
+        float lastYOffset = -yOffset - viewHeight - preloadOffset;
+
+        List<RenderRange> rangeList = renderRangeCalculator.calculate(firstXOffset, firstYOffset,
+                lastXOffset, lastYOffset);
+
+        for (RenderRange range : rangeList) {
+            callback.onThumbnail(range.getPage());
+        }
+
+        int parts = 0;
+        for (RenderRange range : rangeList) {
+            calculatePartSize(range);
+            parts += planPage(range.getPage(), range.getFirstRow(), range.getLastRow(), range.getFirstCol(),
+                    range.getLastCol(), maxParts - parts, callback);
+            if (parts >= maxParts) {
+                break;
+            }
+        }
+    }
+
+    private void calculatePartSize(RenderRange range) {
+        pageRelativePartWidth = 1f / (float) range.getCols();
+        pageRelativePartHeight = 1f / (float) range.getRows();
+        partRenderWidth = partSize / pageRelativePartWidth;
+        partRenderHeight = partSize / pageRelativePartHeight;
+    }
+
+    private int planPage(int page, int firstRow, int lastRow, int firstCol, int lastCol,
+                         int nbOfPartsLoadable, Callback callback) {
+        int planned = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                if (planCell(page, row, col, callback)) {
+                    planned++;
+                }
+                if (planned >= nbOfPartsLoadable) {
+                    return planned;
+                }
+            }
+        }
+        return planned;
+    }
+
+    private boolean planCell(int page, int row, int col, Callback callback) {
+
+        float relX = pageRelativePartWidth * col;
+        float relY = pageRelativePartHeight * row;
+        float relWidth = pageRelativePartWidth;
+        float relHeight = pageRelativePartHeight;
+
+        float renderWidth = partRenderWidth;
+        float renderHeight = partRenderHeight;
+        if (relX + relWidth > 1) {
+            relWidth = 1 - relX;
+        }
+        if (relY + relHeight > 1) {
+            relHeight = 1 - relY;
+        }
+        renderWidth *= relWidth;
+        renderHeight *= relHeight;
+
+        if (renderWidth > 0 && renderHeight > 0) {
+            callback.onPart(page, relX, relY, relX + relWidth, relY + relHeight, renderWidth, renderHeight,
+                    cacheOrder);
+            cacheOrder++;
+            return true;
+        }
+        return false;
+    }
+}
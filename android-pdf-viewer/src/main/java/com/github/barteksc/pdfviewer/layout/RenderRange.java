@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+/**
+ * Grid of parts of a page and the range of its cells which should be rendered,
+ * calculated by {@link RenderRangeCalculator}.
+ */
+public class RenderRange {
+
+    int page;
+
+    int rows;
+
+    int cols;
+
+    int firstRow;
+
+    int firstCol;
+
+    int lastRow;
+
+    int lastCol;
+
+    public int getPage() {
+        return page;
+    }
+
+    /** Number of rows of parts the page is divided into */
+    public int getRows() {
+        return rows;
+    }
+
+    /** Number of columns of parts the page is divided into */
+    public int getCols() {
+        return cols;
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    public int getFirstCol() {
+        return firstCol;
+    }
+
+    public int getLastRow() {
+        return lastRow;
+    }
+
+    public int getLastCol() {
+        return lastCol;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderRange{" +
+                "page=" + page +
+                ", rows=" + rows +
+                ", cols=" + cols +
+                ", firstRow=" + firstRow +
+                ", firstCol=" + firstCol +
+                ", lastRow=" + lastRow +
+                ", lastCol=" + lastCol +
+                '}';
+    }
+}
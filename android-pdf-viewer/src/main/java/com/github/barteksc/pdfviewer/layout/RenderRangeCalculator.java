@@ -0,0 +1,160 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+import com.github.barteksc.pdfviewer.util.MathUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates which parts of which pages cover an area of the document. Pages are divided into
+ * a grid of parts of about {@code partSize} pixels at the given zoom.
+ */
+public class RenderRangeCalculator {
+
+    private final DocumentLayout layout;
+
+    private final boolean swipeVertical;
+
+    private final float zoom;
+
+    private final float partSize;
+
+    public RenderRangeCalculator(DocumentLayout layout, boolean swipeVertical, float zoom, float partSize) {
+        this.layout = layout;
+        this.swipeVertical = swipeVertical;
+        this.zoom = zoom;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Calculate the render range of each page between the first and the last offset, offsets are
+     * negative positions of the document strip as used by {@code PDFView}
+     */
+    public List<RenderRange> calculate(float firstXOffset, float firstYOffset, float lastXOffset, float lastYOffset) {
+
+        float fixedFirstXOffset = -MathUtils.max(firstXOffset, 0);
+        float fixedFirstYOffset = -MathUtils.max(firstYOffset, 0);
+
+        float fixedLastXOffset = -MathUtils.max(lastXOffset, 0);
+        float fixedLastYOffset = -MathUtils.max(lastYOffset, 0);
+
+        float offsetFirst = swipeVertical ? fixedFirstYOffset : fixedFirstXOffset;
+        float offsetLast = swipeVertical ? fixedLastYOffset : fixedLastXOffset;
+
+        int firstPage = layout.getPageAtOffset(offsetFirst, zoom);
+        int lastPage = layout.getPageAtOffset(offsetLast, zoom);
+        int pageCount = lastPage - firstPage + 1;
+
+        List<RenderRange> renderRanges = new ArrayList<>(pageCount);
+
+        for (int page = firstPage; page <= lastPage; page++) {
+            RenderRange range = new RenderRange();
+            range.page = page;
+
+            float pageOffset = layout.getPageOffset(page, zoom);
+            float scaledPageWidth = layout.getPageWidth(page) * zoom;
+            float scaledPageHeight = layout.getPageHeight(page) * zoom;
+
+            float pageFirstXOffset, pageFirstYOffset, pageLastXOffset, pageLastYOffset;
+            if (page == firstPage) {
+                pageFirstXOffset = fixedFirstXOffset;
+                pageFirstYOffset = fixedFirstYOffset;
+                if (pageCount == 1) {
+                    pageLastXOffset = fixedLastXOffset;
+                    pageLastYOffset = fixedLastYOffset;
+                } else {
+                    if (swipeVertical) {
+                        pageLastXOffset = fixedLastXOffset;
+                        pageLastYOffset = pageOffset + scaledPageHeight;
+                    } else {
+                        pageLastYOffset = fixedLastYOffset;
+                        pageLastXOffset = pageOffset + scaledPageWidth;
+                    }
+                }
+            } else if (page == lastPage) {
+                if (swipeVertical) {
+                    pageFirstXOffset = fixedFirstXOffset;
+                    pageFirstYOffset = pageOffset;
+                } else {
+                    pageFirstYOffset = fixedFirstYOffset;
+                    pageFirstXOffset = pageOffset;
+                }
+
+                pageLastXOffset = fixedLastXOffset;
+                pageLastYOffset = fixedLastYOffset;
+
+            } else {
+                if (swipeVertical) {
+                    pageFirstXOffset = fixedFirstXOffset;
+                    pageFirstYOffset = pageOffset;
+
+                    pageLastXOffset = fixedLastXOffset;
+                    pageLastYOffset = pageOffset + scaledPageHeight;
+                } else {
+                    pageFirstXOffset = pageOffset;
+                    pageFirstYOffset = fixedFirstYOffset;
+
+                    pageLastXOffset = pageOffset + scaledPageWidth;
+                    pageLastYOffset = fixedLastYOffset;
+                }
+            }
+
+            calculateGridSize(range, page); // get the page's grid size that rows and cols
+            float rowHeight = scaledPageHeight / range.rows;
+            float colWidth = scaledPageWidth / range.cols;
+
+
+            // get the page offset int the whole file
+            // ---------------------------------------
+            // |            |           |            |
+            // |<--offset-->|   (page)  |<--offset-->|
+            // |            |           |            |
+            // |            |           |            |
+            // ---------------------------------------
+            float secondaryOffset = layout.getSecondaryPageOffset(page, zoom);
+
+            // calculate the row,col of the point in the leftTop and rightBottom
+            if (swipeVertical) {
+                range.firstRow = MathUtils.floor(Math.abs(pageFirstYOffset - pageOffset) / rowHeight);
+                range.firstCol = MathUtils.floor(MathUtils.min(pageFirstXOffset - secondaryOffset, 0) / colWidth);
+
+                range.lastRow = MathUtils.ceil(Math.abs(pageLastYOffset - pageOffset) / rowHeight);
+                range.lastCol = MathUtils.floor(MathUtils.min(pageLastXOffset - secondaryOffset, 0) / colWidth);
+            } else {
+                range.firstCol = MathUtils.floor(Math.abs(pageFirstXOffset - pageOffset) / colWidth);
+                range.firstRow = MathUtils.floor(MathUtils.min(pageFirstYOffset - secondaryOffset, 0) / rowHeight);
+
+                range.lastCol = MathUtils.floor(Math.abs(pageLastXOffset - pageOffset) / colWidth);
+                range.lastRow = MathUtils.floor(MathUtils.min(pageLastYOffset - secondaryOffset, 0) / rowHeight);
+            }
+
+            renderRanges.add(range);
+        }
+
+        return renderRanges;
+    }
+
+    private void calculateGridSize(RenderRange range, int pageIndex) {
+        float ratioX = 1f / layout.getPageWidth(pageIndex);
+        float ratioY = 1f / layout.getPageHeight(pageIndex);
+        final float partHeight = (partSize * ratioY) / zoom;
+        final float partWidth = (partSize * ratioX) / zoom;
+        range.rows = MathUtils.ceil(1f / partHeight);
+        range.cols = MathUtils.ceil(1f / partWidth);
+    }
+}
@@ -27,6 +27,11 @@ public class Callbacks {
      */
     private OnLoadCompleteListener onLoadCompleteListener;
 
+    /**
+     * Call back object to call while the PDF is being opened
+     */
+    private OnLoadProgressListener onLoadProgressListener;
+
     /**
      * Call back object to call when document loading error occurs
      */
@@ -84,6 +89,16 @@ public class Callbacks {
         }
     }
 
+    public void setOnLoadProgress(OnLoadProgressListener onLoadProgressListener) {
+        this.onLoadProgressListener = onLoadProgressListener;
+    }
+
+    public void callOnLoadProgress(OnLoadProgressListener.Stage stage, int progress, int total) {
+        if (onLoadProgressListener != null) {
+            onLoadProgressListener.onLoadProgress(stage, progress, total);
+        }
+    }
+
     public void setOnError(OnErrorListener onErrorListener) {
         this.onErrorListener = onErrorListener;
     }
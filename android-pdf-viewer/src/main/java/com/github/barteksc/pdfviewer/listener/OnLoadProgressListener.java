@@ -0,0 +1,42 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.listener;
+
+/**
+ * Implement this interface to receive events from PDFView
+ * while the document is being opened.
+ */
+public interface OnLoadProgressListener {
+
+    /** Stages of opening a document, in order */
+    enum Stage {
+        /** Source is being read and the document is being opened by pdfium */
+        DOCUMENT,
+        /** Sizes of pages are being measured */
+        PAGE_METRICS,
+        /** Document is laid out and the first parts are being rendered */
+        FIRST_RENDER
+    }
+
+    /**
+     * Called on the UI thread when the stage changes or advances
+     *
+     * @param stage    current stage
+     * @param progress units of work done in the current stage
+     * @param total    units of work in the current stage
+     */
+    void onLoadProgress(Stage stage, int progress, int total);
+}
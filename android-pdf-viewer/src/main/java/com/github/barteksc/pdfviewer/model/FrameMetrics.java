@@ -0,0 +1,192 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.model;
+
+/**
+ * Snapshot of the most recent frames and UI work of a {@code PDFView}, taken with
+ * {@code PDFView.getFrameMetrics()}. Samples are ordered from the oldest to the newest,
+ * every sample contains the zoom and the current page when it was recorded,
+ * so slow frames can be related to the document.
+ */
+public class FrameMetrics {
+
+    private final DrawSamples draws;
+
+    private final Samples touches;
+
+    private final Samples pageLoads;
+
+    private final Samples planning;
+
+    private final long frameBudget;
+
+    private final long frames;
+
+    private final long framesOverBudget;
+
+    private final long droppedFrames;
+
+    private final int pageCount;
+
+    private final float maxPageWidth;
+
+    private final float maxPageHeight;
+
+    public FrameMetrics(DrawSamples draws, Samples touches, Samples pageLoads, Samples planning, long frameBudget,
+                        long frames, long framesOverBudget, long droppedFrames, int pageCount,
+                        float maxPageWidth, float maxPageHeight) {
+        this.draws = draws;
+        this.touches = touches;
+        this.pageLoads = pageLoads;
+        this.planning = planning;
+        this.frameBudget = frameBudget;
+        this.frames = frames;
+        this.framesOverBudget = framesOverBudget;
+        this.droppedFrames = droppedFrames;
+        this.pageCount = pageCount;
+        this.maxPageWidth = maxPageWidth;
+        this.maxPageHeight = maxPageHeight;
+    }
+
+    /** Calls of {@code onDraw} which drew the document */
+    public DrawSamples getDraws() {
+        return draws;
+    }
+
+    /** Touch events handled by the view */
+    public Samples getTouches() {
+        return touches;
+    }
+
+    /** Requests to load pages by the current offset, made on the UI thread */
+    public Samples getPageLoads() {
+        return pageLoads;
+    }
+
+    /** Planning of parts to render for a viewport, made on the planning thread */
+    public Samples getPlanning() {
+        return planning;
+    }
+
+    /** Duration of one display frame in nanoseconds */
+    public long getFrameBudget() {
+        return frameBudget;
+    }
+
+    /** Number of frames observed while the view was drawing, 0 before API 16 */
+    public long getFrames() {
+        return frames;
+    }
+
+    /** Number of observed frames which took longer than one and a half frame budget */
+    public long getFramesOverBudget() {
+        return framesOverBudget;
+    }
+
+    /** Number of display frames which were skipped by the frames over budget */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public float getMaxPageWidth() {
+        return maxPageWidth;
+    }
+
+    public float getMaxPageHeight() {
+        return maxPageHeight;
+    }
+
+    public static class Samples {
+
+        private final long[] times;
+
+        private final long[] durations;
+
+        private final float[] zooms;
+
+        private final int[] pages;
+
+        /**
+         * @param times     start of each sample, {@link System#nanoTime()} based
+         * @param durations duration of each sample in nanoseconds
+         */
+        public Samples(long[] times, long[] durations, float[] zooms, int[] pages) {
+            this.times = times;
+            this.durations = durations;
+            this.zooms = zooms;
+            this.pages = pages;
+        }
+
+        public int size() {
+            return times.length;
+        }
+
+        /** @return start of the sample, {@link System#nanoTime()} based */
+        public long getTime(int index) {
+            return times[index];
+        }
+
+        /** @return duration of the sample in nanoseconds */
+        public long getDuration(int index) {
+            return durations[index];
+        }
+
+        public float getZoom(int index) {
+            return zooms[index];
+        }
+
+        public int getPage(int index) {
+            return pages[index];
+        }
+
+        /** @return longest duration in nanoseconds, 0 if empty */
+        public long getMaxDuration() {
+            long max = 0;
+            for (long duration : durations) {
+                max = Math.max(max, duration);
+            }
+            return max;
+        }
+    }
+
+    public static class DrawSamples extends Samples {
+
+        private final int[] partsDrawn;
+
+        private final int[] partsCulled;
+
+        public DrawSamples(long[] times, long[] durations, float[] zooms, int[] pages,
+                           int[] partsDrawn, int[] partsCulled) {
+            super(times, durations, zooms, pages);
+            this.partsDrawn = partsDrawn;
+            this.partsCulled = partsCulled;
+        }
+
+        /** @return number of parts and thumbnails drawn in the frame */
+        public int getPartsDrawn(int index) {
+            return partsDrawn[index];
+        }
+
+        /** @return number of cached parts and thumbnails skipped because they were off screen */
+        public int getPartsCulled(int index) {
+            return partsCulled[index];
+        }
+    }
+}
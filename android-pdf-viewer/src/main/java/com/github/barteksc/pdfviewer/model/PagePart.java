@@ -17,6 +17,7 @@ package com.github.barteksc.pdfviewer.model;
 
 import android.graphics.Bitmap;
 import android.graphics.RectF;
+import android.os.SystemClock;
 
 public class PagePart {
 
@@ -30,6 +31,9 @@ public class PagePart {
 
     private int cacheOrder;
 
+    /** {@link SystemClock#uptimeMillis()} when the part was created */
+    private final long creationTime = SystemClock.uptimeMillis();
+
     public PagePart(int page, Bitmap renderedBitmap, RectF pageRelativeBounds, boolean thumbnail, int cacheOrder) {
         super();
         this.page = page;
@@ -59,6 +63,10 @@ public class PagePart {
         return thumbnail;
     }
 
+    public long getCreationTime() {
+        return creationTime;
+    }
+
     public void setCacheOrder(int cacheOrder) {
         this.cacheOrder = cacheOrder;
     }
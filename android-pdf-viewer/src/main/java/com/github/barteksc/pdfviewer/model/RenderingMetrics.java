@@ -0,0 +1,178 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.model;
+
+/**
+ * Snapshot of rendering metrics of a {@code PDFView} since its document was loaded,
+ * taken with {@code PDFView.getRenderingMetrics()}.
+ */
+public class RenderingMetrics {
+
+    private final Histogram queueWait;
+
+    private final Histogram renderTime;
+
+    private final Histogram pageOpenTime;
+
+    private final long cacheHits;
+
+    private final long cacheMisses;
+
+    private final long evictions;
+
+    private final long cancelledTasks;
+
+    private final long timeToFirstRender;
+
+    public RenderingMetrics(Histogram queueWait, Histogram renderTime, Histogram pageOpenTime, long cacheHits,
+                            long cacheMisses, long evictions, long cancelledTasks, long timeToFirstRender) {
+        this.queueWait = queueWait;
+        this.renderTime = renderTime;
+        this.pageOpenTime = pageOpenTime;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.evictions = evictions;
+        this.cancelledTasks = cancelledTasks;
+        this.timeToFirstRender = timeToFirstRender;
+    }
+
+    /** Time parts waited in the rendering queue before their rendering started */
+    public Histogram getQueueWait() {
+        return queueWait;
+    }
+
+    /** Time pdfium spent rendering a part */
+    public Histogram getRenderTime() {
+        return renderTime;
+    }
+
+    /** Time pdfium spent opening a page */
+    public Histogram getPageOpenTime() {
+        return pageOpenTime;
+    }
+
+    /** Number of parts and thumbnails which were found in the cache when pages were loaded */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /** Number of parts and thumbnails which were not in the cache and were queued for rendering */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /** Number of parts and thumbnails recycled to make space in the cache */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** Number of queued parts which were cancelled before being rendered */
+    public long getCancelledTasks() {
+        return cancelledTasks;
+    }
+
+    /** Time in milliseconds from loading of the document to its first rendered part, -1 if not rendered yet */
+    public long getTimeToFirstRender() {
+        return timeToFirstRender;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderingMetrics{queueWait=" + queueWait +
+                ", renderTime=" + renderTime +
+                ", pageOpenTime=" + pageOpenTime +
+                ", cacheHits=" + cacheHits +
+                ", cacheMisses=" + cacheMisses +
+                ", evictions=" + evictions +
+                ", cancelledTasks=" + cancelledTasks +
+                ", timeToFirstRender=" + timeToFirstRender +
+                '}';
+    }
+
+    /**
+     * Histogram of durations in milliseconds. Bucket 0 counts durations below 1 ms,
+     * bucket i counts durations from 2^(i-1) ms up to 2^i ms and the last bucket counts all longer ones.
+     */
+    public static class Histogram {
+
+        private final long[] buckets;
+
+        private final long count;
+
+        private final long totalNanos;
+
+        private final long maxNanos;
+
+        public Histogram(long[] buckets, long totalNanos, long maxNanos) {
+            this.buckets = buckets;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            this.count = count;
+        }
+
+        public int getBucketCount() {
+            return buckets.length;
+        }
+
+        /** @return number of durations in the given bucket */
+        public long getBucket(int index) {
+            return buckets[index];
+        }
+
+        /** @return exclusive upper bound of the bucket in milliseconds, {@link Long#MAX_VALUE} for the last one */
+        public long getBucketUpperBound(int index) {
+            return index == buckets.length - 1 ? Long.MAX_VALUE : 1L << index;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public float getMean() {
+            return count == 0 ? 0 : totalNanos / (count * 1000000f);
+        }
+
+        public float getMax() {
+            return maxNanos / 1000000f;
+        }
+
+        /**
+         * @param percentile between 0 and 1
+         * @return upper bound in milliseconds of the bucket containing the percentile, 0 if empty
+         */
+        public long getPercentile(float percentile) {
+            long rank = (long) Math.ceil(count * percentile);
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= rank && cumulative > 0) {
+                    return getBucketUpperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + getMean() + " ms, p50<" + getPercentile(0.5f) +
+                    " ms, p95<" + getPercentile(0.95f) + " ms, max=" + getMax() + " ms}";
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.session;
+
+import com.github.barteksc.pdfviewer.layout.PageSizes;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Session recorded by {@link SessionRecorder}, read back for offline replay
+ */
+public class RecordedSession {
+
+    static final int MAGIC = 0x50444653; // "PDFS"
+    static final int VERSION = 2;
+
+    static final int EVENT_LAYOUT = 1;
+    static final int EVENT_MOVE = 2;
+    static final int EVENT_ZOOM = 3;
+    static final int EVENT_LOAD_PAGES = 4;
+    /** Since version 2 */
+    static final int EVENT_PAGE_SIZES = 5;
+
+    public enum EventType {
+        LAYOUT, MOVE, ZOOM, LOAD_PAGES, PAGE_SIZES
+    }
+
+    /** Layout of the document, as configured in {@code PDFView} */
+    public static class Layout implements PageSizes {
+        private boolean documentLoaded;
+        private FitPolicy pageFitPolicy;
+        private boolean fitEachPage;
+        private boolean swipeVertical;
+        private int spacingPx;
+        private boolean autoSpacing;
+        private int viewWidth;
+        private int viewHeight;
+        private int[] pageWidths;
+        private int[] pageHeights;
+
+        /** @return true if a new document was loaded, false if the document was laid out again */
+        public boolean isDocumentLoaded() {
+            return documentLoaded;
+        }
+
+        public FitPolicy getPageFitPolicy() {
+            return pageFitPolicy;
+        }
+
+        public boolean isFitEachPage() {
+            return fitEachPage;
+        }
+
+        public boolean isSwipeVertical() {
+            return swipeVertical;
+        }
+
+        public int getSpacingPx() {
+            return spacingPx;
+        }
+
+        public boolean isAutoSpacing() {
+            return autoSpacing;
+        }
+
+        public int getViewWidth() {
+            return viewWidth;
+        }
+
+        public int getViewHeight() {
+            return viewHeight;
+        }
+
+        @Override
+        public int getPageCount() {
+            return pageWidths.length;
+        }
+
+        @Override
+        public int getPageWidth(int pageIndex) {
+            return pageWidths[pageIndex];
+        }
+
+        @Override
+        public int getPageHeight(int pageIndex) {
+            return pageHeights[pageIndex];
+        }
+
+        /**
+         * @param fromPage  first page of the sizes
+         * @param pageSizes sizes of {@link EventType#PAGE_SIZES}
+         * @return copy of the layout with the sizes replaced, laid out again
+         */
+        public Layout withPageSizes(int fromPage, PageSizes pageSizes) {
+            Layout layout = new Layout();
+            layout.documentLoaded = false;
+            layout.pageFitPolicy = pageFitPolicy;
+            layout.fitEachPage = fitEachPage;
+            layout.swipeVertical = swipeVertical;
+            layout.spacingPx = spacingPx;
+            layout.autoSpacing = autoSpacing;
+            layout.viewWidth = viewWidth;
+            layout.viewHeight = viewHeight;
+            layout.pageWidths = pageWidths.clone();
+            layout.pageHeights = pageHeights.clone();
+            for (int i = 0; i < pageSizes.getPageCount(); i++) {
+                layout.pageWidths[fromPage + i] = pageSizes.getPageWidth(i);
+                layout.pageHeights[fromPage + i] = pageSizes.getPageHeight(i);
+            }
+            return layout;
+        }
+    }
+
+    /** Sizes of a range of pages, indexed from the first page of the range */
+    private static class PageRangeSizes implements PageSizes {
+        private int[] pageWidths;
+        private int[] pageHeights;
+
+        @Override
+        public int getPageCount() {
+            return pageWidths.length;
+        }
+
+        @Override
+        public int getPageWidth(int pageIndex) {
+            return pageWidths[pageIndex];
+        }
+
+        @Override
+        public int getPageHeight(int pageIndex) {
+            return pageHeights[pageIndex];
+        }
+    }
+
+    public static class Event {
+        private EventType type;
+        private long time;
+        private float xOffset;
+        private float yOffset;
+        private float zoom;
+        private Layout layout;
+        private int fromPage;
+        private PageSizes pageSizes;
+
+        public EventType getType() {
+            return type;
+        }
+
+        /** @return microseconds since the recording started */
+        public long getTime() {
+            return time;
+        }
+
+        /** X offset of {@link EventType#MOVE} and {@link EventType#LOAD_PAGES} */
+        public float getXOffset() {
+            return xOffset;
+        }
+
+        /** Y offset of {@link EventType#MOVE} and {@link EventType#LOAD_PAGES} */
+        public float getYOffset() {
+            return yOffset;
+        }
+
+        /** Zoom of {@link EventType#ZOOM} and {@link EventType#LOAD_PAGES} */
+        public float getZoom() {
+            return zoom;
+        }
+
+        /** Layout of {@link EventType#LAYOUT} */
+        public Layout getLayout() {
+            return layout;
+        }
+
+        /** First measured page of {@link EventType#PAGE_SIZES} */
+        public int getFromPage() {
+            return fromPage;
+        }
+
+        /**
+         * Sizes of the measured pages of {@link EventType#PAGE_SIZES}, the first one is the size of
+         * {@link #getFromPage()}, see {@link Layout#withPageSizes(int, PageSizes)}
+         */
+        public PageSizes getPageSizes() {
+            return pageSizes;
+        }
+    }
+
+    private float partSize;
+    private float thumbnailRatio;
+    private int preloadOffset;
+    private int cacheSize;
+    private int thumbnailsCacheSize;
+    private final List<Event> events = new ArrayList<>();
+
+    private RecordedSession() {
+    }
+
+    /**
+     * Read a whole recording, the stream is not closed
+     *
+     * @throws IOException if the stream doesn't contain a valid recording
+     */
+    public static RecordedSession read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a session recording");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported session recording version " + version);
+        }
+
+        RecordedSession session = new RecordedSession();
+        session.partSize = in.readFloat();
+        session.thumbnailRatio = in.readFloat();
+        session.preloadOffset = readVarInt(in);
+        session.cacheSize = readVarInt(in);
+        session.thumbnailsCacheSize = readVarInt(in);
+
+        long time = 0;
+        int type;
+        while ((type = in.read()) != -1) {
+            Event event = new Event();
+            time += readVarLong(in);
+            event.time = time;
+            switch (type) {
+                case EVENT_LAYOUT:
+                    event.type = EventType.LAYOUT;
+                    event.layout = readLayout(in);
+                    break;
+                case EVENT_MOVE:
+                    event.type = EventType.MOVE;
+                    event.xOffset = in.readFloat();
+                    event.yOffset = in.readFloat();
+                    break;
+                case EVENT_ZOOM:
+                    event.type = EventType.ZOOM;
+                    event.zoom = in.readFloat();
+                    break;
+                case EVENT_LOAD_PAGES:
+                    event.type = EventType.LOAD_PAGES;
+                    event.xOffset = in.readFloat();
+                    event.yOffset = in.readFloat();
+                    event.zoom = in.readFloat();
+                    break;
+                case EVENT_PAGE_SIZES:
+                    event.type = EventType.PAGE_SIZES;
+                    event.fromPage = readVarInt(in);
+                    event.pageSizes = readPageSizes(in);
+                    break;
+                default:
+                    throw new IOException("Unknown event type " + type);
+            }
+            session.events.add(event);
+        }
+        return session;
+    }
+
+    private static Layout readLayout(DataInputStream in) throws IOException {
+        Layout layout = new Layout();
+        layout.documentLoaded = in.readBoolean();
+        int fitPolicy = in.readUnsignedByte();
+        if (fitPolicy >= FitPolicy.values().length) {
+            throw new IOException("Unknown fit policy " + fitPolicy);
+        }
+        layout.pageFitPolicy = FitPolicy.values()[fitPolicy];
+        layout.fitEachPage = in.readBoolean();
+        layout.swipeVertical = in.readBoolean();
+        layout.spacingPx = readVarInt(in);
+        layout.autoSpacing = in.readBoolean();
+        layout.viewWidth = readVarInt(in);
+        layout.viewHeight = readVarInt(in);
+        int pageCount = readVarInt(in);
+        layout.pageWidths = new int[pageCount];
+        layout.pageHeights = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            layout.pageWidths[i] = readVarInt(in);
+            layout.pageHeights[i] = readVarInt(in);
+        }
+        return layout;
+    }
+
+    private static PageSizes readPageSizes(DataInputStream in) throws IOException {
+        PageRangeSizes sizes = new PageRangeSizes();
+        int count = readVarInt(in);
+        sizes.pageWidths = new int[count];
+        sizes.pageHeights = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes.pageWidths[i] = readVarInt(in);
+            sizes.pageHeights[i] = readVarInt(in);
+        }
+        return sizes;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated session recording");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in session recording");
+    }
+
+    public float getPartSize() {
+        return partSize;
+    }
+
+    public float getThumbnailRatio() {
+        return thumbnailRatio;
+    }
+
+    /** @return size of the area around the view which was loaded too, in pixels */
+    public int getPreloadOffset() {
+        return preloadOffset;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public int getThumbnailsCacheSize() {
+        return thumbnailsCacheSize;
+    }
+
+    public List<Event> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+}
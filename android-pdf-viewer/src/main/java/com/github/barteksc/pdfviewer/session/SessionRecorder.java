@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.session;
+
+import com.github.barteksc.pdfviewer.layout.PageSizes;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records viewport changes and page loads of a viewing session in memory, in the compact binary
+ * format read by {@link RecordedSession}. Times are stored as microseconds since the previous event.
+ * Not thread safe, {@code PDFView} records on the UI thread.
+ */
+public class SessionRecorder {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+
+    private long lastEventTime = System.nanoTime();
+
+    /**
+     * @param partSize            size of rendered parts, see {@code Constants.PART_SIZE}
+     * @param thumbnailRatio      see {@code Constants.THUMBNAIL_RATIO}
+     * @param preloadOffset       size of the area around the view which is loaded too, in pixels
+     * @param cacheSize           see {@code Constants.Cache.CACHE_SIZE}
+     * @param thumbnailsCacheSize see {@code Constants.Cache.THUMBNAILS_CACHE_SIZE}
+     */
+    public SessionRecorder(float partSize, float thumbnailRatio, int preloadOffset, int cacheSize,
+                           int thumbnailsCacheSize) {
+        writeInt(RecordedSession.MAGIC);
+        writeByte(RecordedSession.VERSION);
+        writeFloat(partSize);
+        writeFloat(thumbnailRatio);
+        writeVarInt(preloadOffset);
+        writeVarInt(cacheSize);
+        writeVarInt(thumbnailsCacheSize);
+    }
+
+    /**
+     * Record the layout of a loaded document, or a new layout after the view was resized
+     *
+     * @param documentLoaded true if a new document was loaded, its parts are not cached yet
+     */
+    public void recordLayout(boolean documentLoaded, FitPolicy pageFitPolicy, boolean fitEachPage,
+                             boolean swipeVertical, int spacingPx, boolean autoSpacing,
+                             int viewWidth, int viewHeight, PageSizes originalPageSizes) {
+        writeEvent(RecordedSession.EVENT_LAYOUT);
+        writeBoolean(documentLoaded);
+        writeByte(pageFitPolicy.ordinal());
+        writeBoolean(fitEachPage);
+        writeBoolean(swipeVertical);
+        writeVarInt(spacingPx);
+        writeBoolean(autoSpacing);
+        writeVarInt(viewWidth);
+        writeVarInt(viewHeight);
+        int pageCount = originalPageSizes.getPageCount();
+        writeVarInt(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            writeVarInt(originalPageSizes.getPageWidth(i));
+            writeVarInt(originalPageSizes.getPageHeight(i));
+        }
+    }
+
+    /**
+     * Record sizes of pages measured after a fast start, they replace the sizes of the last layout
+     *
+     * @param fromPage          first measured page
+     * @param count             number of measured pages
+     * @param originalPageSizes sizes of all pages, including the measured ones
+     */
+    public void recordPageSizes(int fromPage, int count, PageSizes originalPageSizes) {
+        writeEvent(RecordedSession.EVENT_PAGE_SIZES);
+        writeVarInt(fromPage);
+        writeVarInt(count);
+        for (int i = fromPage; i < fromPage + count; i++) {
+            writeVarInt(originalPageSizes.getPageWidth(i));
+            writeVarInt(originalPageSizes.getPageHeight(i));
+        }
+    }
+
+    /** Record offsets after {@code PDFView.moveTo} */
+    public void recordMove(float xOffset, float yOffset) {
+        writeEvent(RecordedSession.EVENT_MOVE);
+        writeFloat(xOffset);
+        writeFloat(yOffset);
+    }
+
+    /** Record a zoom change, offsets are recorded by the following move */
+    public void recordZoom(float zoom) {
+        writeEvent(RecordedSession.EVENT_ZOOM);
+        writeFloat(zoom);
+    }
+
+    /** Record a {@code PDFView.loadPages} call with the published viewport */
+    public void recordLoadPages(float xOffset, float yOffset, float zoom) {
+        writeEvent(RecordedSession.EVENT_LOAD_PAGES);
+        writeFloat(xOffset);
+        writeFloat(yOffset);
+        writeFloat(zoom);
+    }
+
+    /** @return number of recorded bytes */
+    public int size() {
+        return buffer.size();
+    }
+
+    /** Write the recording, it can be continued afterwards */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        buffer.writeTo(outputStream);
+    }
+
+    private void writeEvent(int type) {
+        long now = System.nanoTime();
+        writeByte(type);
+        long micros = (now - lastEventTime) / 1000;
+        writeVarLong(micros);
+        // Keep the remainder, so rounding errors don't add up
+        lastEventTime += micros * 1000;
+    }
+
+    private void writeByte(int value) {
+        buffer.write(value);
+    }
+
+    private void writeBoolean(boolean value) {
+        buffer.write(value ? 1 : 0);
+    }
+
+    /** Big endian, as read by {@link java.io.DataInputStream} */
+    private void writeInt(int value) {
+        buffer.write(value >>> 24);
+        buffer.write(value >>> 16);
+        buffer.write(value >>> 8);
+        buffer.write(value);
+    }
+
+    private void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    private void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /** Unsigned LEB128, 7 bits per byte */
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.barteksc.pdfviewer.sign;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// 將一個頁面的簽名框依頁面座標(zoom = 1)放進格子中，觸碰時只需要檢查所在格子的簽名框
+// 新增、移動、縮放或刪除簽名框後需要呼叫 invalidate()，下一次查詢時才會重建
+public class SignAreaIndex {
+    private static final int CELL_SIZE = 128;
+
+    private final SparseArray<List<SignArea>> cells = new SparseArray<>();
+    private boolean dirty = true;
+
+    public void invalidate() {
+        dirty = true;
+    }
+
+    // x, y 為頁面座標，回傳包含此點的簽名框，沒有則回傳 null
+    public SignArea findAreaAt(Map<String, SignArea> mapSignAreas, float x, float y) {
+        if(dirty) {
+            rebuild(mapSignAreas);
+        }
+        if(x < 0 || y < 0) { return null; }
+
+        List<SignArea> candidates = cells.get(cellKey(toCell(x), toCell(y)));
+        if(candidates == null) { return null; }
+        for(SignArea area : candidates) {
+            if(x > area.getLeft() && x < area.getRight() && y > area.getTop() && y < area.getBottom()) {
+                return area;
+            }
+        }
+        return null;
+    }
+
+    private void rebuild(Map<String, SignArea> mapSignAreas) {
+        cells.clear();
+        dirty = false;
+        if(mapSignAreas == null) { return; }
+
+        for(Map.Entry<String, SignArea> entry : mapSignAreas.entrySet()) {
+            SignArea area = entry.getValue();
+            if(area == null || !area.getTag().equals(entry.getKey())) { continue; }
+
+            int firstCol = toCell(Math.max(area.getLeft(), 0));
+            int lastCol = toCell(Math.max(area.getRight(), 0));
+            int firstRow = toCell(Math.max(area.getTop(), 0));
+            int lastRow = toCell(Math.max(area.getBottom(), 0));
+            for(int row = firstRow; row <= lastRow; row++) {
+                for(int col = firstCol; col <= lastCol; col++) {
+                    int key = cellKey(col, row);
+                    List<SignArea> cell = cells.get(key);
+                    if(cell == null) {
+                        cell = new ArrayList<>(2);
+                        cells.put(key, cell);
+                    }
+                    cell.add(area);
+                }
+            }
+        }
+    }
+
+    private static int toCell(float coordinate) {
+        return (int) (coordinate / CELL_SIZE);
+    }
+
+    private static int cellKey(int col, int row) {
+        return (row << 16) | (col & 0xFFFF);
+    }
+}
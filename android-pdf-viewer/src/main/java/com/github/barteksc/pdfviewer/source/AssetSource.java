@@ -40,4 +40,14 @@ public class AssetSource implements DocumentSource {
         ParcelFileDescriptor pfd = ParcelFileDescriptor.open(f, ParcelFileDescriptor.MODE_READ_ONLY);
         return core.newDocument(pfd, password);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof AssetSource && assetName.equals(((AssetSource) o).assetName));
+    }
+
+    @Override
+    public int hashCode() {
+        return assetName.hashCode();
+    }
 }
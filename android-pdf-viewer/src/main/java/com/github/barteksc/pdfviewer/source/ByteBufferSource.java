@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 Bartosz Schiller.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.source;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.system.Os;
+
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Source of a document kept in a {@link ByteBuffer}, e.g. a document decrypted into a direct buffer.
+ * Native code reads documents only from a byte array or a file descriptor, so the buffer is written
+ * to an anonymous memory file (memfd) on API 30+, or to a temp file which is deleted right after
+ * the document is opened on older versions. Content of a direct buffer never goes through Java heap.
+ */
+public class ByteBufferSource implements DocumentSource {
+
+    /** {@code Build.VERSION_CODES.R}, memfd_create is public since this version */
+    private static final int MEMFD_API_LEVEL = 30;
+
+    private ByteBuffer buffer;
+
+    /** @param buffer content of the document between its position and limit, buffer itself is not modified */
+    public ByteBufferSource(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        ParcelFileDescriptor pfd = null;
+        if (Build.VERSION.SDK_INT >= MEMFD_API_LEVEL) {
+            pfd = writeToMemoryFile();
+        }
+        if (pfd == null) {
+            pfd = writeToTempFile(context.getCacheDir());
+        }
+        try {
+            return core.newDocument(pfd, password);
+        } catch (IOException e) {
+            pfd.close();
+            throw e;
+        }
+    }
+
+    /** @return descriptor of the memory file or null if it cannot be created */
+    private ParcelFileDescriptor writeToMemoryFile() throws IOException {
+        FileDescriptor fd;
+        try {
+            // Library is compiled against API 28, which does not have Os.memfd_create yet
+            Method memfdCreate = Os.class.getMethod("memfd_create", String.class, int.class);
+            fd = (FileDescriptor) memfdCreate.invoke(null, "pdfview", 0);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            return null;
+        }
+
+        FileOutputStream outputStream = new FileOutputStream(fd);
+        try {
+            write(outputStream.getChannel());
+            return ParcelFileDescriptor.dup(fd);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private ParcelFileDescriptor writeToTempFile(File dir) throws IOException {
+        File file = File.createTempFile("pdfview-", ".buffer", dir);
+        try {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            try {
+                write(outputStream.getChannel());
+            } finally {
+                outputStream.close();
+            }
+            return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        } finally {
+            // Document keeps the file descriptor, its space is released when the document is closed
+            file.delete();
+        }
+    }
+
+    private void write(FileChannel channel) throws IOException {
+        ByteBuffer content = buffer.duplicate();
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2016 Bartosz Schiller.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.source;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sparse on-disk cache of a remote file. The data file has the length of the remote file and is filled
+ * chunk by chunk, the index file keeps the downloaded chunks, so they are reused by next opens.
+ * A cache is reset when the length or the validator (ETag or Last-Modified) of the remote file changes.
+ * <p>
+ * Files of a cache are locked while it is open. If another cache of the same remote file holds the lock,
+ * in this or another process, a private cache is used instead, which is deleted when it is closed.
+ */
+class ChunkCache implements Closeable {
+
+    private static final int INDEX_VERSION = 1;
+
+    private final RandomAccessFile data;
+
+    private final File dataFile;
+
+    private final File indexFile;
+
+    private final String key;
+
+    private final long length;
+
+    private final int chunkSize;
+
+    private final String validator;
+
+    private final BitSet chunks;
+
+    /** Lock of the shared cache files, null for a private cache */
+    private final RandomAccessFile lockFile;
+
+    private final FileLock lock;
+
+    private boolean closed;
+
+    private ChunkCache(File dataFile, File indexFile, String key, long length, int chunkSize, String validator,
+                       BitSet chunks, RandomAccessFile lockFile, FileLock lock) throws IOException {
+        this.lockFile = lockFile;
+        this.lock = lock;
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        this.key = key;
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.validator = validator;
+        this.chunks = chunks;
+        this.data = new RandomAccessFile(dataFile, "rw");
+        data.setLength(length);
+    }
+
+    static ChunkCache open(File dir, String key, long length, int chunkSize, String validator) throws IOException {
+        dir.mkdirs();
+        String name = Integer.toHexString(key.hashCode()) + "-" + length;
+        RandomAccessFile lockFile = new RandomAccessFile(new File(dir, name + ".lock"), "rw");
+        FileLock lock = null;
+        try {
+            lock = tryLock(lockFile);
+            if (lock == null) {
+                lockFile.close();
+                lockFile = null;
+                name += "-" + UUID.randomUUID();
+            }
+            File dataFile = new File(dir, name + ".data");
+            File indexFile = new File(dir, name + ".index");
+
+            BitSet chunks = null;
+            if (lock != null && dataFile.length() == length) {
+                chunks = readIndex(indexFile, key, length, chunkSize, validator);
+            }
+            if (chunks == null) {
+                chunks = new BitSet();
+                indexFile.delete();
+            }
+            return new ChunkCache(dataFile, indexFile, key, length, chunkSize, validator, chunks, lockFile, lock);
+        } catch (IOException e) {
+            if (lockFile != null) {
+                lockFile.close();
+            }
+            throw e;
+        }
+    }
+
+    /** @return lock of the file, null if another cache holds it */
+    private static FileLock tryLock(RandomAccessFile lockFile) throws IOException {
+        try {
+            return lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /** @return downloaded chunks, null if the index is missing or belongs to a different file */
+    private static BitSet readIndex(File indexFile, String key, long length, int chunkSize, String validator) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(indexFile));
+            if (in.readInt() != INDEX_VERSION || !key.equals(in.readUTF()) || in.readLong() != length
+                    || in.readInt() != chunkSize || !validator.equals(in.readUTF())) {
+                return null;
+            }
+            BitSet chunks = new BitSet();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                chunks.set(in.readInt());
+            }
+            return chunks;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /** Index is written to a temp file and renamed, so a crash never leaves chunks marked which are not on disk */
+    private void writeIndex() throws IOException {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+        try {
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(key);
+            out.writeLong(length);
+            out.writeInt(chunkSize);
+            out.writeUTF(validator);
+            out.writeInt(chunks.cardinality());
+            for (int i = chunks.nextSetBit(0); i >= 0; i = chunks.nextSetBit(i + 1)) {
+                out.writeInt(i);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            tempFile.delete();
+            throw new IOException("Cannot write " + indexFile);
+        }
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    File getDataFile() {
+        return dataFile;
+    }
+
+    private int getChunkCount() {
+        return (int) ((length + chunkSize - 1) / chunkSize);
+    }
+
+    synchronized boolean isComplete() {
+        return chunks.cardinality() == getChunkCount();
+    }
+
+    /**
+     * @return byte ranges {from, to} (to is exclusive) of chunks which are missing in the requested range,
+     * adjacent missing chunks are merged into one range
+     */
+    synchronized List<long[]> getMissingRanges(long offset, long size) {
+        List<long[]> ranges = new ArrayList<>();
+        if (size <= 0 || offset >= length) {
+            return ranges;
+        }
+        int firstChunk = (int) (offset / chunkSize);
+        int lastChunk = (int) ((Math.min(offset + size, length) - 1) / chunkSize);
+        long[] range = null;
+        for (int chunk = firstChunk; chunk <= lastChunk; chunk++) {
+            if (chunks.get(chunk)) {
+                range = null;
+                continue;
+            }
+            long chunkEnd = Math.min((long) (chunk + 1) * chunkSize, length);
+            if (range == null) {
+                range = new long[]{(long) chunk * chunkSize, chunkEnd};
+                ranges.add(range);
+            } else {
+                range[1] = chunkEnd;
+            }
+        }
+        return ranges;
+    }
+
+    synchronized void write(long position, byte[] buffer, int count) throws IOException {
+        ensureOpen();
+        data.seek(position);
+        data.write(buffer, 0, count);
+    }
+
+    /** Mark chunks which are fully inside of the written range as downloaded */
+    synchronized void markDownloaded(long from, long to) throws IOException {
+        ensureOpen();
+        int firstChunk = (int) ((from + chunkSize - 1) / chunkSize);
+        for (int chunk = firstChunk; chunk < getChunkCount(); chunk++) {
+            long chunkEnd = Math.min((long) (chunk + 1) * chunkSize, length);
+            if (chunkEnd > to) {
+                break;
+            }
+            chunks.set(chunk);
+        }
+        writeIndex();
+    }
+
+    /** Read downloaded data, caller has to make sure the range was downloaded */
+    synchronized int read(long position, byte[] buffer, int size) throws IOException {
+        ensureOpen();
+        int count = (int) Math.min(size, length - position);
+        if (count <= 0) {
+            return 0;
+        }
+        data.seek(position);
+        data.readFully(buffer, 0, count);
+        return count;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Cache of " + key + " is closed");
+        }
+    }
+
+    /** Close the cache, it can be called more times */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            data.close();
+        } finally {
+            if (lock != null) {
+                lockFile.close();
+            } else {
+                dataFile.delete();
+                indexFile.delete();
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -28,8 +28,15 @@ public class FileSource implements DocumentSource {
 
     private File file;
 
+    /** State of the file when the source was created, a changed file is a different document */
+    private long lastModified;
+
+    private long length;
+
     public FileSource(File file) {
         this.file = file;
+        this.lastModified = file.lastModified();
+        this.length = file.length();
     }
 
     @Override
@@ -37,4 +44,21 @@ public class FileSource implements DocumentSource {
         ParcelFileDescriptor pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
         return core.newDocument(pfd, password);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileSource)) {
+            return false;
+        }
+        FileSource that = (FileSource) o;
+        return lastModified == that.lastModified && length == that.length && file.equals(that.file);
+    }
+
+    @Override
+    public int hashCode() {
+        return file.hashCode();
+    }
 }
@@ -16,11 +16,14 @@
 package com.github.barteksc.pdfviewer.source;
 
 import android.content.Context;
+import android.os.ParcelFileDescriptor;
 
+import com.github.barteksc.pdfviewer.util.FileUtils;
 import com.github.barteksc.pdfviewer.util.Util;
 import com.shockwave.pdfium.PdfDocument;
 import com.shockwave.pdfium.PdfiumCore;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -28,12 +31,37 @@ public class InputStreamSource implements DocumentSource {
 
     private InputStream inputStream;
 
+    /** True if the stream should be written to a temp file instead of a byte array */
+    private boolean spoolToFile;
+
     public InputStreamSource(InputStream inputStream) {
+        this(inputStream, false);
+    }
+
+    public InputStreamSource(InputStream inputStream, boolean spoolToFile) {
         this.inputStream = inputStream;
+        this.spoolToFile = spoolToFile;
     }
 
     @Override
     public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
-        return core.newDocument(Util.toByteArray(inputStream), password);
+        if (!spoolToFile) {
+            return core.newDocument(Util.toByteArray(inputStream), password);
+        }
+
+        File file = FileUtils.spoolToTempFile(inputStream, context.getCacheDir());
+        try {
+            ParcelFileDescriptor pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+            try {
+                return core.newDocument(pfd, password);
+            } catch (IOException | RuntimeException e) {
+                // pdfium throws RuntimeExceptions for a wrong password or a corrupted file
+                pfd.close();
+                throw e;
+            }
+        } finally {
+            // Document keeps the file descriptor, its space is released when the document is closed
+            file.delete();
+        }
     }
 }
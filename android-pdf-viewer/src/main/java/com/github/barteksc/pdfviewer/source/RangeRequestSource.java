@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2016 Bartosz Schiller.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.source;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Source of a document on a HTTP server which supports range requests. Downloaded ranges are kept
+ * in a {@link ChunkCache} in the cache directory and reused by next opens.
+ * <p>
+ * Since {@link Build.VERSION_CODES#O} the document is opened through a proxy file descriptor,
+ * so chunks read by pdfium are downloaded on demand while the rest is prefetched in the background.
+ * Together with {@code Configurator.fastStart(true)} the first page is shown after the trailer,
+ * the page tree and the first page's objects arrived. pdfium reads while holding the process wide
+ * pdfium lock, so reads of missing chunks fail fast instead of stalling every view on a slow network.
+ * On older versions all missing chunks are downloaded before the document is opened.
+ */
+public class RangeRequestSource implements DocumentSource {
+
+    private static final String TAG = RangeRequestSource.class.getSimpleName();
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final int TIMEOUT = 15000;
+
+    /** Timeout of downloads requested by pdfium reads, which block all pdfium calls of the process */
+    private static final int READ_TIMEOUT = 3000;
+
+    /** Number of chunks downloaded by one prefetch request */
+    private static final int PREFETCH_CHUNKS = 16;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final URL url;
+
+    private final int chunkSize;
+
+    public RangeRequestSource(URL url) {
+        this(url, DEFAULT_CHUNK_SIZE);
+    }
+
+    /** @param chunkSize size of the smallest downloaded range in bytes */
+    public RangeRequestSource(URL url, int chunkSize) {
+        this.url = url;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        ChunkCache cache = openCache(new File(context.getCacheDir(), "pdfview-ranges"));
+
+        ParcelFileDescriptor pfd = null;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && !cache.isComplete()) {
+                // Cache is closed by the proxy when the document is closed
+                pfd = openProxy(context, cache);
+            } else {
+                download(cache, 0, cache.getLength());
+                // Opened before the cache is closed, a private cache is deleted on close
+                pfd = ParcelFileDescriptor.open(cache.getDataFile(), ParcelFileDescriptor.MODE_READ_ONLY);
+                cache.close();
+            }
+            return core.newDocument(pfd, password);
+        } catch (IOException | RuntimeException e) {
+            if (pfd != null) {
+                pfd.close();
+            }
+            cache.close();
+            throw e;
+        }
+    }
+
+    /** Open the cache of the document with the length and validator sent by the server */
+    ChunkCache openCache(File cacheDir) throws IOException {
+        HttpURLConnection connection = openConnection();
+        try {
+            connection.setRequestMethod("HEAD");
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response " + code + " for " + url);
+            }
+            long length = Long.parseLong(connection.getHeaderField("Content-Length"));
+            String validator = connection.getHeaderField("ETag");
+            if (validator == null) {
+                validator = connection.getHeaderField("Last-Modified");
+            }
+            return ChunkCache.open(cacheDir, url.toString(), length, chunkSize, validator != null ? validator : "");
+        } catch (NumberFormatException e) {
+            throw new IOException("Missing length of " + url);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection() throws IOException {
+        return openConnection(TIMEOUT);
+    }
+
+    private HttpURLConnection openConnection(int timeout) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        return connection;
+    }
+
+    /** Download chunks of the range which are not cached yet */
+    void download(ChunkCache cache, long offset, long size) throws IOException {
+        download(cache, offset, size, TIMEOUT);
+    }
+
+    private void download(ChunkCache cache, long offset, long size, int timeout) throws IOException {
+        for (long[] range : cache.getMissingRanges(offset, size)) {
+            downloadRange(cache, range[0], range[1], timeout);
+        }
+    }
+
+    private void downloadRange(ChunkCache cache, long from, long to, int timeout) throws IOException {
+        HttpURLConnection connection = openConnection(timeout);
+        try {
+            connection.setRequestProperty("Range", "bytes=" + from + "-" + (to - 1));
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_OK) {
+                // Server ignored the range, the whole file is sent
+                from = 0;
+                to = cache.getLength();
+            } else if (code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Unexpected response " + code + " for " + url);
+            }
+
+            InputStream inputStream = connection.getInputStream();
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long position = from;
+                int read;
+                while (position < to && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, to - position))) != -1) {
+                    cache.write(position, buffer, read);
+                    position += read;
+                }
+                if (position < to) {
+                    throw new IOException("Unexpected end of " + url + " at " + position);
+                }
+            } finally {
+                inputStream.close();
+            }
+            cache.markDownloaded(from, to);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.O)
+    private ParcelFileDescriptor openProxy(Context context, ChunkCache cache) throws IOException {
+        // Reads of the descriptor block until the callback returns, so it can't run on the reading thread
+        HandlerThread thread = new HandlerThread("PDF range reader");
+        thread.start();
+        Prefetcher prefetcher = new Prefetcher(cache);
+        StorageManager storageManager = (StorageManager) context.getSystemService(Context.STORAGE_SERVICE);
+        try {
+            ParcelFileDescriptor pfd = storageManager.openProxyFileDescriptor(ParcelFileDescriptor.MODE_READ_ONLY,
+                    new ProxyCallback(cache, thread, prefetcher), new Handler(thread.getLooper()));
+            prefetcher.start();
+            return pfd;
+        } catch (IOException e) {
+            thread.quit();
+            throw e;
+        }
+    }
+
+    /** Downloads missing chunks from the start of the document until it is complete or closed */
+    private class Prefetcher extends Thread {
+
+        private final ChunkCache cache;
+
+        private volatile boolean stopped;
+
+        Prefetcher(ChunkCache cache) {
+            super("PDF range prefetcher");
+            this.cache = cache;
+        }
+
+        @Override
+        public void run() {
+            long batchSize = (long) chunkSize * PREFETCH_CHUNKS;
+            try {
+                for (long offset = 0; offset < cache.getLength() && !stopped; offset += batchSize) {
+                    download(cache, offset, batchSize, TIMEOUT);
+                }
+            } catch (IOException e) {
+                if (!stopped) {
+                    Log.w(TAG, "Cannot prefetch " + url + ", missing chunks are downloaded when read", e);
+                }
+            }
+        }
+
+        void quit() {
+            stopped = true;
+            interrupt();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.O)
+    private class ProxyCallback extends ProxyFileDescriptorCallback {
+
+        private final ChunkCache cache;
+
+        private final HandlerThread thread;
+
+        private final Prefetcher prefetcher;
+
+        ProxyCallback(ChunkCache cache, HandlerThread thread, Prefetcher prefetcher) {
+            this.cache = cache;
+            this.thread = thread;
+            this.prefetcher = prefetcher;
+        }
+
+        @Override
+        public long onGetSize() {
+            return cache.getLength();
+        }
+
+        @Override
+        public int onRead(long offset, int size, byte[] data) throws ErrnoException {
+            try {
+                download(cache, offset, size, READ_TIMEOUT);
+                return cache.read(offset, data, size);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot read " + size + " bytes at " + offset + " of " + url, e);
+                throw new ErrnoException("onRead", OsConstants.EIO);
+            }
+        }
+
+        @Override
+        public void onRelease() {
+            prefetcher.quit();
+            try {
+                cache.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot close cache of " + url, e);
+            }
+            thread.quitSafely();
+        }
+    }
+}
@@ -40,6 +40,15 @@ public class Constants {
         public static int THUMBNAILS_CACHE_SIZE = 8;
     }
 
+    public static class Loading {
+
+        /**
+         * Number of threads shared by all PDFViews to open documents (default 2).
+         * Read when the first document is opened, later changes have no effect
+         */
+        public static int THREAD_POOL_SIZE = 2;
+    }
+
     public static class Pinch {
 
         public static float MAXIMUM_ZOOM = 10;
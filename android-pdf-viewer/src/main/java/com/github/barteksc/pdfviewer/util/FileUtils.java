@@ -16,42 +16,202 @@
 package com.github.barteksc.pdfviewer.util;
 
 import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 
 public class FileUtils {
 
+    private static final String ASSET_FILE_SUFFIX = "-pdfview.pdf";
+
+    /** Size of the direct buffer used to write streams to files */
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+
+    /** Bytes transferred between two progress reports when copying between files */
+    private static final long TRANSFER_STEP = 8 * 1024 * 1024;
+
+    /** Progress of a copy, called on the copying thread */
+    public interface ProgressListener {
+        /**
+         * @param copied bytes copied so far
+         * @param total  bytes to copy, -1 if unknown
+         */
+        void onProgress(long copied, long total);
+    }
+
     private FileUtils() {
         // Prevents instantiation
     }
 
+    /**
+     * Extract the asset to the cache directory. The extracted file is reused as long as
+     * its size matches the asset and the app's version code did not change.
+     */
     public static File fileFromAsset(Context context, String assetName) throws IOException {
-        File outFile = new File(context.getCacheDir(), assetName + "-pdfview.pdf");
+        long versionCode = getVersionCode(context);
+        File outFile = new File(context.getCacheDir(), assetName + "-" + versionCode + ASSET_FILE_SUFFIX);
+        File dir = outFile.getParentFile();
         if (assetName.contains("/")) {
-            outFile.getParentFile().mkdirs();
+            dir.mkdirs();
         }
-        copy(context.getAssets().open(assetName), outFile);
+
+        AssetFileDescriptor afd = null;
+        try {
+            // Fails for compressed assets, they have to be read through a stream
+            afd = context.getAssets().openFd(assetName);
+        } catch (FileNotFoundException e) {
+            afd = null;
+        }
+
+        try {
+            long assetLength = afd != null ? afd.getLength() : getAssetStreamLength(context, assetName);
+            if (outFile.exists() && outFile.length() == assetLength) {
+                // Extracted by this version already, a copy left by an older version may still be there
+                deleteUnversionedFile(dir, new File(assetName).getName());
+                return outFile;
+            }
+
+            File tempFile = File.createTempFile(outFile.getName(), ".tmp", dir);
+            try {
+                if (afd != null) {
+                    copyAsset(afd, tempFile);
+                } else {
+                    copy(context.getAssets().open(assetName), tempFile);
+                }
+                if (!tempFile.renameTo(outFile)) {
+                    throw new IOException("Cannot rename " + tempFile + " to " + outFile);
+                }
+            } finally {
+                tempFile.delete();
+            }
+        } finally {
+            if (afd != null) {
+                afd.close();
+            }
+        }
+
+        deleteOtherVersions(dir, new File(assetName).getName(), outFile);
         return outFile;
     }
 
+    private static long getVersionCode(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                return info.getLongVersionCode();
+            }
+            return info.versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /** Asset streams report their whole uncompressed length as available */
+    private static long getAssetStreamLength(Context context, String assetName) throws IOException {
+        InputStream inputStream = context.getAssets().open(assetName);
+        try {
+            return inputStream.available();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /** Uncompressed asset is a region of the APK file, which can be transferred without copying to Java heap */
+    private static void copyAsset(AssetFileDescriptor afd, File output) throws IOException {
+        FileInputStream inputStream = new FileInputStream(afd.getFileDescriptor());
+        FileOutputStream outputStream = new FileOutputStream(output);
+        try {
+            transfer(inputStream.getChannel(), afd.getStartOffset(), afd.getLength(), outputStream.getChannel(), null);
+        } finally {
+            // Closing this stream does not close the asset file descriptor
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Write the stream to a new temp file in the directory, without holding the content in Java heap.
+     * Input stream is closed
+     */
+    public static File spoolToTempFile(InputStream inputStream, File dir) throws IOException {
+        File file = File.createTempFile("pdfview-", ".spool", dir);
+        try {
+            copy(inputStream, file);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    /** Remove files extracted from the same asset by previous versions of the app */
+    private static void deleteOtherVersions(File dir, String assetFileName, File current) {
+        deleteUnversionedFile(dir, assetFileName);
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String prefix = assetFileName + "-";
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.equals(current) && name.length() > prefix.length() + ASSET_FILE_SUFFIX.length()
+                    && name.startsWith(prefix) && name.endsWith(ASSET_FILE_SUFFIX)
+                    && name.substring(prefix.length(), name.length() - ASSET_FILE_SUFFIX.length()).matches("-?\\d+")) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Remove the file extracted by versions of the library which didn't put the version code in the name */
+    private static void deleteUnversionedFile(File dir, String assetFileName) {
+        File file = new File(dir, assetFileName + ASSET_FILE_SUFFIX);
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
     public static void copy(InputStream inputStream, File output) throws IOException {
-        OutputStream outputStream = null;
+        copy(inputStream, output, null);
+    }
+
+    /**
+     * Copy the stream to the file, input stream is closed. A stream of a regular file is transferred
+     * by the kernel without copying through Java, other streams are copied with a direct buffer.
+     *
+     * @param listener notified about the progress, may be null
+     * @return number of copied bytes
+     */
+    public static long copy(InputStream inputStream, File output, ProgressListener listener) throws IOException {
+        FileOutputStream outputStream = null;
         try {
             outputStream = new FileOutputStream(output);
-            int read = 0;
-            byte[] bytes = new byte[1024];
-            while ((read = inputStream.read(bytes)) != -1) {
-                outputStream.write(bytes, 0, read);
+            FileChannel out = outputStream.getChannel();
+            if (isFileStream(inputStream)) {
+                FileChannel in = ((FileInputStream) inputStream).getChannel();
+                long size = in.size();
+                // Pipes and sockets report no size and can't be transferred from a position
+                if (size > 0) {
+                    long position = in.position();
+                    return transfer(in, position, size - position, out, listener);
+                }
+                return copyWithDirectBuffer(in, out, listener);
             }
+            return copyWithDirectBuffer(Channels.newChannel(inputStream), out, listener);
         } finally {
             try {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
+                inputStream.close();
             } finally {
                 if (outputStream != null) {
                     outputStream.close();
@@ -59,4 +219,55 @@ public class FileUtils {
             }
         }
     }
+
+    /**
+     * Subclasses of file streams can limit what is read, e.g. a stream of an {@link AssetFileDescriptor}
+     * reads only a region of the file, so only streams reading the whole descriptor use its channel
+     */
+    private static boolean isFileStream(InputStream inputStream) {
+        Class<?> streamClass = inputStream.getClass();
+        return streamClass == FileInputStream.class || streamClass == ParcelFileDescriptor.AutoCloseInputStream.class;
+    }
+
+    private static long transfer(FileChannel in, long position, long count, FileChannel out,
+                                 ProgressListener listener) throws IOException {
+        long copied = 0;
+        while (copied < count) {
+            long transferred = in.transferTo(position + copied, Math.min(TRANSFER_STEP, count - copied), out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file after " + copied + " of " + count + " bytes");
+            }
+            copied += transferred;
+            if (listener != null) {
+                listener.onProgress(copied, count);
+            }
+        }
+        return copied;
+    }
+
+    private static long copyWithDirectBuffer(ReadableByteChannel in, FileChannel out,
+                                             ProgressListener listener) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        long copied = 0;
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            // Channels of streams read in small steps, fill the whole buffer before writing
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer) == -1) {
+                    endOfStream = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            copied += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+            if (listener != null) {
+                listener.onProgress(copied, -1);
+            }
+        }
+        return copied;
+    }
 }
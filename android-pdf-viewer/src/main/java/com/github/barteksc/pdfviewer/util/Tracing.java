@@ -0,0 +1,123 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.util;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@link Trace} sections of the loading and rendering pipeline, shown by systrace and Perfetto.
+ * Tracing is disabled by default and enabled at runtime with {@link #setEnabled(boolean)},
+ * when disabled every call only reads one field.
+ * <p>
+ * Sections are available since API 18. Async sections, which track each part from being queued to
+ * being displayed, are public since API 29 and called through the hidden methods on API 18 - 28.
+ */
+public class Tracing {
+
+    private static final String TAG = Tracing.class.getSimpleName();
+
+    /** API level of {@code Trace.beginAsyncSection()} */
+    private static final int ASYNC_SECTION_API_LEVEL = 29;
+
+    /** Value of the hidden {@code Trace.TRACE_TAG_APP} */
+    private static final long TRACE_TAG_APP = 1L << 12;
+
+    private static volatile boolean enabled = false;
+
+    private static Method beginAsyncMethod;
+
+    private static Method endAsyncMethod;
+
+    private static boolean asyncMethodsResolved = false;
+
+    /** Enable tracing, has no effect below API 18 */
+    public static void setEnabled(boolean enabled) {
+        Tracing.enabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Begin a section on the current thread, has to be ended with {@link #endSection()} on the same thread */
+    public static void beginSection(String name) {
+        if (enabled) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * End the section began on the current thread. Disabling tracing between begin and end leaves
+     * the section open until the thread's next section ends, so toggle tracing between traces only.
+     */
+    public static void endSection() {
+        if (enabled) {
+            Trace.endSection();
+        }
+    }
+
+    /** Begin an async section, which can be ended on any thread with the same name and cookie */
+    public static void beginAsyncSection(String name, int cookie) {
+        if (enabled) {
+            invokeAsync(true, name, cookie);
+        }
+    }
+
+    public static void endAsyncSection(String name, int cookie) {
+        if (enabled) {
+            invokeAsync(false, name, cookie);
+        }
+    }
+
+    private static void invokeAsync(boolean begin, String name, int cookie) {
+        resolveAsyncMethods();
+        Method method = begin ? beginAsyncMethod : endAsyncMethod;
+        if (method == null) {
+            return;
+        }
+        try {
+            if (Build.VERSION.SDK_INT >= ASYNC_SECTION_API_LEVEL) {
+                method.invoke(null, name, cookie);
+            } else {
+                method.invoke(null, TRACE_TAG_APP, name, cookie);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Cannot trace async section", e);
+        }
+    }
+
+    private static synchronized void resolveAsyncMethods() {
+        if (asyncMethodsResolved) {
+            return;
+        }
+        asyncMethodsResolved = true;
+        try {
+            if (Build.VERSION.SDK_INT >= ASYNC_SECTION_API_LEVEL) {
+                beginAsyncMethod = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                endAsyncMethod = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+            } else {
+                beginAsyncMethod = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+                endAsyncMethod = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Async sections are not available", e);
+        }
+    }
+}
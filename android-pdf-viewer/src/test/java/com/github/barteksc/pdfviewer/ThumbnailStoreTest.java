@@ -0,0 +1,203 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThumbnailStoreTest {
+
+    private static final String FINGERPRINT = "doc";
+
+    private static final int HEADER_SIZE = 16;
+
+    /** Fingerprint length, fingerprint, page, data length, 100 bytes of data and checksum */
+    private static final int RECORD_SIZE = 4 + 3 + 4 + 4 + 100 + 4;
+
+    /** Compaction keeps 300 bytes, the header and two records */
+    private static final long MAX_SIZE = 400;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private ThumbnailStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "thumbnails/store");
+        store = ThumbnailStore.open(file, 200, 300, MAX_SIZE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void storedThumbnailIsRead() throws IOException {
+        assertTrue(store.put(FINGERPRINT, 0, thumbnail(0)));
+
+        assertTrue(store.contains(FINGERPRINT, 0));
+        assertArrayEquals(thumbnail(0), store.get(FINGERPRINT, 0));
+        assertNull(store.get(FINGERPRINT, 1));
+        assertNull(store.get("other", 0));
+        assertEquals(HEADER_SIZE + RECORD_SIZE, store.getFileLength());
+    }
+
+    @Test
+    public void thumbnailsAreReadAfterReopen() throws IOException {
+        store.put(FINGERPRINT, 0, thumbnail(0));
+        store.put(FINGERPRINT, 1, thumbnail(1));
+        store.put(FINGERPRINT, 0, thumbnail(2));
+        reopen(200, 300);
+
+        assertEquals(2, store.size());
+        assertArrayEquals(thumbnail(2), store.get(FINGERPRINT, 0));
+        assertArrayEquals(thumbnail(1), store.get(FINGERPRINT, 1));
+    }
+
+    @Test
+    public void tornRecordIsCutOff() throws IOException {
+        store.put(FINGERPRINT, 0, thumbnail(0));
+        store.put(FINGERPRINT, 1, thumbnail(1));
+        store.close();
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        try {
+            data.setLength(data.length() - 3);
+        } finally {
+            data.close();
+        }
+
+        store = ThumbnailStore.open(file, 200, 300, MAX_SIZE);
+
+        assertArrayEquals(thumbnail(0), store.get(FINGERPRINT, 0));
+        assertFalse(store.contains(FINGERPRINT, 1));
+        assertEquals(HEADER_SIZE + RECORD_SIZE, store.getFileLength());
+
+        // Records appended after the cut are kept
+        store.put(FINGERPRINT, 2, thumbnail(2));
+        reopen(200, 300);
+        assertArrayEquals(thumbnail(2), store.get(FINGERPRINT, 2));
+    }
+
+    @Test
+    public void corruptedRecordIsCutOff() throws IOException {
+        store.put(FINGERPRINT, 0, thumbnail(0));
+        store.put(FINGERPRINT, 1, thumbnail(1));
+        store.close();
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        try {
+            // Data of the second record
+            data.seek(HEADER_SIZE + RECORD_SIZE + 20);
+            data.write(0x55);
+        } finally {
+            data.close();
+        }
+
+        store = ThumbnailStore.open(file, 200, 300, MAX_SIZE);
+
+        assertEquals(1, store.size());
+        assertArrayEquals(thumbnail(0), store.get(FINGERPRINT, 0));
+    }
+
+    @Test
+    public void differentThumbnailSizeClearsStore() throws IOException {
+        store.put(FINGERPRINT, 0, thumbnail(0));
+        reopen(100, 150);
+
+        assertEquals(0, store.size());
+        assertEquals(HEADER_SIZE, store.getFileLength());
+    }
+
+    @Test
+    public void oversizeThumbnailIsNotStored() throws IOException {
+        store.put(FINGERPRINT, 0, thumbnail(0));
+
+        assertFalse(store.put(FINGERPRINT, 1, new byte[300]));
+
+        assertFalse(store.contains(FINGERPRINT, 1));
+        assertTrue(store.contains(FINGERPRINT, 0));
+        assertEquals(HEADER_SIZE + RECORD_SIZE, store.getFileLength());
+    }
+
+    @Test
+    public void compactionKeepsRecentlyUsedThumbnails() throws IOException {
+        store.put(FINGERPRINT, 0, thumbnail(0));
+        store.put(FINGERPRINT, 1, thumbnail(1));
+        store.put(FINGERPRINT, 2, thumbnail(2));
+        assertEquals(HEADER_SIZE + 3 * RECORD_SIZE, store.getFileLength());
+        store.get(FINGERPRINT, 0);
+
+        // 4 records exceed the maximum size, the two most recently used ones are kept
+        store.put(FINGERPRINT, 3, thumbnail(3));
+
+        assertEquals(2, store.size());
+        assertEquals(HEADER_SIZE + 2 * RECORD_SIZE, store.getFileLength());
+        assertArrayEquals(thumbnail(0), store.get(FINGERPRINT, 0));
+        assertArrayEquals(thumbnail(3), store.get(FINGERPRINT, 3));
+        assertFalse(store.contains(FINGERPRINT, 1));
+        assertFalse(store.contains(FINGERPRINT, 2));
+    }
+
+    @Test
+    public void compactionOrderSurvivesReopen() throws IOException {
+        store.put(FINGERPRINT, 0, thumbnail(0));
+        store.put(FINGERPRINT, 1, thumbnail(1));
+        store.put(FINGERPRINT, 2, thumbnail(2));
+        store.get(FINGERPRINT, 0);
+        store.put(FINGERPRINT, 3, thumbnail(3));
+        reopen(200, 300);
+
+        // A record of 46 bytes leaves room for one of the older records, page 3 is the more recent one
+        store.put(FINGERPRINT, 4, new byte[27]);
+        store.put(FINGERPRINT, 5, thumbnail(5));
+
+        assertEquals(3, store.size());
+        assertFalse(store.contains(FINGERPRINT, 0));
+        assertTrue(store.contains(FINGERPRINT, 3));
+        assertTrue(store.contains(FINGERPRINT, 4));
+        assertTrue(store.contains(FINGERPRINT, 5));
+    }
+
+    private void reopen(int thumbnailWidth, int thumbnailHeight) throws IOException {
+        store.close();
+        store = ThumbnailStore.open(file, thumbnailWidth, thumbnailHeight, MAX_SIZE);
+    }
+
+    /** 100 bytes which differ for each seed */
+    private static byte[] thumbnail(int seed) {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return bytes;
+    }
+}
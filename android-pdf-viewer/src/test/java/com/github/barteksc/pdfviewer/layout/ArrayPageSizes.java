@@ -0,0 +1,41 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+/** Page sizes given as width and height pairs */
+class ArrayPageSizes implements PageSizes {
+
+    private final int[] sizes;
+
+    ArrayPageSizes(int... widthsAndHeights) {
+        this.sizes = widthsAndHeights;
+    }
+
+    @Override
+    public int getPageCount() {
+        return sizes.length / 2;
+    }
+
+    @Override
+    public int getPageWidth(int pageIndex) {
+        return sizes[pageIndex * 2];
+    }
+
+    @Override
+    public int getPageHeight(int pageIndex) {
+        return sizes[pageIndex * 2 + 1];
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PageFitCalculatorTest {
+
+    private static final float DELTA = 0.001f;
+
+    private final float[] fitted = new float[2];
+
+    @Test
+    public void fitWidthScalesByWidestPage() {
+        // Widest page 600x800 fits the view width, ratio 2
+        PageFitCalculator calculator = new PageFitCalculator(FitPolicy.WIDTH, 600, 800, 600, 800,
+                1200, 1000, false);
+
+        assertEquals(1200, calculator.getOptimalMaxWidthPageWidth(), DELTA);
+        assertEquals(1600, calculator.getOptimalMaxWidthPageHeight(), DELTA);
+        assertEquals(1200, calculator.getOptimalMaxHeightPageWidth(), DELTA);
+        assertEquals(1600, calculator.getOptimalMaxHeightPageHeight(), DELTA);
+        assertFitted(calculator, 300, 400, 600, 800);
+        assertFitted(calculator, 600, 300, 1200, 600);
+    }
+
+    @Test
+    public void fitHeightScalesByHighestPage() {
+        // Highest page 500x1000 fits the view height, ratio 1.5
+        PageFitCalculator calculator = new PageFitCalculator(FitPolicy.HEIGHT, 800, 600, 500, 1000,
+                1000, 1500, false);
+
+        assertEquals(750, calculator.getOptimalMaxHeightPageWidth(), DELTA);
+        assertEquals(1500, calculator.getOptimalMaxHeightPageHeight(), DELTA);
+        assertEquals(1200, calculator.getOptimalMaxWidthPageWidth(), DELTA);
+        assertEquals(900, calculator.getOptimalMaxWidthPageHeight(), DELTA);
+        assertFitted(calculator, 400, 300, 600, 450);
+    }
+
+    @Test
+    public void fitBothKeepsPagesInView() {
+        // Landscape 1000x500 is limited by the width, portrait 500x1000 by the height, ratio 0.8
+        PageFitCalculator calculator = new PageFitCalculator(FitPolicy.BOTH, 1000, 500, 500, 1000,
+                800, 800, false);
+
+        assertEquals(800, calculator.getOptimalMaxWidthPageWidth(), DELTA);
+        assertEquals(400, calculator.getOptimalMaxWidthPageHeight(), DELTA);
+        assertEquals(400, calculator.getOptimalMaxHeightPageWidth(), DELTA);
+        assertEquals(800, calculator.getOptimalMaxHeightPageHeight(), DELTA);
+        assertFitted(calculator, 600, 600, 480, 480);
+    }
+
+    @Test
+    public void fittedSizesAreFloored() {
+        // 700x1000 fits 1000 wide, 1000 / 0.7 = 1428.57
+        PageFitCalculator calculator = new PageFitCalculator(FitPolicy.WIDTH, 700, 1000, 700, 1000,
+                1000, 1000, false);
+
+        assertEquals(1428, calculator.getOptimalMaxWidthPageHeight(), DELTA);
+    }
+
+    @Test
+    public void fitEachPageFitsPagesToView() {
+        PageFitCalculator calculator = new PageFitCalculator(FitPolicy.WIDTH, 500, 250, 200, 400,
+                1000, 1000, true);
+
+        assertFitted(calculator, 200, 400, 1000, 2000);
+        assertFitted(calculator, 500, 250, 1000, 500);
+    }
+
+    @Test
+    public void fitEachPageWithBothFitsLongerSide() {
+        PageFitCalculator calculator = new PageFitCalculator(FitPolicy.BOTH, 500, 250, 200, 400,
+                1000, 1000, true);
+
+        assertFitted(calculator, 200, 400, 500, 1000);
+        assertFitted(calculator, 500, 250, 1000, 500);
+    }
+
+    @Test
+    public void emptyPageHasNoSize() {
+        PageFitCalculator calculator = new PageFitCalculator(FitPolicy.WIDTH, 600, 800, 600, 800,
+                1200, 1000, false);
+
+        assertFitted(calculator, 0, 800, 0, 0);
+        assertFitted(calculator, 600, 0, 0, 0);
+    }
+
+    private void assertFitted(PageFitCalculator calculator, float width, float height,
+                              float expectedWidth, float expectedHeight) {
+        calculator.calculate(width, height, fitted);
+        assertEquals("Width of " + width + "x" + height, expectedWidth, fitted[0], DELTA);
+        assertEquals("Height of " + width + "x" + height, expectedHeight, fitted[1], DELTA);
+    }
+}
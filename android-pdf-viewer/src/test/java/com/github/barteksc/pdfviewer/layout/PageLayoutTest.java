@@ -0,0 +1,167 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PageLayoutTest {
+
+    private static final float DELTA = 0.001f;
+
+    /** Portrait 600x800, narrow 300x600 and landscape 600x400 */
+    private static final PageSizes MIXED_PAGES = new ArrayPageSizes(600, 800, 300, 600, 600, 400);
+
+    @Test
+    public void verticalLayoutWithSpacing() {
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 10, false);
+        layout.calculate(MIXED_PAGES, 1200, 1000);
+
+        // Widest page fits 1200, so all pages are scaled by 2
+        assertPageSize(layout, 0, 1200, 1600);
+        assertPageSize(layout, 1, 600, 1200);
+        assertPageSize(layout, 2, 1200, 800);
+        assertEquals(1200, layout.getMaxPageWidth(), DELTA);
+        assertEquals(1600, layout.getMaxPageHeight(), DELTA);
+
+        assertEquals(1600 + 1200 + 800 + 2 * 10, layout.getDocLen(1), DELTA);
+        assertEquals(3620 * 2, layout.getDocLen(2), DELTA);
+        assertEquals(0, layout.getPageOffset(0, 1), DELTA);
+        assertEquals(1610, layout.getPageOffset(1, 1), DELTA);
+        assertEquals(2820, layout.getPageOffset(2, 1), DELTA);
+        assertEquals(2820 * 2, layout.getPageOffset(2, 2), DELTA);
+        assertEquals(2400, layout.getPageLength(1, 2), DELTA);
+        assertEquals(10, layout.getPageSpacing(1, 1), DELTA);
+        assertEquals(2800, layout.getPreviousPagesLength(2, 1), DELTA);
+
+        // Narrower pages are centered horizontally
+        assertEquals(0, layout.getSecondaryPageOffset(0, 1), DELTA);
+        assertEquals(300, layout.getSecondaryPageOffset(1, 1), DELTA);
+        assertEquals(600, layout.getSecondaryPageOffset(1, 2), DELTA);
+    }
+
+    @Test
+    public void pageAtOffsetChangesInMiddleOfSpacing() {
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 10, false);
+        layout.calculate(MIXED_PAGES, 1200, 1000);
+
+        assertEquals(0, layout.getPageAtOffset(0, 1));
+        assertEquals(0, layout.getPageAtOffset(1605, 1));
+        assertEquals(1, layout.getPageAtOffset(1606, 1));
+        assertEquals(1, layout.getPageAtOffset(2815, 1));
+        assertEquals(2, layout.getPageAtOffset(2816, 1));
+        assertEquals(2, layout.getPageAtOffset(100000, 1));
+        assertEquals(0, layout.getPageAtOffset(-100, 1));
+
+        assertEquals(0, layout.getPageAtOffset(3210, 2));
+        assertEquals(1, layout.getPageAtOffset(3211, 2));
+    }
+
+    @Test
+    public void horizontalLayoutWithSpacing() {
+        // Highest page 400x800 fits 1600, so all pages are scaled by 2
+        PageLayout layout = new PageLayout(FitPolicy.HEIGHT, false, false, 20, false);
+        layout.calculate(new ArrayPageSizes(400, 800, 200, 600, 800, 400), 1000, 1600);
+
+        assertPageSize(layout, 0, 800, 1600);
+        assertPageSize(layout, 1, 400, 1200);
+        assertPageSize(layout, 2, 1600, 800);
+        assertEquals(1600, layout.getMaxWidthPageWidth(), DELTA);
+        assertEquals(800, layout.getMaxWidthPageHeight(), DELTA);
+        assertEquals(800, layout.getMaxPageWidth(), DELTA);
+        assertEquals(1600, layout.getMaxPageHeight(), DELTA);
+
+        assertEquals(800 + 400 + 1600 + 2 * 20, layout.getDocLen(1), DELTA);
+        assertEquals(0, layout.getPageOffset(0, 1), DELTA);
+        assertEquals(820, layout.getPageOffset(1, 1), DELTA);
+        assertEquals(1240, layout.getPageOffset(2, 1), DELTA);
+        assertEquals(400, layout.getPageLength(1, 1), DELTA);
+        assertEquals(1200, layout.getPreviousPagesLength(2, 1), DELTA);
+
+        // Lower pages are centered vertically
+        assertEquals(200, layout.getSecondaryPageOffset(1, 1), DELTA);
+        assertEquals(400, layout.getSecondaryPageOffset(2, 1), DELTA);
+
+        assertEquals(0, layout.getPageAtOffset(810, 1));
+        assertEquals(1, layout.getPageAtOffset(811, 1));
+        assertEquals(2, layout.getPageAtOffset(1231, 1));
+    }
+
+    @Test
+    public void autoSpacingFillsViewAroundShortPages() {
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 10, true);
+        layout.calculate(new ArrayPageSizes(500, 250, 500, 500, 500, 1000), 1000, 1000);
+
+        assertPageSize(layout, 0, 1000, 500);
+        assertPageSize(layout, 1, 1000, 1000);
+        assertPageSize(layout, 2, 1000, 2000);
+
+        // Free space of the view plus spacing, the last page has no spacing after it
+        assertEquals(510, layout.getPageSpacing(0, 1), DELTA);
+        assertEquals(10, layout.getPageSpacing(1, 1), DELTA);
+        assertEquals(0, layout.getPageSpacing(2, 1), DELTA);
+        assertEquals(500 + 510 + 1000 + 10 + 2000, layout.getDocLen(1), DELTA);
+
+        // Pages are centered in their spacing, the first one without the spacing before it
+        assertEquals(250, layout.getPageOffset(0, 1), DELTA);
+        assertEquals(1010, layout.getPageOffset(1, 1), DELTA);
+        assertEquals(2020, layout.getPageOffset(2, 1), DELTA);
+
+        assertEquals(0, layout.getPageAtOffset(1005, 1));
+        assertEquals(1, layout.getPageAtOffset(1006, 1));
+        assertEquals(1, layout.getPageAtOffset(2020, 1));
+        assertEquals(2, layout.getPageAtOffset(2021, 1));
+    }
+
+    @Test
+    public void fitEachPageScalesPagesSeparately() {
+        PageSizes pages = new ArrayPageSizes(500, 250, 250, 500);
+
+        PageLayout scaledLayout = new PageLayout(FitPolicy.WIDTH, false, true, 0, false);
+        scaledLayout.calculate(pages, 1000, 1000);
+        assertPageSize(scaledLayout, 1, 500, 1000);
+        assertEquals(250, scaledLayout.getSecondaryPageOffset(1, 1), DELTA);
+        assertEquals(1500, scaledLayout.getDocLen(1), DELTA);
+
+        PageLayout fittedLayout = new PageLayout(FitPolicy.WIDTH, true, true, 0, false);
+        fittedLayout.calculate(pages, 1000, 1000);
+        assertPageSize(fittedLayout, 0, 1000, 500);
+        assertPageSize(fittedLayout, 1, 1000, 2000);
+        assertEquals(0, fittedLayout.getSecondaryPageOffset(1, 1), DELTA);
+        assertEquals(2500, fittedLayout.getDocLen(1), DELTA);
+        assertEquals(500, fittedLayout.getPageOffset(1, 1), DELTA);
+    }
+
+    @Test
+    public void calculateAgainForNewViewSize() {
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 0, false);
+        layout.calculate(MIXED_PAGES, 1200, 1000);
+        layout.calculate(MIXED_PAGES, 600, 1000);
+
+        assertPageSize(layout, 0, 600, 800);
+        assertPageSize(layout, 1, 300, 600);
+        assertEquals(800 + 600 + 400, layout.getDocLen(1), DELTA);
+        assertEquals(1400, layout.getPageOffset(2, 1), DELTA);
+    }
+
+    private static void assertPageSize(PageLayout layout, int page, float width, float height) {
+        assertEquals("Width of page " + page, width, layout.getPageWidth(page), DELTA);
+        assertEquals("Height of page " + page, height, layout.getPageHeight(page), DELTA);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.layout;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RenderRangeCalculatorTest {
+
+    @Test
+    public void verticalViewAcrossTwoPages() {
+        // Three pages of 1000x1000 at offsets 0, 1000 and 2000, parts of 256 divide them into 4x4
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 0, false);
+        layout.calculate(new ArrayPageSizes(500, 500, 500, 500, 500, 500), 1000, 1000);
+        RenderRangeCalculator calculator = new RenderRangeCalculator(layout, true, 1, 256);
+
+        // View of 1000x1000 scrolled to the middle of the first page
+        List<RenderRange> ranges = calculator.calculate(0, -500, -1000, -1500);
+
+        assertEquals(2, ranges.size());
+        assertRange(ranges.get(0), 0, 4, 4, 2, 0, 4, 4);
+        assertRange(ranges.get(1), 1, 4, 4, 0, 0, 2, 4);
+    }
+
+    @Test
+    public void verticalViewInsideZoomedPage() {
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 0, false);
+        layout.calculate(new ArrayPageSizes(500, 500, 500, 500, 500, 500), 1000, 1000);
+        RenderRangeCalculator calculator = new RenderRangeCalculator(layout, true, 2, 256);
+
+        // Pages are 2000x2000 at zoom 2, the view is inside of the second page
+        List<RenderRange> ranges = calculator.calculate(-500, -2500, -1500, -3500);
+
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 1, 8, 8, 2, 2, 6, 6);
+    }
+
+    @Test
+    public void horizontalViewWithCenteredPage() {
+        // Pages of 800x1600 and 400x800 at offsets 0 and 800, the second one 400 below the top
+        PageLayout layout = new PageLayout(FitPolicy.HEIGHT, false, false, 0, false);
+        layout.calculate(new ArrayPageSizes(400, 800, 200, 400), 1000, 1600);
+        RenderRangeCalculator calculator = new RenderRangeCalculator(layout, false, 1, 400);
+
+        List<RenderRange> ranges = calculator.calculate(-300, 0, -1300, -1600);
+
+        assertEquals(2, ranges.size());
+        assertRange(ranges.get(0), 0, 4, 2, 0, 0, 4, 2);
+        assertRange(ranges.get(1), 1, 2, 1, 0, 0, 3, 1);
+    }
+
+    @Test
+    public void offsetsBeforeDocumentStartAtFirstPage() {
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 0, false);
+        layout.calculate(new ArrayPageSizes(500, 500, 500, 500), 1000, 1000);
+        RenderRangeCalculator calculator = new RenderRangeCalculator(layout, true, 1, 256);
+
+        // Positive offsets are clamped to the start of the document
+        List<RenderRange> ranges = calculator.calculate(100, 200, -1000, -500);
+
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 4, 4, 0, 0, 2, 4);
+    }
+
+    private static void assertRange(RenderRange range, int page, int rows, int cols,
+                                    int firstRow, int firstCol, int lastRow, int lastCol) {
+        String message = range.toString();
+        assertEquals(message, page, range.getPage());
+        assertEquals(message, rows, range.getRows());
+        assertEquals(message, cols, range.getCols());
+        assertEquals(message, firstRow, range.getFirstRow());
+        assertEquals(message, firstCol, range.getFirstCol());
+        assertEquals(message, lastRow, range.getLastRow());
+        assertEquals(message, lastCol, range.getLastCol());
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016 Bartosz Schiller.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkCacheTest {
+
+    private static final String KEY = "http://example.com/document.pdf";
+
+    /** 10 chunks of 10 bytes, the last one has 5 bytes */
+    private static final long LENGTH = 95;
+
+    private static final int CHUNK_SIZE = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    private ChunkCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("ranges");
+        cache = ChunkCache.open(dir, KEY, LENGTH, CHUNK_SIZE, "v1");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+    }
+
+    @Test
+    public void newCacheMissesWholeFile() {
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 95);
+        assertFalse(cache.isComplete());
+    }
+
+    @Test
+    public void missingRangesAreAlignedToChunks() {
+        assertRanges(cache.getMissingRanges(15, 10), 10, 30);
+        assertRanges(cache.getMissingRanges(20, 1), 20, 30);
+        assertRanges(cache.getMissingRanges(85, 100), 80, 95);
+    }
+
+    @Test
+    public void noMissingRangesOutsideOfFile() {
+        assertTrue(cache.getMissingRanges(95, 10).isEmpty());
+        assertTrue(cache.getMissingRanges(10, 0).isEmpty());
+    }
+
+    @Test
+    public void adjacentMissingChunksAreMerged() throws IOException {
+        cache.markDownloaded(20, 30);
+        cache.markDownloaded(50, 60);
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 20, 30, 50, 60, 95);
+        assertRanges(cache.getMissingRanges(25, 30), 30, 50);
+    }
+
+    @Test
+    public void partialChunksAreNotMarked() throws IOException {
+        // Chunk 0 starts before the range and chunk 2 ends after it
+        cache.markDownloaded(5, 25);
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 10, 20, 95);
+    }
+
+    @Test
+    public void chunkEndingAtRangeEndIsMarked() throws IOException {
+        cache.markDownloaded(10, 40);
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 10, 40, 95);
+    }
+
+    @Test
+    public void lastShortChunkIsMarked() throws IOException {
+        cache.markDownloaded(90, 95);
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 90);
+        cache.markDownloaded(0, 90);
+        assertTrue(cache.isComplete());
+        assertTrue(cache.getMissingRanges(0, LENGTH).isEmpty());
+    }
+
+    @Test
+    public void indexIsReadByNextOpen() throws IOException {
+        byte[] data = bytes(30);
+        cache.write(10, data, data.length);
+        cache.markDownloaded(10, 40);
+        cache.close();
+
+        cache = ChunkCache.open(dir, KEY, LENGTH, CHUNK_SIZE, "v1");
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 10, 40, 95);
+        byte[] read = new byte[30];
+        assertEquals(30, cache.read(10, read, read.length));
+        assertArrayEquals(data, read);
+    }
+
+    @Test
+    public void readStopsAtEndOfFile() throws IOException {
+        byte[] buffer = new byte[20];
+        assertEquals(5, cache.read(90, buffer, buffer.length));
+        assertEquals(0, cache.read(95, buffer, buffer.length));
+    }
+
+    @Test
+    public void changedValidatorResetsCache() throws IOException {
+        cache.markDownloaded(0, 50);
+        cache.close();
+
+        cache = ChunkCache.open(dir, KEY, LENGTH, CHUNK_SIZE, "v2");
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 95);
+    }
+
+    @Test
+    public void changedChunkSizeResetsCache() throws IOException {
+        cache.markDownloaded(0, 50);
+        cache.close();
+
+        cache = ChunkCache.open(dir, KEY, LENGTH, 20, "v1");
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 95);
+    }
+
+    @Test
+    public void changedLengthUsesNewCache() throws IOException {
+        cache.markDownloaded(0, 50);
+        cache.close();
+
+        cache = ChunkCache.open(dir, KEY, 120, CHUNK_SIZE, "v1");
+
+        assertRanges(cache.getMissingRanges(0, 120), 0, 120);
+    }
+
+    @Test
+    public void tornIndexResetsCache() throws IOException {
+        cache.markDownloaded(0, 50);
+        cache.close();
+        File indexFile = findFile(".index");
+        RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+        try {
+            index.setLength(index.length() - 2);
+        } finally {
+            index.close();
+        }
+
+        cache = ChunkCache.open(dir, KEY, LENGTH, CHUNK_SIZE, "v1");
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 95);
+        assertFalse(indexFile.exists());
+    }
+
+    @Test
+    public void truncatedDataFileResetsCache() throws IOException {
+        cache.markDownloaded(0, 50);
+        cache.close();
+        RandomAccessFile data = new RandomAccessFile(findFile(".data"), "rw");
+        try {
+            data.setLength(40);
+        } finally {
+            data.close();
+        }
+
+        cache = ChunkCache.open(dir, KEY, LENGTH, CHUNK_SIZE, "v1");
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 0, 95);
+    }
+
+    @Test
+    public void secondOpenOfSameFileGetsPrivateCache() throws IOException {
+        cache.markDownloaded(0, 50);
+
+        ChunkCache other = ChunkCache.open(dir, KEY, LENGTH, CHUNK_SIZE, "v1");
+        try {
+            assertNotEquals(cache.getDataFile(), other.getDataFile());
+            assertRanges(other.getMissingRanges(0, LENGTH), 0, 95);
+            other.markDownloaded(50, 95);
+        } finally {
+            other.close();
+        }
+
+        assertFalse(other.getDataFile().exists());
+        assertRanges(cache.getMissingRanges(0, LENGTH), 50, 95);
+    }
+
+    @Test
+    public void sharedCacheIsUnlockedByClose() throws IOException {
+        cache.markDownloaded(0, 50);
+        cache.close();
+
+        cache = ChunkCache.open(dir, KEY, LENGTH, CHUNK_SIZE, "v1");
+
+        assertRanges(cache.getMissingRanges(0, LENGTH), 50, 95);
+    }
+
+    @Test
+    public void closeCanBeRepeated() throws IOException {
+        cache.close();
+        cache.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void closedCacheIsNotWritten() throws IOException {
+        cache.close();
+        cache.markDownloaded(0, 50);
+    }
+
+    private File findFile(String suffix) {
+        File[] files = dir.listFiles();
+        for (File file : files) {
+            if (file.getName().endsWith(suffix)) {
+                return file;
+            }
+        }
+        throw new AssertionError("No " + suffix + " file in " + dir);
+    }
+
+    static byte[] bytes(int count) {
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) (i * 7 + 3);
+        }
+        return bytes;
+    }
+
+    /** @param bounds pairs of from and to (exclusive) of the expected ranges */
+    private static void assertRanges(List<long[]> ranges, long... bounds) {
+        assertEquals("Number of ranges", bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertArrayEquals(new long[]{bounds[i * 2], bounds[i * 2 + 1]}, ranges.get(i));
+        }
+    }
+}
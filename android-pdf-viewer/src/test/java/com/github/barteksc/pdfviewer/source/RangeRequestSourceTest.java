@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2016 Bartosz Schiller.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.source;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RangeRequestSourceTest {
+
+    private static final int LENGTH = 95;
+
+    private static final int CHUNK_SIZE = 10;
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = ChunkCacheTest.bytes(LENGTH);
+
+    /** Range headers of the GET requests, null for requests without a range */
+    private final List<String> requestedRanges = Collections.synchronizedList(new ArrayList<String>());
+
+    private volatile boolean supportsRanges = true;
+
+    /** Number of bytes cut from the end of every response body */
+    private volatile int missingBytes = 0;
+
+    private volatile String etag = "\"v1\"";
+
+    private HttpServer server;
+
+    private RangeRequestSource source;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/document.pdf", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        server.start();
+        URL url = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/document.pdf");
+        source = new RangeRequestSource(url, CHUNK_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(LENGTH));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        requestedRanges.add(range);
+        int from = 0;
+        int to = LENGTH;
+        int code = 200;
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+        if (supportsRanges && matcher != null && matcher.matches()) {
+            from = Integer.parseInt(matcher.group(1));
+            to = Integer.parseInt(matcher.group(2)) + 1;
+            code = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + (to - 1) + "/" + LENGTH);
+        }
+        int count = to - from - missingBytes;
+        exchange.sendResponseHeaders(code, count);
+        OutputStream body = exchange.getResponseBody();
+        body.write(content, from, count);
+        body.close();
+    }
+
+    @Test
+    public void downloadsMissingRangesOnly() throws IOException {
+        ChunkCache cache = source.openCache(folder.getRoot());
+        try {
+            source.download(cache, 15, 10);
+            source.download(cache, 50, 5);
+            source.download(cache, 0, 60);
+
+            assertEquals(Arrays.asList("bytes=10-29", "bytes=50-59", "bytes=0-9", "bytes=30-49"), requestedRanges);
+            assertRanges(cache.getMissingRanges(0, LENGTH), 60, 95);
+            assertContent(cache, 0, 60);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void downloadsLastShortChunk() throws IOException {
+        ChunkCache cache = source.openCache(folder.getRoot());
+        try {
+            source.download(cache, 92, 10);
+
+            assertEquals(Collections.singletonList("bytes=90-94"), requestedRanges);
+            assertContent(cache, 90, 95);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void cachedRangesAreReusedByNextOpen() throws IOException {
+        ChunkCache cache = source.openCache(folder.getRoot());
+        source.download(cache, 0, 40);
+        cache.close();
+        requestedRanges.clear();
+
+        cache = source.openCache(folder.getRoot());
+        try {
+            source.download(cache, 0, LENGTH);
+
+            assertEquals(Collections.singletonList("bytes=40-94"), requestedRanges);
+            assertTrue(cache.isComplete());
+            assertContent(cache, 0, LENGTH);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void changedEtagDownloadsAgain() throws IOException {
+        ChunkCache cache = source.openCache(folder.getRoot());
+        source.download(cache, 0, 40);
+        cache.close();
+        requestedRanges.clear();
+        etag = "\"v2\"";
+
+        cache = source.openCache(folder.getRoot());
+        try {
+            source.download(cache, 0, 40);
+
+            assertEquals(Collections.singletonList("bytes=0-39"), requestedRanges);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void wholeFileIsCachedIfServerIgnoresRange() throws IOException {
+        supportsRanges = false;
+        ChunkCache cache = source.openCache(folder.getRoot());
+        try {
+            source.download(cache, 30, 10);
+
+            assertEquals(Collections.singletonList("bytes=30-39"), requestedRanges);
+            assertTrue(cache.isComplete());
+            assertContent(cache, 0, LENGTH);
+
+            source.download(cache, 0, LENGTH);
+            assertEquals(1, requestedRanges.size());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shortBodyFailsWithoutMarkingChunks() throws IOException {
+        missingBytes = 3;
+        ChunkCache cache = source.openCache(folder.getRoot());
+        try {
+            source.download(cache, 20, 20);
+            fail("Short body was accepted");
+        } catch (IOException expected) {
+            assertRanges(cache.getMissingRanges(0, LENGTH), 0, 95);
+            assertFalse(cache.isComplete());
+        } finally {
+            cache.close();
+        }
+    }
+
+    private void assertContent(ChunkCache cache, int from, int to) throws IOException {
+        byte[] read = new byte[to - from];
+        assertEquals(read.length, cache.read(from, read, read.length));
+        assertArrayEquals(Arrays.copyOfRange(content, from, to), read);
+    }
+
+    private static void assertRanges(List<long[]> ranges, long... bounds) {
+        assertEquals("Number of ranges", bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertArrayEquals(new long[]{bounds[i * 2], bounds[i * 2 + 1]}, ranges.get(i));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.pdfviewertesting
+
+import android.util.Log
+import android.view.ViewGroup
+import androidx.test.core.app.ActivityScenario
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.github.barteksc.pdfviewer.PDFView
+import com.github.barteksc.pdfviewer.fixtures.PdfCorpus
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * 用 test-fixtures 產生的 PDF 量測開檔 (DocumentOpenTask + PdfFile) 與第一個 part 繪製完成的時間，
+ * 結果寫在 logcat (tag: DocumentOpenBenchmark)。產生的檔案留在 cache 目錄，下次直接使用
+ */
+@RunWith(AndroidJUnit4::class)
+class DocumentOpenBenchmark {
+
+    private val TAG = "DocumentOpenBenchmark"
+    private val VIEW_WIDTH = 1080
+    private val VIEW_HEIGHT = 1920
+
+    private val instrumentation by lazy { InstrumentationRegistry.getInstrumentation() }
+    private val corpusDir by lazy { File(instrumentation.targetContext.cacheDir, "pdf-corpus") }
+    private lateinit var scenario: ActivityScenario<MainActivity>
+    private lateinit var pdfView: PDFView
+
+    @Before
+    fun createView() {
+        // PDFView 要在 window 上，RenderingHandler 用 post() 交回的 part 才會執行
+        scenario = ActivityScenario.launch(MainActivity::class.java)
+        scenario.onActivity { activity ->
+            pdfView = PDFView(activity, null)
+            activity.setContentView(pdfView, ViewGroup.LayoutParams(VIEW_WIDTH, VIEW_HEIGHT))
+        }
+    }
+
+    @After
+    fun recycleView() {
+        instrumentation.runOnMainSync { pdfView.recycle() }
+        scenario.close()
+    }
+
+    @Test
+    fun openSinglePage() = measureOpen(PdfCorpus.SINGLE_PAGE)
+
+    @Test
+    fun openMixed100() = measureOpen(PdfCorpus.MIXED_100)
+
+    @Test
+    fun openMixed1000() = measureOpen(PdfCorpus.MIXED_1000)
+
+    @Test
+    fun openMixed10000() = measureOpen(PdfCorpus.MIXED_10000)
+
+    @Test
+    fun openMixed50000() = measureOpen(PdfCorpus.MIXED_50000)
+
+    @Test
+    fun openMixed50000FastStart() = measureOpen(PdfCorpus.MIXED_50000, fastStart = true)
+
+    @Test
+    fun openVectorHeavy() = measureOpen(PdfCorpus.VECTOR_HEAVY)
+
+    @Test
+    fun openLargeImages() = measureOpen(PdfCorpus.LARGE_IMAGES)
+
+    @Test
+    fun openDenseLinks() = measureOpen(PdfCorpus.DENSE_LINKS)
+
+    @Test
+    fun openDeepBookmarks() {
+        measureOpen(PdfCorpus.DEEP_BOOKMARKS)
+        var bookmarks = 0
+        val millis = measureMillis {
+            instrumentation.runOnMainSync { bookmarks = pdfView.tableOfContents.size }
+        }
+        Log.i(TAG, "${PdfCorpus.DEEP_BOOKMARKS.fileName}: table of contents $millis ms, $bookmarks top level bookmarks")
+    }
+
+    private fun measureOpen(document: PdfCorpus, fastStart: Boolean = false) {
+        val file = document.generate(corpusDir)
+        val loaded = CountDownLatch(1)
+        val rendered = CountDownLatch(1)
+        var error: Throwable? = null
+        var loadMillis = 0L
+
+        val start = System.nanoTime()
+        instrumentation.runOnMainSync {
+            pdfView.fromFile(file)
+                .fastStart(fastStart)
+                .onLoad {
+                    loadMillis = (System.nanoTime() - start) / 1000000
+                    loaded.countDown()
+                }
+                .onRender { rendered.countDown() }
+                .onError {
+                    error = it
+                    loaded.countDown()
+                    rendered.countDown()
+                }
+                .load()
+        }
+        assertTrue("${document.fileName} was not loaded", loaded.await(5, TimeUnit.MINUTES))
+        assertTrue("${document.fileName} was not rendered", rendered.await(5, TimeUnit.MINUTES))
+        error?.let { throw it }
+        val renderMillis = (System.nanoTime() - start) / 1000000
+
+        assertEquals(document.pageCount, pdfView.pageCount)
+        Log.i(TAG, "${document.fileName}${if (fastStart) " (fast start)" else ""}: " +
+                "load $loadMillis ms, first render $renderMillis ms, ${document.pageCount} pages, " +
+                "${"%.1f".format(file.length() / 1024.0 / 1024.0)} MB")
+    }
+
+    private fun measureMillis(block: () -> Unit): Long {
+        val start = System.nanoTime()
+        block()
+        return (System.nanoTime() - start) / 1000000
+    }
+}
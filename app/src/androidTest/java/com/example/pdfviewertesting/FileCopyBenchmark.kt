@@ -0,0 +1,93 @@
+package com.example.pdfviewertesting
+
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.github.barteksc.pdfviewer.util.FileUtils
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.InputStream
+import java.io.SequenceInputStream
+import java.util.Collections
+import java.util.Random
+
+/**
+ * 比較舊的 1 KB 複製方式與 FileUtils.copy 的速度，結果寫在 logcat (tag: FileCopyBenchmark)
+ */
+@RunWith(AndroidJUnit4::class)
+class FileCopyBenchmark {
+
+    private val TAG = "FileCopyBenchmark"
+    private val FILE_SIZE = 128L * 1024 * 1024
+
+    private val dir by lazy {
+        File(InstrumentationRegistry.getInstrumentation().targetContext.cacheDir, "copy-benchmark")
+    }
+    private val source by lazy { File(dir, "source.bin") }
+    private val target by lazy { File(dir, "target.bin") }
+
+    @Before
+    fun generateSourceFile() {
+        dir.mkdirs()
+        val chunk = ByteArray(1024 * 1024)
+        Random(0).nextBytes(chunk)
+        FileOutputStream(source).use { output ->
+            for (i in 0 until FILE_SIZE / chunk.size) {
+                output.write(chunk)
+            }
+        }
+    }
+
+    @After
+    fun deleteFiles() {
+        dir.deleteRecursively()
+    }
+
+    @Test
+    fun copyWithSmallBuffer() {
+        measure("1 KB buffer") {
+            FileInputStream(source).use { input ->
+                FileOutputStream(target).use { output ->
+                    val buf = ByteArray(1024)
+                    var len: Int
+                    while (input.read(buf).also { len = it } > 0) {
+                        output.write(buf, 0, len)
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun copyFileStream() {
+        measure("FileUtils.copy, file stream") {
+            FileUtils.copy(FileInputStream(source), target)
+        }
+    }
+
+    @Test
+    fun copyOtherStream() {
+        // 不是檔案的 stream 只能用 direct buffer 複製
+        measure("FileUtils.copy, other stream") {
+            val input: InputStream = SequenceInputStream(Collections.enumeration(listOf(
+                FileInputStream(source), ByteArrayInputStream(ByteArray(0)))))
+            FileUtils.copy(input, target)
+        }
+    }
+
+    private fun measure(name: String, copy: () -> Unit) {
+        val start = System.nanoTime()
+        copy()
+        val millis = (System.nanoTime() - start) / 1000000
+        assertEquals(FILE_SIZE, target.length())
+        val megabytesPerSecond = FILE_SIZE / 1024.0 / 1024.0 / (millis.coerceAtLeast(1) / 1000.0)
+        Log.i(TAG, "$name: $millis ms, ${"%.1f".format(megabytesPerSecond)} MB/s")
+    }
+}
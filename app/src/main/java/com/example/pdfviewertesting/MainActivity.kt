@@ -7,6 +7,7 @@ import android.graphics.Canvas
 import android.graphics.Paint
 import android.os.Bundle
 import android.provider.OpenableColumns
+import android.util.Log
 import android.widget.Button
 import androidx.appcompat.app.AlertDialog
 import androidx.appcompat.app.AppCompatActivity
@@ -81,7 +82,7 @@ class MainActivity : AppCompatActivity() {
         }
 
         selectPDf.setOnClickListener {
-            pdfViewer.mapPageSignAreas.clear()
+            pdfViewer.clearSignAreas()
             Tools.selectAnPdf(this, "Select PDF File")
         }
 
@@ -129,6 +130,11 @@ class MainActivity : AppCompatActivity() {
         pdfViewer.fromFile(pdfFile)
                  .spacing(4)
                  .swipeHorizontal(true)
+                 .fastStart(true)
+                 .onRender { nbPages ->
+                     // 量測開啟文件到第一次繪出的時間
+                     Log.d(TAG, "open to first render: ${pdfViewer.timeToFirstRender} ms, pages: $nbPages")
+                 }
                  .onDraw { canvas, pageWidth, pageHeight, zoom, displayedPage ->
                      if(isDrawWaterMark) {
 //                         addAnWatermark(canvas, pageWidth, pageHeight, zoom)
@@ -6,7 +6,9 @@ import android.content.Context
 import android.content.Intent
 import android.net.Uri
 import android.util.DisplayMetrics
+import android.util.Log
 import android.webkit.MimeTypeMap
+import com.github.barteksc.pdfviewer.util.FileUtils
 import java.io.*
 
 class Tools {
@@ -44,27 +46,23 @@ class Tools {
             return File(file.absolutePath, fileName)
         }
 
-        fun copyFileByUri(context: Context, destFile: File, uri: Uri, className: String): Boolean {
+        // 透過 FileUtils.copy 複製，檔案來源直接由核心傳輸，progress 回報已複製與總共的 bytes (未知時為 -1)
+        fun copyFileByUri(context: Context, destFile: File, uri: Uri, className: String,
+                          progress: ((copied: Long, total: Long) -> Unit)? = null): Boolean {
             var result = false
-            var inputStream: InputStream? = null
-            var outputStream: OutputStream? = null
 
             try {
-                inputStream = context.contentResolver.openInputStream(uri)
-                outputStream = FileOutputStream(destFile)
-                val buf = ByteArray(1024)
-                var len: Int
-                while (inputStream!!.read(buf).also { len = it } > 0) {
-                    outputStream.write(buf, 0, len)
+                val inputStream = context.contentResolver.openInputStream(uri)
+                if (inputStream != null) {
+                    FileUtils.copy(inputStream, destFile) { copied, total -> progress?.invoke(copied, total) }
+                    result = true
                 }
-                result = true
             } catch(ex: IOException) {
+                Log.e(className, "copy file failed", ex)
                 result = false
             } catch(ex: Exception) {
+                Log.e(className, "copy file failed", ex)
                 result = false
-            } finally {
-                outputStream?.close()
-                inputStream?.close()
             }
 
             return result
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.layout.PageLayout;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.barteksc.pdfviewer.benchmark.PageLayoutBenchmark.VIEW_HEIGHT;
+import static com.github.barteksc.pdfviewer.benchmark.PageLayoutBenchmark.VIEW_WIDTH;
+
+/**
+ * Replays the cache requests of scroll, fling and pinch sessions on the part cache used by
+ * {@code CacheManager}. Each invocation starts with an empty cache, as after loading a document,
+ * and recycles it at the end. {@code ops} is the rate of cache operations, {@code hits},
+ * {@code misses} and {@code evictions} are totals per iteration and the hit ratio of the trace is
+ * printed at setup. Run with {@code -prof gc} (default in build.gradle) for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CacheManagerBenchmark {
+
+    /** Default {@code Constants.Cache.THUMBNAILS_CACHE_SIZE} */
+    private static final int THUMBNAILS_CACHE_SIZE = 8;
+
+    @Param({"SCROLL", "FLING", "PINCH"})
+    public Gesture gesture;
+
+    @Param({"UNIFORM", "MIXED"})
+    public SyntheticDocument.Sizes sizes;
+
+    /** Default {@code Constants.Cache.CACHE_SIZE} is 120 */
+    @Param({"60", "120", "240"})
+    public int cacheSize;
+
+    /** Budget of a {@code RenderingEngine}, 0 for a view rendering on its own */
+    @Param({"0", "8"})
+    public int memoryBudgetMb;
+
+    private CacheTrace trace;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long hits;
+        public long misses;
+        public long evictions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Operations {
+        public long ops;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            ops = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        PageLayout layout = new PageLayout(FitPolicy.WIDTH, false, true, 20, false);
+        layout.calculate(new SyntheticDocument(100, sizes), VIEW_WIDTH, VIEW_HEIGHT);
+        trace = new CacheTrace(gesture, layout, VIEW_WIDTH, VIEW_HEIGHT, cacheSize);
+
+        Counters counters = new Counters();
+        replay(counters, new Operations());
+        // Replays are deterministic, so the hit ratio of one replay holds for all
+        double hitRatio = (double) counters.hits / (counters.hits + counters.misses);
+        System.out.printf("%n%s: %d frames, hit ratio %.3f, %d evictions%n", gesture,
+                trace.getFrameCount(), hitRatio, counters.evictions);
+    }
+
+    @Benchmark
+    public StubPartCache replay(Counters counters, Operations operations) {
+        StubPartCache cache = new StubPartCache(cacheSize, THUMBNAILS_CACHE_SIZE, memoryBudgetMb * 1024L * 1024L);
+        operations.ops += trace.replay(cache);
+        cache.recycle();
+        counters.hits += cache.hits;
+        counters.misses += cache.misses;
+        counters.evictions += cache.evictions;
+        return cache;
+    }
+}
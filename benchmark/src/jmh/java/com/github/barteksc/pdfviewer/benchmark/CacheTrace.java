@@ -0,0 +1,158 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.layout.PageLayout;
+import com.github.barteksc.pdfviewer.layout.PartPlanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache requests made by {@code PagesLoader.loadPages} for each viewport of a gesture, replayed
+ * against a {@link StubPartCache}. Parts which are not cached are rendered at once.
+ */
+public class CacheTrace {
+
+    /** Default {@code Constants.PART_SIZE} */
+    private static final float PART_SIZE = 256;
+
+    /** Default {@code Constants.THUMBNAIL_RATIO} */
+    private static final float THUMBNAIL_RATIO = 0.3f;
+
+    /** Default {@code Constants.PRELOAD_OFFSET} on a xxhdpi screen */
+    private static final float PRELOAD_OFFSET = 60;
+
+    /** Requests of one {@code loadPages} call */
+    private static class Frame {
+        /** Pages of thumbnails, with their sizes */
+        int[] thumbnailPages;
+        int[] thumbnailWidths;
+        int[] thumbnailHeights;
+        /** Pages of parts, with 4 page relative bounds and render size each */
+        int[] partPages;
+        float[] partBounds;
+        int[] partWidths;
+        int[] partHeights;
+    }
+
+    private final List<Frame> frames = new ArrayList<>();
+
+    /**
+     * @param cacheSize maximum number of parts loaded by one call, as {@code Constants.Cache.CACHE_SIZE}
+     */
+    public CacheTrace(Gesture gesture, PageLayout layout, float viewWidth, float viewHeight, int cacheSize) {
+        for (float[] viewport : gesture.viewports(layout, viewWidth, viewHeight)) {
+            frames.add(loadPages(layout, viewport[0], viewport[1], viewport[2], viewWidth, viewHeight,
+                    cacheSize));
+        }
+    }
+
+    private static Frame loadPages(final PageLayout layout, float xOffset, float yOffset, float zoom,
+                                   float viewWidth, float viewHeight, int cacheSize) {
+        final List<Integer> thumbnailPages = new ArrayList<>();
+        final List<Integer> pages = new ArrayList<>();
+        final List<float[]> bounds = new ArrayList<>();
+        final List<int[]> sizes = new ArrayList<>();
+        PartPlanner planner = new PartPlanner(layout, true, zoom, PART_SIZE);
+        planner.plan(xOffset, yOffset, viewWidth, viewHeight, PRELOAD_OFFSET, cacheSize, new PartPlanner.Callback() {
+            @Override
+            public void onThumbnail(int page) {
+                thumbnailPages.add(page);
+            }
+
+            @Override
+            public void onPart(int page, float left, float top, float right, float bottom,
+                               float renderWidth, float renderHeight, int cacheOrder) {
+                pages.add(page);
+                bounds.add(new float[]{left, top, right, bottom});
+                sizes.add(new int[]{Math.round(renderWidth), Math.round(renderHeight)});
+            }
+        });
+
+        Frame frame = new Frame();
+        frame.thumbnailPages = new int[thumbnailPages.size()];
+        frame.thumbnailWidths = new int[thumbnailPages.size()];
+        frame.thumbnailHeights = new int[thumbnailPages.size()];
+        for (int i = 0; i < thumbnailPages.size(); i++) {
+            int page = thumbnailPages.get(i);
+            frame.thumbnailPages[i] = page;
+            frame.thumbnailWidths[i] = Math.round(layout.getPageWidth(page) * THUMBNAIL_RATIO);
+            frame.thumbnailHeights[i] = Math.round(layout.getPageHeight(page) * THUMBNAIL_RATIO);
+        }
+
+        frame.partPages = new int[pages.size()];
+        frame.partBounds = new float[pages.size() * 4];
+        frame.partWidths = new int[pages.size()];
+        frame.partHeights = new int[pages.size()];
+        for (int i = 0; i < pages.size(); i++) {
+            frame.partPages[i] = pages.get(i);
+            System.arraycopy(bounds.get(i), 0, frame.partBounds, i * 4, 4);
+            frame.partWidths[i] = sizes.get(i)[0];
+            frame.partHeights[i] = sizes.get(i)[1];
+        }
+        return frame;
+    }
+
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    /**
+     * Replay the trace on the cache as the planning thread, the rendering thread and drawing would use it
+     *
+     * @return number of cache operations
+     */
+    public long replay(StubPartCache cache) {
+        long operations = 0;
+        for (Frame frame : frames) {
+            cache.makeANewSet();
+            operations++;
+
+            for (int i = 0; i < frame.thumbnailPages.length; i++) {
+                int page = frame.thumbnailPages[i];
+                operations++;
+                if (!cache.containsThumbnail(new StubPart(page, null, 0, 0, 1, 1, true, 0))) {
+                    StubBitmap bitmap = new StubBitmap(frame.thumbnailWidths[i], frame.thumbnailHeights[i]);
+                    cache.cacheThumbnail(new StubPart(page, bitmap, 0, 0, 1, 1, true, 0));
+                    operations++;
+                }
+            }
+
+            int cacheOrder = 1;
+            float[] bounds = frame.partBounds;
+            for (int i = 0; i < frame.partPages.length; i++) {
+                int page = frame.partPages[i];
+                float left = bounds[i * 4], top = bounds[i * 4 + 1];
+                float right = bounds[i * 4 + 2], bottom = bounds[i * 4 + 3];
+                operations++;
+                if (!cache.upPartIfContained(new StubPart(page, null, left, top, right, bottom, false, 0),
+                        cacheOrder)) {
+                    StubBitmap bitmap = new StubBitmap(frame.partWidths[i], frame.partHeights[i]);
+                    cache.cachePart(new StubPart(page, bitmap, left, top, right, bottom, false, cacheOrder));
+                    operations++;
+                }
+                cacheOrder++;
+            }
+
+            // Drawing the frame
+            cache.getThumbnails();
+            cache.getPageParts();
+            operations += 2;
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.layout.PageLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Viewport changes of a touch session in vertical swipe mode, one viewport per frame at 60 fps.
+ * Offsets are negative positions of the document as in {@code PDFView}.
+ */
+public enum Gesture {
+
+    /** Reading: short drags of three quarters of the screen, each followed by a pause */
+    SCROLL {
+        @Override
+        void perform(Session session) {
+            for (int i = 0; i < 12; i++) {
+                session.drag(0, -0.75f * session.viewHeight, 24);
+                session.pause();
+            }
+        }
+    },
+    /** Fast flings down with the deceleration of a scroller, then a fling back */
+    FLING {
+        @Override
+        void perform(Session session) {
+            for (int i = 0; i < 3; i++) {
+                session.fling(-9000);
+            }
+            session.fling(6000);
+        }
+    },
+    /** Zooming in on a page, panning across it and zooming out in two steps */
+    PINCH {
+        @Override
+        void perform(Session session) {
+            session.drag(0, -2 * session.viewHeight, 30);
+            session.pinch(3, 30);
+            session.drag(-session.viewWidth, 0, 30);
+            session.drag(0, -session.viewHeight, 30);
+            session.drag(session.viewWidth / 2, 0, 20);
+            session.pinch(1.5f, 20);
+            session.drag(0, -session.viewHeight, 30);
+            session.pinch(1, 20);
+            session.pause();
+        }
+    };
+
+    private static final float FRAME_TIME = 1 / 60f;
+
+    /** Flings stop below this velocity, in pixels per second */
+    private static final float MIN_FLING_VELOCITY = 50;
+
+    /** Exponential deceleration of flings, per second */
+    private static final float FLING_FRICTION = 4;
+
+    abstract void perform(Session session);
+
+    /** @return viewports of the session, each one is {x offset, y offset, zoom} */
+    public List<float[]> viewports(PageLayout layout, float viewWidth, float viewHeight) {
+        Session session = new Session(layout, viewWidth, viewHeight);
+        perform(session);
+        return session.viewports;
+    }
+
+    static class Session {
+
+        private final PageLayout layout;
+        final float viewWidth;
+        final float viewHeight;
+        private final List<float[]> viewports = new ArrayList<>();
+        private float x = 0;
+        private float y = 0;
+        private float zoom = 1;
+
+        Session(PageLayout layout, float viewWidth, float viewHeight) {
+            this.layout = layout;
+            this.viewWidth = viewWidth;
+            this.viewHeight = viewHeight;
+            frame();
+        }
+
+        /** Move by the distance with smooth start and end */
+        void drag(float dx, float dy, int frames) {
+            float startX = x, startY = y;
+            for (int i = 1; i <= frames; i++) {
+                float t = (float) i / frames;
+                float eased = t * t * (3 - 2 * t);
+                moveTo(startX + dx * eased, startY + dy * eased);
+            }
+        }
+
+        /** Move with the velocity in pixels per second until it decays */
+        void fling(float velocity) {
+            while (Math.abs(velocity) > MIN_FLING_VELOCITY) {
+                moveTo(x, y + velocity * FRAME_TIME);
+                velocity *= 1 - FLING_FRICTION * FRAME_TIME;
+            }
+        }
+
+        /** Zoom to the target zoom around the center of the view */
+        void pinch(float targetZoom, int frames) {
+            float startZoom = zoom;
+            float focalX = viewWidth / 2, focalY = viewHeight / 2;
+            for (int i = 1; i <= frames; i++) {
+                float newZoom = startZoom + (targetZoom - startZoom) * i / frames;
+                float dzoom = newZoom / zoom;
+                zoom = newZoom;
+                moveTo(focalX - (focalX - x) * dzoom, focalY - (focalY - y) * dzoom);
+            }
+        }
+
+        /** Pages are loaded again when the finger is lifted */
+        void pause() {
+            frame();
+        }
+
+        private void moveTo(float newX, float newY) {
+            float contentWidth = layout.getMaxPageWidth() * zoom;
+            x = contentWidth < viewWidth ? 0 : Math.max(-(contentWidth - viewWidth), Math.min(newX, 0));
+            y = Math.min(0, Math.max(-(layout.getDocLen(zoom) - viewHeight), newY));
+            frame();
+        }
+
+        private void frame() {
+            viewports.add(new float[]{x, y, zoom});
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.layout.PageFitCalculator;
+import com.github.barteksc.pdfviewer.layout.PageLayout;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculating the layout of a whole document, as done when a document is loaded, the view is resized
+ * or sizes of pages are measured after a fast start ({@code PdfFile.recalculatePageSizes})
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageLayoutBenchmark {
+
+    /** Phone in portrait, in pixels */
+    static final int VIEW_WIDTH = 1080;
+    static final int VIEW_HEIGHT = 2160;
+
+    @Param({"1", "100", "10000", "100000"})
+    public int pages;
+
+    @Param({"UNIFORM", "MIXED"})
+    public SyntheticDocument.Sizes sizes;
+
+    @Param({"true", "false"})
+    public boolean vertical;
+
+    @Param({"false", "true"})
+    public boolean autoSpacing;
+
+    private SyntheticDocument document;
+
+    private PageLayout layout;
+
+    private PageFitCalculator fitCalculator;
+
+    private final float[] fitted = new float[2];
+
+    @Setup
+    public void setUp() {
+        document = new SyntheticDocument(pages, sizes);
+        layout = new PageLayout(FitPolicy.WIDTH, false, vertical, 20, autoSpacing);
+        layout.calculate(document, VIEW_WIDTH, VIEW_HEIGHT);
+
+        // Original sizes of the widest and the highest page, as PageLayout.calculate finds them
+        int maxWidthPageWidth = 0, maxWidthPageHeight = 0;
+        int maxHeightPageWidth = 0, maxHeightPageHeight = 0;
+        for (int i = 0; i < document.getPageCount(); i++) {
+            int width = document.getPageWidth(i);
+            int height = document.getPageHeight(i);
+            if (width > maxWidthPageWidth) {
+                maxWidthPageWidth = width;
+                maxWidthPageHeight = height;
+            }
+            if (height > maxHeightPageHeight) {
+                maxHeightPageWidth = width;
+                maxHeightPageHeight = height;
+            }
+        }
+        fitCalculator = new PageFitCalculator(FitPolicy.BOTH, maxWidthPageWidth, maxWidthPageHeight,
+                maxHeightPageWidth, maxHeightPageHeight, VIEW_WIDTH, VIEW_HEIGHT, false);
+    }
+
+    @Benchmark
+    public float calculateLayout() {
+        layout.calculate(document, VIEW_WIDTH, VIEW_HEIGHT);
+        return layout.getDocLen(1);
+    }
+
+    /** Rotating the device swaps the view size */
+    @Benchmark
+    public float calculateLayoutRotated() {
+        layout.calculate(document, VIEW_HEIGHT, VIEW_WIDTH);
+        return layout.getDocLen(1);
+    }
+
+    @Benchmark
+    public void fitPages(Blackhole blackhole) {
+        for (int i = 0; i < document.getPageCount(); i++) {
+            fitCalculator.calculate(document.getPageWidth(i), document.getPageHeight(i), fitted);
+            blackhole.consume(fitted[0]);
+            blackhole.consume(fitted[1]);
+        }
+    }
+}
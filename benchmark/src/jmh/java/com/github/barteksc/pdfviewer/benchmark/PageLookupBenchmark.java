@@ -0,0 +1,117 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.layout.PageLayout;
+import com.github.barteksc.pdfviewer.layout.RenderRange;
+import com.github.barteksc.pdfviewer.layout.RenderRangeCalculator;
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.barteksc.pdfviewer.benchmark.PageLayoutBenchmark.VIEW_HEIGHT;
+import static com.github.barteksc.pdfviewer.benchmark.PageLayoutBenchmark.VIEW_WIDTH;
+
+/**
+ * Lookups done for every scrolled frame: finding the page at an offset ({@code PDFView.loadPageByOffset})
+ * and planning parts of the visible pages ({@code PagesLoader.loadPages}), at random scroll positions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PageLookupBenchmark {
+
+    /** Default {@code Constants.PART_SIZE} */
+    private static final float PART_SIZE = 256;
+
+    /** Default {@code Constants.PRELOAD_OFFSET} on a xxhdpi screen */
+    private static final float PRELOAD_OFFSET = 60;
+
+    /** Number of precalculated scroll positions, power of two */
+    private static final int POSITIONS = 1024;
+
+    @Param({"1", "100", "10000", "100000"})
+    public int pages;
+
+    @Param({"UNIFORM", "MIXED"})
+    public SyntheticDocument.Sizes sizes;
+
+    @Param({"true", "false"})
+    public boolean vertical;
+
+    @Param({"1", "2.5", "10"})
+    public float zoom;
+
+    private PageLayout layout;
+
+    private RenderRangeCalculator renderRangeCalculator;
+
+    /** Primary offsets of the view, negative as in PDFView */
+    private final float[] primaryOffsets = new float[POSITIONS];
+
+    /** Secondary offset of the view, centered */
+    private float secondaryOffset;
+
+    private int position = 0;
+
+    @Setup
+    public void setUp() {
+        layout = new PageLayout(FitPolicy.WIDTH, false, vertical, 20, false);
+        layout.calculate(new SyntheticDocument(pages, sizes), VIEW_WIDTH, VIEW_HEIGHT);
+        renderRangeCalculator = new RenderRangeCalculator(layout, vertical, zoom, PART_SIZE);
+
+        float viewLength = vertical ? VIEW_HEIGHT : VIEW_WIDTH;
+        float maxScroll = Math.max(0, layout.getDocLen(zoom) - viewLength);
+        Random random = new Random(pages);
+        for (int i = 0; i < POSITIONS; i++) {
+            primaryOffsets[i] = -random.nextFloat() * maxScroll;
+        }
+        float secondaryLength = vertical ? layout.getMaxPageWidth() * zoom - VIEW_WIDTH
+                : layout.getMaxPageHeight() * zoom - VIEW_HEIGHT;
+        secondaryOffset = -Math.max(0, secondaryLength) / 2;
+    }
+
+    private float nextOffset() {
+        position = (position + 1) & (POSITIONS - 1);
+        return primaryOffsets[position];
+    }
+
+    @Benchmark
+    public int pageAtOffset() {
+        float viewCenter = (vertical ? VIEW_HEIGHT : VIEW_WIDTH) / 2f;
+        return layout.getPageAtOffset(-(nextOffset() - viewCenter), zoom);
+    }
+
+    @Benchmark
+    public List<RenderRange> renderRanges() {
+        float primaryOffset = nextOffset();
+        float xOffset = vertical ? secondaryOffset : primaryOffset;
+        float yOffset = vertical ? primaryOffset : secondaryOffset;
+        return renderRangeCalculator.calculate(xOffset + PRELOAD_OFFSET, yOffset + PRELOAD_OFFSET,
+                xOffset - VIEW_WIDTH - PRELOAD_OFFSET, yOffset - VIEW_HEIGHT - PRELOAD_OFFSET);
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.layout.PageLayout;
+import com.github.barteksc.pdfviewer.layout.PartPlanner;
+import com.github.barteksc.pdfviewer.session.RecordedSession;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replays a session recorded by {@code PDFView.startSessionRecording} through the same planning
+ * and caching code as the view, with a simulated renderer rendering one part at a time at a fixed
+ * cost. For every moved frame it measures the visible page area which is sharp, blurry (only a
+ * thumbnail or a part rendered at a lower zoom) or blank. Frames without any visible page are only
+ * counted. Usage:
+ * <pre>
+ * SessionReplay &lt;recording&gt; [--tile-cost=&lt;ms&gt;] [--thumbnail-cost=&lt;ms&gt;] [--frames]
+ * </pre>
+ * {@code --frames} prints every frame as CSV before the summary.
+ */
+public class SessionReplay {
+
+    private static final float DEFAULT_TILE_COST_MS = 8;
+    private static final float DEFAULT_THUMBNAIL_COST_MS = 12;
+
+    /** Parts rendered for a slightly lower zoom are still sharp */
+    private static final float SHARP_DENSITY = 0.99f;
+
+    private final RecordedSession session;
+    private final long tileCost;
+    private final long thumbnailCost;
+
+    private final StubPartCache cache;
+    private RecordedSession.Layout recordedLayout;
+    private PageLayout layout;
+    private boolean swipeVertical;
+    private int viewWidth;
+    private int viewHeight;
+    private float xOffset;
+    private float yOffset;
+    private float zoom = 1;
+
+    /** Parts and thumbnails waiting for the renderer, the first one may be rendering */
+    private final ArrayDeque<StubPart> queue = new ArrayDeque<>();
+    /** Time when the renderer finished the last part, in microseconds */
+    private long rendererFreeAt;
+    private long rendered;
+    private long cancelled;
+
+    private final List<float[]> frames = new ArrayList<>();
+    private int emptyFrames;
+
+    /**
+     * @param tileCostMs      time to render a part
+     * @param thumbnailCostMs time to render a thumbnail
+     */
+    public SessionReplay(RecordedSession session, float tileCostMs, float thumbnailCostMs) {
+        this.session = session;
+        this.tileCost = (long) (tileCostMs * 1000);
+        this.thumbnailCost = (long) (thumbnailCostMs * 1000);
+        cache = new StubPartCache(session.getCacheSize(), session.getThumbnailsCacheSize(), 0);
+    }
+
+    /** Replay all events, printing each frame as CSV if frameOutput isn't null */
+    public void replay(PrintStream frameOutput) {
+        if (frameOutput != null) {
+            frameOutput.println("time_ms,sharp,blurry,blank");
+        }
+        for (RecordedSession.Event event : session.getEvents()) {
+            long time = event.getTime();
+            renderUntil(time);
+            switch (event.getType()) {
+                case LAYOUT:
+                    setLayout(event.getLayout());
+                    break;
+                case PAGE_SIZES:
+                    if (recordedLayout != null) {
+                        setLayout(recordedLayout.withPageSizes(event.getFromPage(), event.getPageSizes()));
+                    }
+                    break;
+                case ZOOM:
+                    zoom = event.getZoom();
+                    break;
+                case MOVE:
+                    xOffset = event.getXOffset();
+                    yOffset = event.getYOffset();
+                    if (layout != null) {
+                        float[] frame = measureFrame(time);
+                        if (frame == null) {
+                            emptyFrames++;
+                            break;
+                        }
+                        frames.add(frame);
+                        if (frameOutput != null) {
+                            frameOutput.printf("%.1f,%.4f,%.4f,%.4f%n", frame[0], frame[1], frame[2], frame[3]);
+                        }
+                    }
+                    break;
+                case LOAD_PAGES:
+                    if (layout != null) {
+                        loadPages(time, event.getXOffset(), event.getYOffset(), event.getZoom());
+                    }
+                    break;
+            }
+        }
+    }
+
+    private void setLayout(RecordedSession.Layout recordedLayout) {
+        if (recordedLayout.isDocumentLoaded()) {
+            queue.clear();
+            cache.recycle();
+        }
+        this.recordedLayout = recordedLayout;
+        swipeVertical = recordedLayout.isSwipeVertical();
+        viewWidth = recordedLayout.getViewWidth();
+        viewHeight = recordedLayout.getViewHeight();
+        layout = new PageLayout(recordedLayout.getPageFitPolicy(), recordedLayout.isFitEachPage(),
+                swipeVertical, recordedLayout.getSpacingPx(), recordedLayout.isAutoSpacing());
+        layout.calculate(recordedLayout, viewWidth, viewHeight);
+    }
+
+    private long cost(StubPart part) {
+        return part.isThumbnail() ? thumbnailCost : tileCost;
+    }
+
+    /** Finish parts which the renderer completes until the time */
+    private void renderUntil(long time) {
+        while (!queue.isEmpty()) {
+            long end = rendererFreeAt + cost(queue.peek());
+            if (end > time) {
+                break;
+            }
+            StubPart part = queue.poll();
+            rendererFreeAt = end;
+            rendered++;
+            if (part.isThumbnail()) {
+                cache.cacheThumbnail(part);
+            } else {
+                cache.cachePart(part);
+            }
+        }
+    }
+
+    /** As {@code PlanningHandler}: cancel queued tasks, except a running one, and plan new ones */
+    private void loadPages(long time, float x, float y, float z) {
+        StubPart running = !queue.isEmpty() && rendererFreeAt < time ? queue.poll() : null;
+        cancelled += queue.size();
+        queue.clear();
+        if (running != null) {
+            queue.add(running);
+        } else {
+            rendererFreeAt = Math.max(rendererFreeAt, time);
+        }
+
+        cache.makeANewSet();
+        final float thumbnailRatio = session.getThumbnailRatio();
+        PartPlanner planner = new PartPlanner(layout, swipeVertical, z, session.getPartSize());
+        planner.plan(x, y, viewWidth, viewHeight, session.getPreloadOffset(), session.getCacheSize(),
+                new PartPlanner.Callback() {
+                    @Override
+                    public void onThumbnail(int page) {
+                        if (!cache.containsThumbnail(new StubPart(page, null, 0, 0, 1, 1, true, 0))) {
+                            StubBitmap bitmap = new StubBitmap(Math.round(layout.getPageWidth(page) * thumbnailRatio),
+                                    Math.round(layout.getPageHeight(page) * thumbnailRatio));
+                            queue.add(new StubPart(page, bitmap, 0, 0, 1, 1, true, 0));
+                        }
+                    }
+
+                    @Override
+                    public void onPart(int page, float left, float top, float right, float bottom,
+                                       float renderWidth, float renderHeight, int cacheOrder) {
+                        StubPart key = new StubPart(page, null, left, top, right, bottom, false, 0);
+                        if (!cache.upPartIfContained(key, cacheOrder)) {
+                            StubBitmap bitmap = new StubBitmap(Math.round(renderWidth), Math.round(renderHeight));
+                            queue.add(new StubPart(page, bitmap, left, top, right, bottom, false, cacheOrder));
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @return {time in ms, sharp, blurry, blank} fractions of the visible page area,
+     * null if no page is visible
+     */
+    private float[] measureFrame(long time) {
+        final Map<Integer, List<StubPart>> partsByPage = new HashMap<>();
+        for (StubPart part : cache.getPageParts()) {
+            List<StubPart> parts = partsByPage.get(part.getPage());
+            if (parts == null) {
+                parts = new ArrayList<>();
+                partsByPage.put(part.getPage(), parts);
+            }
+            parts.add(part);
+        }
+        final Set<Integer> thumbnailPages = new HashSet<>();
+        for (StubPart thumbnail : cache.getThumbnails()) {
+            thumbnailPages.add(thumbnail.getPage());
+        }
+
+        // Area in square pixels, classified by cells of the grid of the current zoom
+        final float[] area = new float[3];
+        PartPlanner planner = new PartPlanner(layout, swipeVertical, zoom, session.getPartSize());
+        planner.plan(xOffset, yOffset, viewWidth, viewHeight, 0, Integer.MAX_VALUE, new PartPlanner.Callback() {
+            @Override
+            public void onThumbnail(int page) {
+            }
+
+            @Override
+            public void onPart(int page, float left, float top, float right, float bottom,
+                               float renderWidth, float renderHeight, int cacheOrder) {
+                float visible = visibleArea(page, left, top, right, bottom);
+                if (visible <= 0) {
+                    return;
+                }
+                area[classify(page, (left + right) / 2, (top + bottom) / 2, partsByPage, thumbnailPages)]
+                        += visible;
+            }
+        });
+
+        float total = area[0] + area[1] + area[2];
+        if (total <= 0) {
+            return null;
+        }
+        return new float[]{time / 1000f, area[0] / total, area[1] / total, area[2] / total};
+    }
+
+    /** @return area of the page relative bounds inside the view, in square pixels */
+    private float visibleArea(int page, float left, float top, float right, float bottom) {
+        float pageWidth = layout.getPageWidth(page) * zoom;
+        float pageHeight = layout.getPageHeight(page) * zoom;
+        float pageX = swipeVertical ? layout.getSecondaryPageOffset(page, zoom) : layout.getPageOffset(page, zoom);
+        float pageY = swipeVertical ? layout.getPageOffset(page, zoom) : layout.getSecondaryPageOffset(page, zoom);
+        float screenLeft = Math.max(0, xOffset + pageX + left * pageWidth);
+        float screenRight = Math.min(viewWidth, xOffset + pageX + right * pageWidth);
+        float screenTop = Math.max(0, yOffset + pageY + top * pageHeight);
+        float screenBottom = Math.min(viewHeight, yOffset + pageY + bottom * pageHeight);
+        if (screenRight <= screenLeft || screenBottom <= screenTop) {
+            return 0;
+        }
+        return (screenRight - screenLeft) * (screenBottom - screenTop);
+    }
+
+    /** @return 0 if the point is sharp, 1 if blurry, 2 if blank */
+    private int classify(int page, float x, float y, Map<Integer, List<StubPart>> partsByPage,
+                         Set<Integer> thumbnailPages) {
+        boolean covered = false;
+        List<StubPart> parts = partsByPage.get(page);
+        if (parts != null) {
+            float pageWidth = layout.getPageWidth(page) * zoom;
+            for (StubPart part : parts) {
+                if (x < part.getLeft() || x >= part.getRight() || y < part.getTop() || y >= part.getBottom()) {
+                    continue;
+                }
+                float density = part.getRenderedBitmap().getWidth() / ((part.getRight() - part.getLeft()) * pageWidth);
+                if (density >= SHARP_DENSITY) {
+                    return 0;
+                }
+                covered = true;
+            }
+        }
+        return covered || thumbnailPages.contains(page) ? 1 : 2;
+    }
+
+    public void printSummary(PrintStream out) {
+        float sharp = 0, blurry = 0, blank = 0, worstBlank = 0;
+        int blankFrames = 0;
+        for (float[] frame : frames) {
+            sharp += frame[1];
+            blurry += frame[2];
+            blank += frame[3];
+            worstBlank = Math.max(worstBlank, frame[3]);
+            if (frame[3] > 0) {
+                blankFrames++;
+            }
+        }
+        int count = Math.max(1, frames.size());
+        long lastEvent = session.getEvents().isEmpty() ? 0
+                : session.getEvents().get(session.getEvents().size() - 1).getTime();
+        long drained = rendererFreeAt;
+        for (StubPart part : queue) {
+            drained += cost(part);
+        }
+
+        out.printf("Frames: %d, %d without visible pages, %.1f s%n", frames.size(), emptyFrames, lastEvent / 1e6);
+        out.printf("Visible area: %.1f%% sharp, %.1f%% blurry, %.1f%% blank on average%n",
+                100 * sharp / count, 100 * blurry / count, 100 * blank / count);
+        out.printf("Frames with blank area: %d (%.1f%%), worst %.1f%% blank%n",
+                blankFrames, 100f * blankFrames / count, 100 * worstBlank);
+        out.printf("Rendered: %d, cancelled: %d, cache hits: %d, misses: %d, evictions: %d%n",
+                rendered, cancelled, cache.hits, cache.misses, cache.evictions);
+        out.printf("Renderer busy %.0f ms after the last event%n", Math.max(0, drained - lastEvent) / 1000f);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String file = null;
+        float tileCost = DEFAULT_TILE_COST_MS;
+        float thumbnailCost = DEFAULT_THUMBNAIL_COST_MS;
+        boolean printFrames = false;
+        for (String arg : args) {
+            if (arg.startsWith("--tile-cost=")) {
+                tileCost = Float.parseFloat(arg.substring("--tile-cost=".length()));
+            } else if (arg.startsWith("--thumbnail-cost=")) {
+                thumbnailCost = Float.parseFloat(arg.substring("--thumbnail-cost=".length()));
+            } else if (arg.equals("--frames")) {
+                printFrames = true;
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: SessionReplay <recording> [--tile-cost=<ms>] [--thumbnail-cost=<ms>] [--frames]");
+            System.exit(1);
+        }
+
+        RecordedSession session;
+        try (InputStream in = new FileInputStream(file)) {
+            session = RecordedSession.read(in);
+        }
+        SessionReplay replay = new SessionReplay(session, tileCost, thumbnailCost);
+        replay.replay(printFrames ? System.out : null);
+        replay.printSummary(System.out);
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+/**
+ * Bitmap which only remembers its size, rendered parts are not drawn in cache benchmarks
+ */
+public class StubBitmap {
+
+    /** Bitmaps of parts are RGB_565 unless the best quality is requested */
+    static final int BYTES_PER_PIXEL = 2;
+
+    private final int width;
+
+    private final int height;
+
+    private boolean recycled;
+
+    public StubBitmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getByteCount() {
+        return width * height * BYTES_PER_PIXEL;
+    }
+
+    public void recycle() {
+        recycled = true;
+    }
+
+    public boolean isRecycled() {
+        return recycled;
+    }
+}
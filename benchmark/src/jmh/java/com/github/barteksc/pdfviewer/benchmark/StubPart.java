@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+/**
+ * Counterpart of {@code PagePart} with a {@link StubBitmap} and bounds stored in fields,
+ * compared the same way
+ */
+public class StubPart {
+
+    private final int page;
+
+    private final StubBitmap renderedBitmap;
+
+    private final float left, top, right, bottom;
+
+    private final boolean thumbnail;
+
+    private int cacheOrder;
+
+    public StubPart(int page, StubBitmap renderedBitmap, float left, float top, float right, float bottom,
+                    boolean thumbnail, int cacheOrder) {
+        this.page = page;
+        this.renderedBitmap = renderedBitmap;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.thumbnail = thumbnail;
+        this.cacheOrder = cacheOrder;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public StubBitmap getRenderedBitmap() {
+        return renderedBitmap;
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    public float getRight() {
+        return right;
+    }
+
+    public float getBottom() {
+        return bottom;
+    }
+
+    public boolean isThumbnail() {
+        return thumbnail;
+    }
+
+    public int getCacheOrder() {
+        return cacheOrder;
+    }
+
+    public void setCacheOrder(int cacheOrder) {
+        this.cacheOrder = cacheOrder;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof StubPart)) {
+            return false;
+        }
+
+        StubPart part = (StubPart) obj;
+        return part.page == page
+                && part.left == left
+                && part.right == right
+                && part.top == top
+                && part.bottom == bottom;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = page;
+        result = 31 * result + Float.floatToIntBits(left);
+        result = 31 * result + Float.floatToIntBits(top);
+        return result;
+    }
+}
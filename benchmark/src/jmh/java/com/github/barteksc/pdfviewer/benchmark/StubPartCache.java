@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.cache.PartCache;
+
+/**
+ * Part cache of {@link StubPart}s, counting lookups and evictions like {@code CacheManager}
+ * reports them to the rendering metrics. With a memory budget, parts are evicted after caching
+ * as {@code RenderingEngine.trimMemory} does.
+ */
+public class StubPartCache extends PartCache<StubPart> {
+
+    long hits;
+
+    long misses;
+
+    long evictions;
+
+    /** Bytes of cached parts, thumbnails are not counted */
+    private long usedMemory;
+
+    /** Budget of cached parts in bytes, 0 if not limited */
+    private final long memoryBudget;
+
+    public StubPartCache(int cacheSize, int thumbnailsCacheSize, long memoryBudget) {
+        super(cacheSize, thumbnailsCacheSize);
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    protected int getCacheOrder(StubPart part) {
+        return part.getCacheOrder();
+    }
+
+    @Override
+    protected void setCacheOrder(StubPart part, int cacheOrder) {
+        part.setCacheOrder(cacheOrder);
+    }
+
+    @Override
+    protected int getByteCount(StubPart part) {
+        return part.getRenderedBitmap().getByteCount();
+    }
+
+    @Override
+    protected void recycleBitmap(StubPart part) {
+        part.getRenderedBitmap().recycle();
+    }
+
+    @Override
+    protected void onPartCached(StubPart part) {
+        usedMemory += part.getRenderedBitmap().getByteCount();
+        if (memoryBudget > 0 && usedMemory > memoryBudget) {
+            // Like RenderingEngine, only parts which are not visible are recycled to meet the budget
+            evict(usedMemory - memoryBudget, false);
+        }
+    }
+
+    @Override
+    protected void onPartRecycled(int bytes) {
+        usedMemory -= bytes;
+    }
+
+    @Override
+    protected void onEviction() {
+        evictions++;
+    }
+
+    @Override
+    protected void onLookup(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+}
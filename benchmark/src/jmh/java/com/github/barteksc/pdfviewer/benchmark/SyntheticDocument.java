@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.benchmark;
+
+import com.github.barteksc.pdfviewer.layout.PageSizes;
+
+import java.util.Random;
+
+/**
+ * Page sizes of a generated document, in points as pdfium reports them
+ */
+public class SyntheticDocument implements PageSizes {
+
+    public enum Sizes {
+        /** Every page is A4 portrait */
+        UNIFORM,
+        /** A4 and Letter in both orientations, with occasional long and wide pages like receipts and drawings */
+        MIXED
+    }
+
+    private static final int[][] MIXED_SIZES = {
+            {595, 842}, // A4 portrait
+            {842, 595}, // A4 landscape
+            {612, 792}, // Letter portrait
+            {792, 612}, // Letter landscape
+            {420, 595}, // A5 portrait
+    };
+
+    private final int[] widths;
+
+    private final int[] heights;
+
+    /** Same seed for every run, so results are comparable */
+    public SyntheticDocument(int pageCount, Sizes sizes) {
+        widths = new int[pageCount];
+        heights = new int[pageCount];
+        Random random = new Random(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            if (sizes == Sizes.UNIFORM) {
+                widths[i] = 595;
+                heights[i] = 842;
+                continue;
+            }
+            int kind = random.nextInt(100);
+            if (kind < 2) {
+                // Receipt
+                widths[i] = 226;
+                heights[i] = 1000 + random.nextInt(4000);
+            } else if (kind < 4) {
+                // Drawing
+                widths[i] = 1684 + random.nextInt(1684);
+                heights[i] = 1191;
+            } else {
+                int[] size = MIXED_SIZES[random.nextInt(MIXED_SIZES.length)];
+                widths[i] = size[0];
+                heights[i] = size[1];
+            }
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return widths.length;
+    }
+
+    @Override
+    public int getPageWidth(int pageIndex) {
+        return widths[pageIndex];
+    }
+
+    @Override
+    public int getPageHeight(int pageIndex) {
+        return heights[pageIndex];
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.fixtures;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Documents for benchmarks of opening, layout and rendering. Files are generated once into a directory
+ * and reused, the version in file names changes whenever the documents change.
+ */
+public enum PdfCorpus {
+
+    SINGLE_PAGE(new SyntheticPdf.Builder(1)),
+    MIXED_100(new SyntheticPdf.Builder(100).sizes(SyntheticPdf.Sizes.MIXED)),
+    MIXED_1000(new SyntheticPdf.Builder(1000).sizes(SyntheticPdf.Sizes.MIXED)),
+    MIXED_10000(new SyntheticPdf.Builder(10000).sizes(SyntheticPdf.Sizes.MIXED)),
+    MIXED_50000(new SyntheticPdf.Builder(50000).sizes(SyntheticPdf.Sizes.MIXED)),
+    /** Thousands of curves on every page, slow to render */
+    VECTOR_HEAVY(new SyntheticPdf.Builder(50).vectorPaths(5000)),
+    /** 3000 x 2250 pixel image on every page, slow to decode */
+    LARGE_IMAGES(new SyntheticPdf.Builder(20).sizes(SyntheticPdf.Sizes.MIXED).images(3000)),
+    /** 100 links on every page, slow to read links of opened pages */
+    DENSE_LINKS(new SyntheticPdf.Builder(200).links(100)),
+    /** 8190 bookmarks 12 levels deep, slow to read the table of contents */
+    DEEP_BOOKMARKS(new SyntheticPdf.Builder(500).sizes(SyntheticPdf.Sizes.MIXED).bookmarks(12, 2));
+
+    private static final int VERSION = 1;
+
+    private final SyntheticPdf pdf;
+
+    PdfCorpus(SyntheticPdf.Builder builder) {
+        pdf = builder.seed(ordinal()).build();
+    }
+
+    public SyntheticPdf getPdf() {
+        return pdf;
+    }
+
+    public int getPageCount() {
+        return pdf.getPageCount();
+    }
+
+    public String getFileName() {
+        return name().toLowerCase(Locale.US) + "-v" + VERSION + ".pdf";
+    }
+
+    /** @return the document in the directory, generated if it doesn't exist */
+    public File generate(File directory) throws IOException {
+        File file = new File(directory, getFileName());
+        if (file.exists()) {
+            return file;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        // Written under another name first, so an interrupted run doesn't leave a broken document
+        File temp = new File(directory, getFileName() + ".tmp");
+        pdf.writeTo(temp);
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+        return file;
+    }
+
+    /** @return all documents in the directory, generated if they don't exist */
+    public static List<File> generateAll(File directory) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (PdfCorpus document : values()) {
+            files.add(document.generate(directory));
+        }
+        return files;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PdfCorpus <directory>");
+            System.exit(1);
+        }
+        File directory = new File(args[0]);
+        for (PdfCorpus document : values()) {
+            long start = System.nanoTime();
+            File file = document.generate(directory);
+            System.out.printf("%s: %d pages, %.1f MB, %d ms%n", file.getName(), document.getPageCount(),
+                    file.length() / (1024f * 1024f), (System.nanoTime() - start) / 1000000);
+        }
+    }
+}
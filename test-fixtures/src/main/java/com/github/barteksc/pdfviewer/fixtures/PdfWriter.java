@@ -0,0 +1,136 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.fixtures;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes PDF objects sequentially, numbers are reserved ahead so objects can reference each other
+ * in any order. The cross-reference table is written by {@link #finish(int)}.
+ */
+class PdfWriter implements Closeable {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final OutputStream out;
+
+    private long position = 0;
+
+    /** Offsets of objects by number, -1 if reserved and not written yet */
+    private long[] offsets = new long[1024];
+
+    private int objectCount = 0;
+
+    PdfWriter(OutputStream outputStream) throws IOException {
+        out = new BufferedOutputStream(outputStream, 64 * 1024);
+        write("%PDF-1.7\n");
+        // Binary comment, so the file is treated as binary
+        writeBytes(new byte[]{'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});
+    }
+
+    /** @return number of a new object */
+    int reserve() {
+        objectCount++;
+        if (objectCount >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[objectCount] = -1;
+        return objectCount;
+    }
+
+    /** Write an object with the dictionary, array or other value */
+    void writeObject(int number, String value) throws IOException {
+        beginObject(number);
+        write(value);
+        write("\nendobj\n");
+    }
+
+    /**
+     * Write a stream object, compressed unless the data is already compressed
+     *
+     * @param dictionaryEntries entries of the stream dictionary, without /Length and /Filter
+     */
+    void writeStream(int number, String dictionaryEntries, byte[] data, boolean compress) throws IOException {
+        if (compress) {
+            data = deflate(data);
+        }
+        beginObject(number);
+        String entries = dictionaryEntries.isEmpty() ? "" : dictionaryEntries + " ";
+        write("<< " + entries + "/Filter /FlateDecode /Length " + data.length + " >>\nstream\n");
+        writeBytes(data);
+        write("\nendstream\nendobj\n");
+    }
+
+    static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        DeflaterOutputStream deflater = new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED));
+        deflater.write(data);
+        deflater.close();
+        return compressed.toByteArray();
+    }
+
+    private void beginObject(int number) throws IOException {
+        if (number < 1 || number > objectCount || offsets[number] != -1) {
+            throw new IllegalStateException("Object " + number + " is not reserved or already written");
+        }
+        offsets[number] = position;
+        write(number + " 0 obj\n");
+    }
+
+    /** Write the cross-reference table and the trailer, all reserved objects have to be written */
+    void finish(int catalogNumber) throws IOException {
+        long xrefPosition = position;
+        StringBuilder xref = new StringBuilder(20 * (objectCount + 1) + 64);
+        xref.append("xref\n0 ").append(objectCount + 1).append('\n');
+        xref.append("0000000000 65535 f \n");
+        for (int i = 1; i <= objectCount; i++) {
+            if (offsets[i] == -1) {
+                throw new IllegalStateException("Object " + i + " was reserved but not written");
+            }
+            String offset = Long.toString(offsets[i]);
+            for (int pad = offset.length(); pad < 10; pad++) {
+                xref.append('0');
+            }
+            xref.append(offset).append(" 00000 n \n");
+        }
+        xref.append("trailer\n<< /Size ").append(objectCount + 1).append(" /Root ").append(catalogNumber)
+                .append(" 0 R >>\nstartxref\n").append(xrefPosition).append("\n%%EOF\n");
+        write(xref.toString());
+        out.flush();
+    }
+
+    void write(String text) throws IOException {
+        writeBytes(text.getBytes(ASCII));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
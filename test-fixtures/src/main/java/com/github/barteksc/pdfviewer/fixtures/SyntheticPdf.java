@@ -0,0 +1,411 @@
+/**
+ * Copyright 2016 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.fixtures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Description of a generated PDF. The same description always produces the same file, page sizes,
+ * drawings and links are derived from the seed. Every page shows its number, other content is optional.
+ */
+public class SyntheticPdf {
+
+    public enum Sizes {
+        /** Every page is A4 portrait */
+        UNIFORM,
+        /** A4, Letter and A5 in both orientations, with occasional long receipts and wide drawings */
+        MIXED
+    }
+
+    private static final int[][] MIXED_SIZES = {
+            {595, 842}, // A4 portrait
+            {842, 595}, // A4 landscape
+            {612, 792}, // Letter portrait
+            {792, 612}, // Letter landscape
+            {420, 595}, // A5 portrait
+            {595, 420}, // A5 landscape
+    };
+
+    /** Maximum number of kids of a node of the page tree */
+    private static final int PAGE_TREE_FANOUT = 32;
+
+    private final int pageCount;
+    private final Sizes sizes;
+    private final int vectorPathsPerPage;
+    private final int imageSize;
+    private final int linksPerPage;
+    private final int bookmarkDepth;
+    private final int bookmarkFanout;
+    private final long seed;
+
+    private SyntheticPdf(Builder builder) {
+        pageCount = builder.pageCount;
+        sizes = builder.sizes;
+        vectorPathsPerPage = builder.vectorPathsPerPage;
+        imageSize = builder.imageSize;
+        linksPerPage = builder.linksPerPage;
+        bookmarkDepth = builder.bookmarkDepth;
+        bookmarkFanout = builder.bookmarkFanout;
+        seed = builder.seed;
+    }
+
+    public static class Builder {
+        private final int pageCount;
+        private Sizes sizes = Sizes.UNIFORM;
+        private int vectorPathsPerPage = 0;
+        private int imageSize = 0;
+        private int linksPerPage = 0;
+        private int bookmarkDepth = 0;
+        private int bookmarkFanout = 0;
+        private long seed = 0;
+
+        public Builder(int pageCount) {
+            if (pageCount < 1) {
+                throw new IllegalArgumentException("A document needs at least one page");
+            }
+            this.pageCount = pageCount;
+        }
+
+        public Builder sizes(Sizes sizes) {
+            this.sizes = sizes;
+            return this;
+        }
+
+        /** Draw random stroked curves on every page */
+        public Builder vectorPaths(int pathsPerPage) {
+            this.vectorPathsPerPage = pathsPerPage;
+            return this;
+        }
+
+        /**
+         * Embed an RGB image on every page, each page has its own image
+         *
+         * @param width width of images in pixels, the height is 3/4 of it
+         */
+        public Builder images(int width) {
+            this.imageSize = width;
+            return this;
+        }
+
+        /** Add link annotations to every page, half of them to other pages and half to URIs */
+        public Builder links(int linksPerPage) {
+            this.linksPerPage = linksPerPage;
+            return this;
+        }
+
+        /**
+         * Add a full tree of bookmarks, {@code fanout^1 + ... + fanout^depth} bookmarks in total
+         */
+        public Builder bookmarks(int depth, int fanout) {
+            this.bookmarkDepth = depth;
+            this.bookmarkFanout = fanout;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticPdf build() {
+            return new SyntheticPdf(this);
+        }
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public void writeTo(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Write the document, the stream is not closed */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        PdfWriter writer = new PdfWriter(outputStream);
+        Random random = new Random(seed);
+
+        int catalog = writer.reserve();
+        int font = writer.reserve();
+        int[] pages = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pages[i] = writer.reserve();
+        }
+        int[] parents = new int[pageCount];
+        int pageTreeRoot = writePageTree(writer, pages, parents);
+        int outlines = bookmarkDepth > 0 && bookmarkFanout > 0 ? writeOutlines(writer, pages) : 0;
+
+        writer.writeObject(font, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+        for (int i = 0; i < pageCount; i++) {
+            writePage(writer, random, i, pages, parents[i], font);
+        }
+
+        writer.writeObject(catalog, "<< /Type /Catalog /Pages " + pageTreeRoot + " 0 R"
+                + (outlines != 0 ? " /Outlines " + outlines + " 0 R /PageMode /UseOutlines" : "") + " >>");
+        writer.finish(catalog);
+    }
+
+    /**
+     * Write a balanced page tree, pages are written later
+     *
+     * @param parents filled with the parent node of each page
+     * @return number of the root node
+     */
+    private static int writePageTree(PdfWriter writer, int[] pages, int[] parents) throws IOException {
+        // Object numbers and numbers of pages below them, by level, pages first
+        List<int[]> levels = new ArrayList<>();
+        List<int[]> levelCounts = new ArrayList<>();
+        int[] pageCounts = new int[pages.length];
+        Arrays.fill(pageCounts, 1);
+        levels.add(pages);
+        levelCounts.add(pageCounts);
+        while (levels.size() == 1 || levels.get(levels.size() - 1).length > 1) {
+            int[] children = levels.get(levels.size() - 1);
+            int[] childCounts = levelCounts.get(levelCounts.size() - 1);
+            int nodeCount = (children.length + PAGE_TREE_FANOUT - 1) / PAGE_TREE_FANOUT;
+            int[] nodes = new int[nodeCount];
+            int[] counts = new int[nodeCount];
+            for (int n = 0; n < nodeCount; n++) {
+                nodes[n] = writer.reserve();
+                for (int k = n * PAGE_TREE_FANOUT; k < Math.min(children.length, (n + 1) * PAGE_TREE_FANOUT); k++) {
+                    counts[n] += childCounts[k];
+                }
+            }
+            levels.add(nodes);
+            levelCounts.add(counts);
+        }
+
+        for (int l = 1; l < levels.size(); l++) {
+            int[] children = levels.get(l - 1);
+            int[] nodes = levels.get(l);
+            int[] counts = levelCounts.get(l);
+            int[] parentNodes = l + 1 < levels.size() ? levels.get(l + 1) : null;
+            for (int n = 0; n < nodes.length; n++) {
+                StringBuilder node = new StringBuilder("<< /Type /Pages");
+                if (parentNodes != null) {
+                    node.append(" /Parent ").append(parentNodes[n / PAGE_TREE_FANOUT]).append(" 0 R");
+                }
+                node.append(" /Kids [");
+                for (int k = n * PAGE_TREE_FANOUT; k < Math.min(children.length, (n + 1) * PAGE_TREE_FANOUT); k++) {
+                    node.append(children[k]).append(" 0 R ");
+                    if (l == 1) {
+                        parents[k] = nodes[n];
+                    }
+                }
+                node.append("] /Count ").append(counts[n]).append(" >>");
+                writer.writeObject(nodes[n], node.toString());
+            }
+        }
+        return levels.get(levels.size() - 1)[0];
+    }
+
+    private static class Bookmark {
+        int number;
+        String title;
+        int page;
+        Bookmark parent;
+        List<Bookmark> children = new ArrayList<>();
+        /** Number of all bookmarks below this one */
+        int descendants;
+    }
+
+    /** @return number of the outline dictionary */
+    private int writeOutlines(PdfWriter writer, int[] pages) throws IOException {
+        Bookmark root = new Bookmark();
+        root.number = writer.reserve();
+        int[] nextPage = new int[1];
+        addBookmarks(writer, root, "Chapter ", 1, nextPage);
+
+        writer.writeObject(root.number, "<< /Type /Outlines /First " + root.children.get(0).number
+                + " 0 R /Last " + root.children.get(root.children.size() - 1).number
+                + " 0 R /Count " + root.children.size() + " >>");
+        writeBookmarks(writer, root, pages);
+        return root.number;
+    }
+
+    private void addBookmarks(PdfWriter writer, Bookmark parent, String prefix, int depth, int[] nextPage) {
+        for (int i = 0; i < bookmarkFanout; i++) {
+            Bookmark bookmark = new Bookmark();
+            bookmark.number = writer.reserve();
+            bookmark.title = prefix + (i + 1);
+            bookmark.page = nextPage[0]++ % pageCount;
+            bookmark.parent = parent;
+            parent.children.add(bookmark);
+            if (depth < bookmarkDepth) {
+                addBookmarks(writer, bookmark, bookmark.title + ".", depth + 1, nextPage);
+            }
+            parent.descendants += 1 + bookmark.descendants;
+        }
+    }
+
+    /** Write bookmarks below the parent, closed, so only top level bookmarks are visible */
+    private static void writeBookmarks(PdfWriter writer, Bookmark parent, int[] pages) throws IOException {
+        List<Bookmark> children = parent.children;
+        for (int i = 0; i < children.size(); i++) {
+            Bookmark bookmark = children.get(i);
+            StringBuilder item = new StringBuilder("<< /Title (").append(bookmark.title).append(")");
+            item.append(" /Parent ").append(parent.number).append(" 0 R");
+            if (i > 0) {
+                item.append(" /Prev ").append(children.get(i - 1).number).append(" 0 R");
+            }
+            if (i < children.size() - 1) {
+                item.append(" /Next ").append(children.get(i + 1).number).append(" 0 R");
+            }
+            if (!bookmark.children.isEmpty()) {
+                item.append(" /First ").append(bookmark.children.get(0).number).append(" 0 R");
+                item.append(" /Last ").append(bookmark.children.get(bookmark.children.size() - 1).number)
+                        .append(" 0 R");
+                item.append(" /Count -").append(bookmark.children.size());
+            }
+            item.append(" /Dest [").append(pages[bookmark.page]).append(" 0 R /Fit] >>");
+            writer.writeObject(bookmark.number, item.toString());
+            writeBookmarks(writer, bookmark, pages);
+        }
+    }
+
+    private int[] pageSize(Random random) {
+        if (sizes == Sizes.UNIFORM) {
+            return new int[]{595, 842};
+        }
+        int kind = random.nextInt(100);
+        if (kind < 2) {
+            // Receipt
+            return new int[]{226, 1000 + random.nextInt(4000)};
+        } else if (kind < 4) {
+            // Drawing
+            return new int[]{1684 + random.nextInt(1684), 1191};
+        }
+        return MIXED_SIZES[random.nextInt(MIXED_SIZES.length)];
+    }
+
+    private void writePage(PdfWriter writer, Random random, int index, int[] pages, int parent, int font)
+            throws IOException {
+        int[] size = pageSize(random);
+        int width = size[0], height = size[1];
+
+        int contents = writer.reserve();
+        int image = imageSize > 0 ? writer.reserve() : 0;
+        int[] links = new int[linksPerPage];
+        for (int i = 0; i < linksPerPage; i++) {
+            links[i] = writer.reserve();
+        }
+
+        StringBuilder page = new StringBuilder("<< /Type /Page /Parent ").append(parent).append(" 0 R");
+        page.append(" /MediaBox [0 0 ").append(width).append(' ').append(height).append(']');
+        page.append(" /Resources << /Font << /F1 ").append(font).append(" 0 R >>");
+        if (image != 0) {
+            page.append(" /XObject << /Im1 ").append(image).append(" 0 R >>");
+        }
+        page.append(" >> /Contents ").append(contents).append(" 0 R");
+        if (linksPerPage > 0) {
+            page.append(" /Annots [");
+            for (int link : links) {
+                page.append(link).append(" 0 R ");
+            }
+            page.append(']');
+        }
+        page.append(" >>");
+        writer.writeObject(pages[index], page.toString());
+
+        StringBuilder content = new StringBuilder();
+        if (image != 0) {
+            int imageHeight = imageSize * 3 / 4;
+            float scale = Math.min((width - 72f) / imageSize, (height - 144f) / imageHeight);
+            content.append("q ").append(imageSize * scale).append(" 0 0 ").append(imageHeight * scale)
+                    .append(" 36 72 cm /Im1 Do Q\n");
+        }
+        for (int i = 0; i < vectorPathsPerPage; i++) {
+            content.append(random.nextInt(100) / 100f).append(' ')
+                    .append(random.nextInt(100) / 100f).append(' ')
+                    .append(random.nextInt(100) / 100f).append(" RG ")
+                    .append(0.5f + random.nextInt(30) / 10f).append(" w ")
+                    .append(random.nextInt(width)).append(' ').append(random.nextInt(height)).append(" m ");
+            // Control points and the end point of a cubic curve
+            for (int c = 0; c < 3; c++) {
+                content.append(random.nextInt(width)).append(' ').append(random.nextInt(height)).append(' ');
+            }
+            content.append("c S\n");
+        }
+        content.append("BT /F1 24 Tf 36 ").append(height - 60).append(" Td (Page ").append(index + 1)
+                .append(") Tj ET\n");
+        writer.writeStream(contents, "", content.toString().getBytes("US-ASCII"), true);
+
+        if (image != 0) {
+            writer.writeStream(image, "/Type /XObject /Subtype /Image /Width " + imageSize
+                    + " /Height " + imageSize * 3 / 4 + " /ColorSpace /DeviceRGB /BitsPerComponent 8",
+                    imagePixels(index), false);
+        }
+
+        for (int i = 0; i < linksPerPage; i++) {
+            // Links in a grid below the page title
+            int columns = Math.max(1, (int) Math.sqrt(linksPerPage));
+            int rows = (linksPerPage + columns - 1) / columns;
+            float cellWidth = (width - 72f) / columns;
+            float cellHeight = (height - 144f) / rows;
+            float left = 36 + (i % columns) * cellWidth;
+            float bottom = 72 + (i / columns) * cellHeight;
+            StringBuilder link = new StringBuilder("<< /Type /Annot /Subtype /Link /Border [0 0 0] /Rect [");
+            link.append(left).append(' ').append(bottom).append(' ')
+                    .append(left + cellWidth * 0.8f).append(' ').append(bottom + cellHeight * 0.8f).append(']');
+            if (i % 2 == 0) {
+                int target = (index + 1 + random.nextInt(pageCount)) % pageCount;
+                link.append(" /Dest [").append(pages[target]).append(" 0 R /Fit]");
+            } else {
+                link.append(" /A << /S /URI /URI (https://example.com/").append(index + 1).append('/')
+                        .append(i + 1).append(") >>");
+            }
+            link.append(" >>");
+            writer.writeObject(links[i], link.toString());
+        }
+    }
+
+    /**
+     * Compressed pixels of gradients with a checkerboard, different on every page. Rows repeat, so the
+     * file stays small while decoding still inflates all pixels
+     */
+    private byte[] imagePixels(int index) throws IOException {
+        int width = imageSize;
+        int height = imageSize * 3 / 4;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED));
+        byte[] row = new byte[width * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x * 3] = (byte) (x * 255 / width + index * 37);
+                row[x * 3 + 1] = (byte) (y * 255 / height);
+                row[x * 3 + 2] = (byte) (((x / 64 + y / 64) & 1) * 128 + index * 11);
+            }
+            out.write(row);
+        }
+        out.close();
+        return compressed.toByteArray();
+    }
+}